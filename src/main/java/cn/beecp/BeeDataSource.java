@@ -16,6 +16,7 @@
 package cn.beecp;
 
 import cn.beecp.pool.ConnectionPool;
+import cn.beecp.pool.ConnectionPoolJMXBean;
 
 import javax.sql.DataSource;
 import java.io.PrintWriter;
@@ -30,6 +31,7 @@ import java.util.logging.Logger;
  *
  * 1) cn.beecp.pool.FastConnectionPool:base implementation with semaphore
  * 2) cn.beecp.pool.RawConnectionPool:return raw connections to borrowers directly(maybe used for BeeNode)
+ * 3) cn.beecp.pool.PartitionedConnectionPool:split connections and semaphore into some FastConnectionPool partitions
  *
  * Email:  Chris2018998@tom.com
  * Project: https://github.com/Chris2018998/BeeCP
@@ -110,6 +112,90 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 	public Connection getConnection() throws SQLException {
 		if(inited)return pool.getConnection(maxWait);
 
+		initPool();
+		return pool.getConnection(maxWait);
+	}
+
+	/**
+	 * borrow a connection from pool,prefer the connection last used by affinity key,
+	 * such as a logical session id in async frameworks(borrower threads change)
+	 *
+	 * @param affinityKey logical session key,null means no affinity
+	 * @return If the connection last used by the key is idle,then return it;otherwise
+	 *         return one as {@link #getConnection()}
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnection(Object affinityKey) throws SQLException {
+		if(!inited)initPool();
+		return pool.getConnection(affinityKey,maxWait);
+	}
+
+	/**
+	 * borrow a connection from pool before deadline of caller,remaining time of the
+	 * deadline is query timeout of statements created by the connection(in trusted mode,
+	 * driver statements are not limited,the deadline only bounds the borrow)
+	 *
+	 * @param deadline absolute time in {@link System#nanoTime()}
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release or deadline
+	 * @throws SQLException
+	 *             if pool is closed or deadline reached,then throw exception
+	 */
+	public Connection getConnectionByDeadline(long deadline) throws SQLException {
+		if(!inited)initPool();
+		return pool.getConnectionByDeadline(deadline);
+	}
+
+	/**
+	 * borrow a connection from pool with priority,when 'priorityBorrow' is enabled,
+	 * returned connections are transferred to waiters of higher priority first,such
+	 * as user requests before batch jobs
+	 *
+	 * @param priority 0(lowest) to 9(highest),5 is normal
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed,priority is invalid or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByPriority(int priority) throws SQLException {
+		if(!inited)initPool();
+		return pool.getConnectionByPriority(priority,maxWait);
+	}
+
+	/**
+	 * borrow a connection from pool for a tenant,when 'tenantQuotas' configured,borrowed
+	 * connections of the tenant are limited by its quota,so one tenant can't take all
+	 * connections of pool
+	 *
+	 * @param tenant tenant key of borrower,null means no quota
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByTenant(String tenant) throws SQLException {
+		if(!inited)initPool();
+		return pool.getConnectionByTenant(tenant,maxWait);
+	}
+
+	/**
+	 * borrow multiple connections from pool,all or none,such as parallel queries
+	 * on database partitions,borrowing them one by one may wait for each other
+	 * when pool is full;permits of concurrency limiter are acquired for all of
+	 * them,tenant quotas are not applied
+	 *
+	 * @param count connection count,between 1 and pool max size
+	 * @return connections of count
+	 * @throws SQLException
+	 *             if pool is closed,count is invalid or waiting timeout,then throw exception
+	 */
+	public Connection[] getConnections(int count) throws SQLException {
+		if(!inited)initPool();
+		return pool.getConnections(count,maxWait);
+	}
+	//create pool on first borrow
+	private void initPool() throws SQLException {
 		if(writeLock.tryLock()) {
 			if(!inited){
 				try {
@@ -131,8 +217,6 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 				readLock.unlock();
 			}
 		}
-
-		return pool.getConnection(maxWait);
 	}
 
 	/**
@@ -152,6 +236,15 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 	public Connection getConnection(String username, String password) throws SQLException {
 		throw new SQLException("Not support");
 	}
+	/**
+	 * get pool runtime monitor,which can be bound to some metrics system
+	 *
+	 * @return pool monitor,null if pool not initialized
+	 */
+	public ConnectionPoolJMXBean getPoolMonitor(){
+		ConnectionPool curPool=pool;
+		return (curPool instanceof ConnectionPoolJMXBean)?(ConnectionPoolJMXBean)curPool:null;
+	}
 	public void close(){
 		if(pool!=null) {
 			pool.shutdown();
@@ -218,6 +218,148 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 * enableJMX
 	 */
 	private boolean enableJMX;
+
+	/**
+	 * collect borrow,creation,test and statement cache statistics
+	 */
+	private boolean enableMetrics;
+
+	/**
+	 * partition size of 'cn.beecp.pool.PartitionedConnectionPool',connections
+	 * and concurrent size are split into partitions
+	 */
+	private int partitionSize=4;
+
+	/**
+	 * disk folder to cache proxy classes generated at runtime,
+	 * only used when proxy classes not found in classpath
+	 */
+	private String proxyClassCacheFolder;
+
+	/**
+	 * generate proxy classes casting to driver classes for pool,need javassist at runtime
+	 */
+	private boolean driverSpecializedProxy;
+
+	/**
+	 * result set getters not check close state,it is checked on cursor moving,
+	 * open result sets are closed when connection returned to pool
+	 */
+	private boolean thinResultSet;
+
+	/**
+	 * connections return driver statements and result sets(not wrapped,not cached),
+	 * connection is rolled back on return when autoCommit is off,only for code
+	 * which closes statements and not close raw connection got from them;
+	 * trusted connections are not closed by 'holdIdleTimeout'(executions not tracked)
+	 */
+	private boolean trustedMode;
+
+	/**
+	 * max size of coalesced inserts,single row inserts executed by 'executeUpdate()' on a
+	 * prepared statement in transaction are added into batch,which is executed on size reached,
+	 * commit,savepoint,statement close or other executions;0 means not coalesce.
+	 * Some drivers(H2...)reset statement parameters on batch execution,so set parameters
+	 * of the statement after executions of other statements
+	 */
+	private int updateBatchSize;
+
+	/**
+	 * enable sql execution profile,connections create profiled statements(generated with
+	 * timing code),execution time is aggregated per sql,result can be viewed by JMX
+	 */
+	private boolean enableSqlProfile;
+
+	/**
+	 * max size of profiled sql,when full,a quarter of sql with min total time are removed
+	 */
+	private int sqlProfileSize=100;
+
+	/**
+	 * replace literals of sql with '?'(whitespace collapsed)before aggregation,
+	 * then statements with different literals are aggregated as one
+	 */
+	private boolean sqlProfileNormalize;
+
+	/**
+	 * milliseconds:threshold of slow sql,execution over it is logged,0 means not log
+	 */
+	private long slowSqlThreshold;
+
+	/**
+	 * max size of cached query results,0 means not cache.Results of prepared queries
+	 * on 'resultCacheTables' are cached(in autoCommit mode),writes to these tables through
+	 * pool invalidate their results,queries on them must be deterministic
+	 */
+	private int resultCacheSize;
+
+	/**
+	 * milliseconds:time to live of cached query result
+	 */
+	private long resultCacheTimeToLive=60000;
+
+	/**
+	 * table names of cached queries,split by ',',max size is 64;not allowed in trusted mode
+	 */
+	private String resultCacheTables;
+
+	/**
+	 * session state(autoCommit,transactionIsolation,readOnly,catalog)is kept in pool,getters of
+	 * connection return kept values and setters with same value are skipped(no driver round trip);
+	 * state changed by sql(such as 'use db')is not seen,so not change it by sql when enabled
+	 */
+	private boolean cacheSessionState;
+
+	/**
+	 * seconds:default query timeout of statements,enforced by pool(not driver timer),statements
+	 * are cancelled by one shared timer thread on timeout,explicit 'setQueryTimeout' on statement
+	 * is also enforced by pool when set;0 means not managed by pool
+	 */
+	private int defaultQueryTimeout;
+
+	/**
+	 * reject borrow request immediately when pool is full and estimated wait time(waiter count
+	 * divided by recent release rate of connections)exceeds its max wait,a 'RequestRejectedException'
+	 * is thrown,so latency is bounded under overload
+	 */
+	private boolean enableLoadShedding;
+
+	/**
+	 * borrowed connections are limited by an adaptive limit(TCP Vegas style),which is adjusted by
+	 * round trip time of queries against min round trip time,limit begins from 'concurrentSize'
+	 * and is between 1 and 'maxActive',current limit can be read from pool JMX bean
+	 */
+	private boolean adaptiveConcurrency;
+
+	/**
+	 * borrowers with priority(0 to 9,5 is normal,see 'BeeDataSource.getConnectionByPriority')are
+	 * served by priority,a returned connection is transferred to waiter of highest priority,and
+	 * waiters of higher priority than normal not wait for 'concurrentSize' permit;fair mode is
+	 * recommended,otherwise idle connections may be taken by new borrowers directly
+	 */
+	private boolean priorityBorrow;
+
+	/**
+	 * milliseconds:priority of a waiter is raised one level for each aging time waited,so waiters
+	 * of low priority are not starved;0 means no aging
+	 */
+	private long priorityAgingTime=1000;
+
+	/**
+	 * a returned connection is transferred to waiter of earliest deadline(borrow time plus its max
+	 * wait),not the longest waiting one,so waiters with little time left are served before timeout;
+	 * waiters not wait for 'concurrentSize' permit,with 'priorityBorrow',it orders waiters of same priority
+	 */
+	private boolean deadlineFirstTransfer;
+
+	/**
+	 * connection quotas of tenants(see 'BeeDataSource.getConnectionByTenant'),format:'tenant=min-max'
+	 * split by ',',such as 'a=2-6,b=1-4,*=0-4',quota of '*' is applied to other tenants;max size
+	 * limits borrowed connections of a tenant,min size is guaranteed but idle connections are lent
+	 * to other tenants,then reclaimed on return(waiters of tenants under min size are served first);
+	 * quotas of other tenants are created on demand and evicted by idle check when not in use
+	 */
+	private String tenantQuotas;
 	
 	/**
 	 * Default implementation class name
@@ -306,7 +448,7 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		return initialSize;
 	}
 	public void setInitialSize(int initialSize) {
-		if(!this.checked && initialSize>0)
+		if(!this.checked && initialSize>=0)
 		this.initialSize = initialSize;
 	}
 	public int getMaxActive() {
@@ -477,7 +619,161 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	  if(!this.checked)
 		this.enableJMX = enableJMX;
 	}
-	void copyTo(BeeDataSourceConfig config){
+	public boolean isEnableMetrics() {
+		return enableMetrics;
+	}
+	public void setEnableMetrics(boolean enableMetrics) {
+		if(!this.checked)
+		this.enableMetrics = enableMetrics;
+	}
+	public int getPartitionSize() {
+		return partitionSize;
+	}
+	public void setPartitionSize(int partitionSize) {
+		if(!this.checked && partitionSize>0)
+		this.partitionSize = partitionSize;
+	}
+	public String getProxyClassCacheFolder() {
+		return proxyClassCacheFolder;
+	}
+	public void setProxyClassCacheFolder(String proxyClassCacheFolder) {
+		if(!this.checked)
+		this.proxyClassCacheFolder = proxyClassCacheFolder;
+	}
+	public boolean isDriverSpecializedProxy() {
+		return driverSpecializedProxy;
+	}
+	public void setDriverSpecializedProxy(boolean driverSpecializedProxy) {
+		if(!this.checked)
+		this.driverSpecializedProxy = driverSpecializedProxy;
+	}
+	public boolean isThinResultSet() {
+		return thinResultSet;
+	}
+	public void setThinResultSet(boolean thinResultSet) {
+		if(!this.checked)
+		this.thinResultSet = thinResultSet;
+	}
+	public boolean isTrustedMode() {
+		return trustedMode;
+	}
+	public void setTrustedMode(boolean trustedMode) {
+		if(!this.checked)
+		this.trustedMode = trustedMode;
+	}
+	public int getUpdateBatchSize() {
+		return updateBatchSize;
+	}
+	public void setUpdateBatchSize(int updateBatchSize) {
+		if(!this.checked && updateBatchSize>=0)
+		this.updateBatchSize = updateBatchSize;
+	}
+	public boolean isEnableSqlProfile() {
+		return enableSqlProfile;
+	}
+	public void setEnableSqlProfile(boolean enableSqlProfile) {
+		if(!this.checked)
+		this.enableSqlProfile = enableSqlProfile;
+	}
+	public int getSqlProfileSize() {
+		return sqlProfileSize;
+	}
+	public void setSqlProfileSize(int sqlProfileSize) {
+		if(!this.checked && sqlProfileSize>0)
+		this.sqlProfileSize = sqlProfileSize;
+	}
+	public boolean isSqlProfileNormalize() {
+		return sqlProfileNormalize;
+	}
+	public void setSqlProfileNormalize(boolean sqlProfileNormalize) {
+		if(!this.checked)
+		this.sqlProfileNormalize = sqlProfileNormalize;
+	}
+	public long getSlowSqlThreshold() {
+		return slowSqlThreshold;
+	}
+	public void setSlowSqlThreshold(long slowSqlThreshold) {
+		if(!this.checked && slowSqlThreshold>=0)
+		this.slowSqlThreshold = slowSqlThreshold;
+	}
+	public int getResultCacheSize() {
+		return resultCacheSize;
+	}
+	public void setResultCacheSize(int resultCacheSize) {
+		if(!this.checked && resultCacheSize>=0)
+		this.resultCacheSize = resultCacheSize;
+	}
+	public long getResultCacheTimeToLive() {
+		return resultCacheTimeToLive;
+	}
+	public void setResultCacheTimeToLive(long resultCacheTimeToLive) {
+		if(!this.checked && resultCacheTimeToLive>0)
+		this.resultCacheTimeToLive = resultCacheTimeToLive;
+	}
+	public String getResultCacheTables() {
+		return resultCacheTables;
+	}
+	public void setResultCacheTables(String resultCacheTables) {
+		if(!this.checked)
+		this.resultCacheTables = resultCacheTables;
+	}
+	public boolean isCacheSessionState() {
+		return cacheSessionState;
+	}
+	public void setCacheSessionState(boolean cacheSessionState) {
+		if(!this.checked)
+		this.cacheSessionState = cacheSessionState;
+	}
+	public int getDefaultQueryTimeout() {
+		return defaultQueryTimeout;
+	}
+	public void setDefaultQueryTimeout(int defaultQueryTimeout) {
+		if(!this.checked && defaultQueryTimeout>=0)
+		this.defaultQueryTimeout = defaultQueryTimeout;
+	}
+	public boolean isEnableLoadShedding() {
+		return enableLoadShedding;
+	}
+	public void setEnableLoadShedding(boolean enableLoadShedding) {
+		if(!this.checked)
+		this.enableLoadShedding = enableLoadShedding;
+	}
+	public boolean isAdaptiveConcurrency() {
+		return adaptiveConcurrency;
+	}
+	public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+		if(!this.checked)
+		this.adaptiveConcurrency = adaptiveConcurrency;
+	}
+	public boolean isPriorityBorrow() {
+		return priorityBorrow;
+	}
+	public void setPriorityBorrow(boolean priorityBorrow) {
+		if(!this.checked)
+		this.priorityBorrow = priorityBorrow;
+	}
+	public long getPriorityAgingTime() {
+		return priorityAgingTime;
+	}
+	public void setPriorityAgingTime(long priorityAgingTime) {
+		if(!this.checked && priorityAgingTime>=0)
+		this.priorityAgingTime = priorityAgingTime;
+	}
+	public boolean isDeadlineFirstTransfer() {
+		return deadlineFirstTransfer;
+	}
+	public void setDeadlineFirstTransfer(boolean deadlineFirstTransfer) {
+		if(!this.checked)
+		this.deadlineFirstTransfer = deadlineFirstTransfer;
+	}
+	public String getTenantQuotas() {
+		return tenantQuotas;
+	}
+	public void setTenantQuotas(String tenantQuotas) {
+		if(!this.checked)
+		this.tenantQuotas = tenantQuotas;
+	}
+	public void copyTo(BeeDataSourceConfig config){
 		int modifiers;
 		Field[] fields=BeeDataSourceConfig.class.getDeclaredFields();
 		for(Field field:fields){
@@ -582,6 +878,16 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 			throw new IllegalArgumentException("Borrower max wait time must be greater than zero");
 		if (this.preparedStatementCacheSize < 0)
 			throw new IllegalArgumentException("Statement cache size can't be lesser than zero");
+		if (this.resultCacheSize > 0 && !isNullText(resultCacheTables) && resultCacheTables.split(",").length > 64)
+			throw new IllegalArgumentException("Result cache tables can't be more than 64");
+		if (this.resultCacheSize > 0 && !isNullText(resultCacheTables) && this.trustedMode)
+			throw new IllegalArgumentException("Result cache can't be used in trusted mode,writes on driver statements not invalidate cached results");
+		if (this.enableSqlProfile && this.trustedMode)
+			throw new IllegalArgumentException("Sql profile can't be used in trusted mode,driver statements not profiled");
+		if (this.defaultQueryTimeout > 0 && this.trustedMode)
+			throw new IllegalArgumentException("Default query timeout can't be used in trusted mode,driver statements not managed by pool timer");
+		if (this.adaptiveConcurrency && this.trustedMode)
+			throw new IllegalArgumentException("Adaptive concurrency can't be used in trusted mode,driver statements not sample round trip time");
 
 		defaultTransactionIsolationCode=TransactionIsolationLevel.nameToCode(defaultTransactionIsolation);
 		if(defaultTransactionIsolationCode==-999){
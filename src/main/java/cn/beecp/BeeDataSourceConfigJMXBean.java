@@ -81,4 +81,48 @@ public interface BeeDataSourceConfigJMXBean {
 	String getPoolImplementClassName();
 
 	boolean isEnableJMX();
+
+	boolean isEnableMetrics();
+
+	int getPartitionSize();
+
+	String getProxyClassCacheFolder();
+
+	boolean isDriverSpecializedProxy();
+
+	boolean isThinResultSet();
+
+	boolean isTrustedMode();
+
+	int getUpdateBatchSize();
+
+	boolean isEnableSqlProfile();
+
+	int getSqlProfileSize();
+
+	boolean isSqlProfileNormalize();
+
+	long getSlowSqlThreshold();
+
+	int getResultCacheSize();
+
+	long getResultCacheTimeToLive();
+
+	String getResultCacheTables();
+
+	boolean isCacheSessionState();
+
+	int getDefaultQueryTimeout();
+
+	boolean isEnableLoadShedding();
+
+	boolean isAdaptiveConcurrency();
+
+	boolean isPriorityBorrow();
+
+	long getPriorityAgingTime();
+
+	boolean isDeadlineFirstTransfer();
+
+	String getTenantQuotas();
 }
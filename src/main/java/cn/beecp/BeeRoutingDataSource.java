@@ -0,0 +1,370 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static cn.beecp.util.BeecpUtil.isNullText;
+import static cn.beecp.util.BeecpUtil.oclose;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Read/write routing DataSource over one primary pool and some replica pools,
+ * every node is a BeeDataSource(FastConnectionPool).
+ *
+ * 1) getConnection():lazy connection,bound to a physical connection on first use,
+ *    'setReadOnly(true)' before that routes it to a replica,otherwise to primary
+ * 2) getReadConnection():borrow from a replica directly
+ * 3) getWriteConnection():borrow from primary directly
+ *
+ * Replica is chosen by least outstanding borrows(using size of its pool).A replica
+ * is ejected when borrowing fails,when check query fails or its lag exceeds max lag,
+ * and it is restored by next successful check;reads go to primary if no replica left.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class BeeRoutingDataSource implements DataSource {
+	private final BeeDataSource primary;
+	private final ReplicaNode[] replicas;
+	private final AtomicInteger replicaCursor=new AtomicInteger();
+	private final boolean defaultAutoCommit;
+	private final int defaultTransactionIsolation;
+
+	/**
+	 * SQL to query replica lag,first column of first row is lag in seconds
+	 * (for example,mysql:'select timestampdiff(second,max(ts),now()) from heartbeat')
+	 */
+	private volatile String replicaLagSQL;
+	/**
+	 * max replica lag(milliseconds),replica ejected when lag beyond it
+	 */
+	private volatile long maxReplicaLag=SECONDS.toMillis(10);
+
+	private ScheduledThreadPoolExecutor replicaCheckExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread checkThread = new Thread(r);
+			checkThread.setDaemon(true);
+			checkThread.setName("ReplicaCheckThread");
+			return checkThread;
+		}
+	});
+	private static org.slf4j.Logger log = LoggerFactory.getLogger(BeeRoutingDataSource.class);
+
+	/**
+	 * constructor,replicas are checked every 3 seconds
+	 * @param primaryConfig primary configuration
+	 * @param replicaConfigs replica configurations
+	 */
+	public BeeRoutingDataSource(BeeDataSourceConfig primaryConfig,List<BeeDataSourceConfig> replicaConfigs){
+		this(primaryConfig,replicaConfigs,SECONDS.toMillis(3));
+	}
+
+	/**
+	 * constructor
+	 * @param primaryConfig primary configuration
+	 * @param replicaConfigs replica configurations
+	 * @param replicaCheckInterval replica health check interval(milliseconds)
+	 */
+	public BeeRoutingDataSource(BeeDataSourceConfig primaryConfig,List<BeeDataSourceConfig> replicaConfigs,long replicaCheckInterval){
+		if(primaryConfig==null)throw new IllegalArgumentException("Primary configuration can't be null");
+		if(replicaCheckInterval<=0)throw new IllegalArgumentException("Replica check interval must be greater than zero");
+
+		primary=new BeeDataSource(primaryConfig);
+		defaultAutoCommit=primaryConfig.isDefaultAutoCommit();
+		defaultTransactionIsolation=primary.getDefaultTransactionIsolationCode();
+		int size=(replicaConfigs==null)?0:replicaConfigs.size();
+		replicas=new ReplicaNode[size];
+		try {
+			for (int i = 0; i < size; i++)
+				replicas[i] = new ReplicaNode(new BeeDataSource(replicaConfigs.get(i)));
+		}catch(Error e){
+			close();
+			throw e;
+		}
+
+		replicaCheckExecutor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				checkReplicas();
+			}
+		},replicaCheckInterval,replicaCheckInterval,MILLISECONDS);
+	}
+
+	public String getReplicaLagSQL() {
+		return replicaLagSQL;
+	}
+	public void setReplicaLagSQL(String replicaLagSQL) {
+		this.replicaLagSQL = isNullText(replicaLagSQL)?null:replicaLagSQL;
+	}
+	public long getMaxReplicaLag() {
+		return maxReplicaLag;
+	}
+	public void setMaxReplicaLag(long maxReplicaLag) {
+		if(maxReplicaLag>0)
+		this.maxReplicaLag = maxReplicaLag;
+	}
+	public BeeDataSource getPrimary(){
+		return primary;
+	}
+	public int getReplicaSize(){
+		return replicas.length;
+	}
+	public boolean isReplicaHealthy(int index){
+		return replicas[index].healthy;
+	}
+
+	/**
+	 * borrow a lazy routing connection,it is bound to a physical connection when first statement(or other
+	 * operation need database) is created,'setReadOnly(true)' before that routes it to a replica.
+	 *
+	 * @return a routing connection
+	 * @throws SQLException if data source is closed
+	 */
+	public Connection getConnection() throws SQLException {
+		return (Connection)Proxy.newProxyInstance(BeeRoutingDataSource.class.getClassLoader(),
+				new Class<?>[]{Connection.class},new RoutingConnectionHandler());
+	}
+
+	/**
+	 * borrow a connection from least outstanding healthy replica,
+	 * from primary if no healthy replica
+	 *
+	 * @return a replica connection
+	 * @throws SQLException if failed to borrow
+	 */
+	public Connection getReadConnection() throws SQLException {
+		int size=replicas.length;
+		if(size>0) {
+			int start=(replicaCursor.getAndIncrement()&Integer.MAX_VALUE)%size;
+			for(int tried=0;tried<size;tried++) {
+				ReplicaNode node=null;
+				int minOutstanding=Integer.MAX_VALUE;
+				for (int i=0;i<size;i++) {
+					ReplicaNode cur=replicas[(start+i)%size];
+					if(cur.healthy){
+						int outstanding=cur.getOutstandingSize();
+						if(outstanding<minOutstanding){
+							node=cur;
+							minOutstanding=outstanding;
+						}
+					}
+				}
+				if(node==null)break;
+
+				try {
+					return node.ds.getConnection();
+				}catch(SQLTimeoutException e){
+					throw e;//replica busy,not unhealthy
+				}catch(SQLException e){
+					node.eject("failed to borrow",e);
+				}
+			}
+		}
+		return primary.getConnection();
+	}
+
+	/**
+	 * borrow a connection from primary
+	 *
+	 * @return a primary connection
+	 * @throws SQLException if failed to borrow
+	 */
+	public Connection getWriteConnection() throws SQLException {
+		return primary.getConnection();
+	}
+
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLException("Not support");
+	}
+	public void close(){
+		replicaCheckExecutor.shutdownNow();
+		if(primary!=null)primary.close();
+		for(ReplicaNode node:replicas)
+			if(node!=null)node.ds.close();
+	}
+	public PrintWriter getLogWriter() throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException("Not supported");
+	}
+	public void setLoginTimeout(int seconds) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public int getLoginTimeout() throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+
+	//check health and lag of replicas
+	private void checkReplicas(){
+		for(ReplicaNode node:replicas){
+			Connection con=null;
+			Statement st=null;
+			ResultSet rs=null;
+			try{
+				try{
+					con=node.ds.getConnection();
+				}catch(SQLTimeoutException e){
+					continue;//replica busy,not unhealthy,skip this round
+				}
+				String lagSQL=replicaLagSQL;
+				if(lagSQL!=null){
+					st=con.createStatement();
+					rs=st.executeQuery(lagSQL);
+					if(rs.next()){
+						long lagMillis=(long)(rs.getDouble(1)*1000);
+						if(rs.wasNull()){
+							node.eject("lag is unknown",null);
+							continue;
+						}else if(lagMillis>maxReplicaLag){
+							node.eject("lag("+lagMillis+"ms)beyond max lag",null);
+							continue;
+						}
+					}
+				}
+				node.restore();
+			}catch(Throwable e){
+				node.eject("failed to check",e);
+			}finally{
+				if(rs!=null)oclose(rs);
+				if(st!=null)oclose(st);
+				if(con!=null)oclose(con);
+			}
+		}
+	}
+
+	//replica node
+	private static final class ReplicaNode{
+		final BeeDataSource ds;
+		volatile boolean healthy=true;
+		ReplicaNode(BeeDataSource ds){
+			this.ds=ds;
+		}
+		int getOutstandingSize(){
+			ConnectionPoolJMXBean monitor=ds.getPoolMonitor();
+			return monitor==null?0:monitor.getConnUsingSize();
+		}
+		void eject(String reason,Throwable e){
+			if(healthy){
+				healthy=false;
+				log.warn("Replica({})ejected:{}",getName(),reason,e);
+			}
+		}
+		void restore(){
+			if(!healthy){
+				healthy=true;
+				log.info("Replica({})restored",getName());
+			}
+		}
+		private String getName(){
+			ConnectionPoolJMXBean monitor=ds.getPoolMonitor();
+			return monitor==null?ds.getPoolName():monitor.getPoolName();
+		}
+	}
+
+	//lazy connection,routed on first database operation
+	private final class RoutingConnectionHandler implements InvocationHandler{
+		private Connection target;
+		private boolean closed;
+		private boolean readOnly;
+		private boolean autoCommit=defaultAutoCommit;
+		private boolean autoCommitChanged;
+		private int transactionIsolation=defaultTransactionIsolation;
+		private boolean transactionIsolationChanged;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name=method.getName();
+			if("equals".equals(name))return proxy==args[0];
+			if("hashCode".equals(name))return System.identityHashCode(proxy);
+			if("toString".equals(name))return "RoutingConnection["+(target==null?"unbound":target.toString())+"]";
+			if("isClosed".equals(name))return closed;
+			if("close".equals(name)){
+				if(!closed){
+					closed=true;
+					if(target!=null)target.close();
+				}
+				return null;
+			}
+			if(closed)throw new SQLException("Connection has been closed");
+
+			if(target==null){
+				if("setReadOnly".equals(name)){
+					readOnly=(Boolean)args[0];
+					return null;
+				}else if("isReadOnly".equals(name)){
+					return readOnly;
+				}else if("setAutoCommit".equals(name)){
+					autoCommit=(Boolean)args[0];
+					autoCommitChanged=true;
+					return null;
+				}else if("getAutoCommit".equals(name)){
+					return autoCommit;
+				}else if("setTransactionIsolation".equals(name)){
+					transactionIsolation=(Integer)args[0];
+					transactionIsolationChanged=true;
+					return null;
+				}else if("getTransactionIsolation".equals(name)){
+					return transactionIsolation;
+				}else if("commit".equals(name)||("rollback".equals(name)&&(args==null||args.length==0))){
+					return null;//nothing executed
+				}
+				target=bindTarget();
+			}
+
+			try{
+				return method.invoke(target,args);
+			}catch(InvocationTargetException e){
+				throw e.getTargetException();
+			}
+		}
+		private Connection bindTarget()throws SQLException{
+			Connection con=readOnly?getReadConnection():getWriteConnection();
+			try{
+				if(readOnly)con.setReadOnly(true);
+				if(autoCommitChanged)con.setAutoCommit(autoCommit);
+				if(transactionIsolationChanged)con.setTransactionIsolation(transactionIsolation);
+				return con;
+			}catch(SQLException e){
+				oclose(con);
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.metrics.micrometer;
+
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bind pool statistics to Micrometer registry,micrometer-core is an optional
+ * dependency,this class is only loaded when application uses it.
+ *
+ * Meters read pool counters directly,no pool lock is taken on scraping;
+ * timers and cache counters need 'enableMetrics' in pool configuration.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class PoolMetricsBinder implements MeterBinder {
+	private static final String PoolTag = "pool";
+	private final ConnectionPoolJMXBean pool;
+	private final Iterable<Tag> tags;
+
+	public PoolMetricsBinder(ConnectionPoolJMXBean pool) {
+		this(pool, Collections.<Tag>emptyList());
+	}
+	public PoolMetricsBinder(ConnectionPoolJMXBean pool, Iterable<Tag> extraTags) {
+		if (pool == null) throw new IllegalArgumentException("Pool can't be null");
+		this.pool = pool;
+		this.tags = Tags.of(PoolTag, pool.getPoolName()).and(extraTags);
+	}
+
+	public void bindTo(MeterRegistry registry) {
+		gauge(registry, "beecp.connections.total", PoolReader.TOTAL);
+		gauge(registry, "beecp.connections.idle", PoolReader.IDLE);
+		gauge(registry, "beecp.connections.active", PoolReader.USING);
+		gauge(registry, "beecp.connections.pending", PoolReader.PENDING);
+		gauge(registry, "beecp.connections.concurrency.limit", PoolReader.CONCURRENCY_LIMIT);
+
+		timer(registry, "beecp.connections.acquire", PoolReader.BORROW_COUNT, PoolReader.BORROW_TIME);
+		timer(registry, "beecp.connections.creation", PoolReader.CREATE_COUNT, PoolReader.CREATE_TIME);
+		timer(registry, "beecp.connections.validation", PoolReader.TEST_COUNT, PoolReader.TEST_TIME);
+
+		counter(registry, "beecp.statements.cache.hits", PoolReader.STM_CACHE_HIT);
+		counter(registry, "beecp.statements.cache.misses", PoolReader.STM_CACHE_MISS);
+		counter(registry, "beecp.results.cache.hits", PoolReader.RESULT_CACHE_HIT);
+		counter(registry, "beecp.results.cache.misses", PoolReader.RESULT_CACHE_MISS);
+		counter(registry, "beecp.connections.affinity.hits", PoolReader.AFFINITY_HIT);
+		counter(registry, "beecp.connections.affinity.misses", PoolReader.AFFINITY_MISS);
+	}
+	//builder methods are static interface methods,not callable from Java7 source,so use registry methods
+	private void gauge(MeterRegistry registry, String name, int type) {
+		registry.gauge(name, tags, pool, new PoolReader(type));
+	}
+	private void counter(MeterRegistry registry, String name, int type) {
+		registry.more().counter(name, tags, pool, new PoolReader(type));
+	}
+	private void timer(MeterRegistry registry, String name, int countType, int timeType) {
+		registry.more().timer(name, tags, pool, new PoolReader(countType), new PoolReader(timeType), TimeUnit.NANOSECONDS);
+	}
+
+	//read one statistic value from pool
+	private static final class PoolReader implements ToDoubleFunction<ConnectionPoolJMXBean>, ToLongFunction<ConnectionPoolJMXBean> {
+		static final int TOTAL = 1;
+		static final int IDLE = 2;
+		static final int USING = 3;
+		static final int PENDING = 4;
+		static final int BORROW_COUNT = 5;
+		static final int BORROW_TIME = 6;
+		static final int CREATE_COUNT = 7;
+		static final int CREATE_TIME = 8;
+		static final int TEST_COUNT = 9;
+		static final int TEST_TIME = 10;
+		static final int STM_CACHE_HIT = 11;
+		static final int STM_CACHE_MISS = 12;
+		static final int RESULT_CACHE_HIT = 13;
+		static final int RESULT_CACHE_MISS = 14;
+		static final int AFFINITY_HIT = 15;
+		static final int AFFINITY_MISS = 16;
+		static final int CONCURRENCY_LIMIT = 17;
+		private final int type;
+
+		PoolReader(int type) {
+			this.type = type;
+		}
+		public double applyAsDouble(ConnectionPoolJMXBean pool) {
+			return applyAsLong(pool);
+		}
+		public long applyAsLong(ConnectionPoolJMXBean pool) {
+			switch (type) {
+				case TOTAL:return pool.getConnTotalSize();
+				case IDLE:return pool.getConnIdleSize();
+				case USING:return pool.getConnUsingSize();
+				case PENDING:return pool.getSemaphoreWaitingSize() + pool.getTransferWaitingSize();
+				case BORROW_COUNT:return pool.getBorrowCount();
+				case BORROW_TIME:return pool.getBorrowTimeTotal();
+				case CREATE_COUNT:return pool.getCreateCount();
+				case CREATE_TIME:return pool.getCreateTimeTotal();
+				case TEST_COUNT:return pool.getTestCount();
+				case TEST_TIME:return pool.getTestTimeTotal();
+				case STM_CACHE_HIT:return pool.getStatementCacheHitCount();
+				case STM_CACHE_MISS:return pool.getStatementCacheMissCount();
+				case RESULT_CACHE_HIT:return pool.getResultCacheHitCount();
+				case RESULT_CACHE_MISS:return pool.getResultCacheMissCount();
+				case AFFINITY_HIT:return pool.getAffinityHitCount();
+				case AFFINITY_MISS:return pool.getAffinityMissCount();
+				case CONCURRENCY_LIMIT:return pool.getConcurrencyLimit();
+				default:return 0;
+			}
+		}
+	}
+}
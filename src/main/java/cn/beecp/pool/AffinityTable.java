@@ -0,0 +1,78 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Affinity key to last used connection,keys are hashed to slots(no lock),one slot keeps
+ * the last bound connection,which also keeps its key,so a key overwritten by another one
+ * in same slot or a connection borrowed by another key is a miss(best effort).
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class AffinityTable {
+	private static final int MinSlotSize = 64;
+	private final int slotMask;
+	private final AtomicReferenceArray<PooledConnection> slots;
+	private final StripedCounter hitCounter = new StripedCounter();
+	private final StripedCounter missCounter = new StripedCounter();
+
+	//slot size is power of 2 and not less than 8 times of connection size
+	AffinityTable(int maxConnSize) {
+		int size = MinSlotSize;
+		while (size < maxConnSize * 8 && size < (1 << 20))
+			size <<= 1;
+		slotMask = size - 1;
+		slots = new AtomicReferenceArray<PooledConnection>(size);
+	}
+	private int indexOf(Object key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & slotMask;
+	}
+
+	/**
+	 * borrow the connection last bound to key if it is idle
+	 *
+	 * @param key affinity key
+	 * @return null if connection not found or not idle
+	 * @throws SQLException if failed to create proxy connection
+	 */
+	Connection borrow(Object key) throws SQLException {
+		PooledConnection pConn = slots.get(indexOf(key));
+		Connection con = (pConn != null && key.equals(pConn.affinityKey)) ? pConn.getPool().claimConnection(pConn) : null;
+		if (con != null)
+			hitCounter.increment();
+		else
+			missCounter.increment();
+		return con;
+	}
+	//bind key to borrowed connection
+	void bind(Object key, Connection con) {
+		PooledConnection pConn = ((ProxyConnectionBase) con).pConn;
+		pConn.affinityKey = key;
+		slots.set(indexOf(key), pConn);
+	}
+	long getHitCount() {
+		return hitCounter.sum();
+	}
+	long getMissCount() {
+		return missCounter.sum();
+	}
+}
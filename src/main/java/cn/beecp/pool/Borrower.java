@@ -22,7 +22,14 @@ package cn.beecp.pool;
  * @version 1.0
  */
 class Borrower {
+	static final int MinPriority=0;
+	static final int NormalPriority=5;
+	static final int MaxPriority=9;
 	boolean hasHoldNewOne;
+	int priority=NormalPriority;//priority of current borrow
+	long waitStartTime;//begin time in waiting queue
+	long deadline;//wait deadline in waiting queue
+	TenantQuota tenantQuota;//quota of tenant of current borrow
 	volatile Object stateObject;
 	PooledConnection lastUsedConn;
 	Thread thread=Thread.currentThread();
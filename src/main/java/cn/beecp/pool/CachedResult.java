@@ -0,0 +1,61 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * rows of a query read into memory,shared by cached result sets(read only)
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class CachedResult extends DetachedRows {
+	final Object[][] rows;
+	final long tableMask;
+	final long version;
+	final long loadTime;
+
+	CachedResult(ResultSet rs, long tableMask, long version) throws SQLException {
+		super(rs.getMetaData());
+		this.tableMask = tableMask;
+		this.version = version;
+		this.loadTime = currentTimeMillis();
+
+		int[] types = new int[columnCount];
+		for (int i = 1; i <= columnCount; i++)
+			types[i - 1] = metaData.getColumnType(i);
+
+		ArrayList<Object[]> rowList = new ArrayList<Object[]>();
+		while (rs.next()) {
+			Object[] row = new Object[columnCount];
+			for (int i = 1; i <= columnCount; i++)
+				row[i - 1] = readValue(rs, i, types[i - 1]);
+			rowList.add(row);
+		}
+		rows = rowList.toArray(new Object[rowList.size()][]);
+	}
+	int getRowCount() {
+		return rows.length;
+	}
+	Object getValue(int row, int column) {
+		return rows[row][column - 1];
+	}
+}
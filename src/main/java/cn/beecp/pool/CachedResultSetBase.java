@@ -0,0 +1,368 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import static cn.beecp.pool.PoolExceptionList.ResultSetClosedException;
+
+/**
+ * Read only and scrollable result set on detached rows(cached or spooled),getters by column
+ * index are implemented here,getters by column label and unsupported methods are generated
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+abstract class CachedResultSetBase implements ResultSet {
+	private boolean isClosed;
+	private boolean wasNull;
+	private int cursor;//0:before first,rowCount+1:after last
+	private int fetchSize;
+	private int fetchDirection = FETCH_FORWARD;
+	private final int rowCount;
+	private final DetachedRows rows;
+	private final ProxyStatementBase proxyStatement;//null when detached from statement
+
+	public CachedResultSetBase(DetachedRows rows, ProxyStatementBase proxyStatement) {
+		this.rows = rows;
+		this.rowCount = rows.getRowCount();
+		this.proxyStatement = proxyStatement;
+	}
+	protected void checkClose() throws SQLException {
+		if (isClosed) throw ResultSetClosedException;
+		if (proxyStatement != null) proxyStatement.checkClose();
+	}
+	private Object getValue(int columnIndex) throws SQLException {
+		checkClose();
+		if (cursor < 1 || cursor > rowCount) throw new SQLException("Cursor not on a row");
+		if (columnIndex < 1 || columnIndex > rows.columnCount) throw new SQLException("Invalid column index:" + columnIndex);
+		Object value = rows.getValue(cursor - 1, columnIndex);
+		wasNull = value == null;
+		return value;
+	}
+	private static SQLException conversionException(Object value, String type) {
+		return new SQLException("Can't convert value(" + value.getClass().getName() + ")to " + type);
+	}
+
+	//******************************** cursor **************************************//
+	public boolean next() throws SQLException {
+		checkClose();
+		if (cursor <= rowCount) cursor++;
+		return cursor <= rowCount;
+	}
+	public boolean previous() throws SQLException {
+		checkClose();
+		if (cursor > 0) cursor--;
+		return cursor > 0;
+	}
+	public boolean first() throws SQLException {
+		return absolute(1);
+	}
+	public boolean last() throws SQLException {
+		return absolute(-1);
+	}
+	public void beforeFirst() throws SQLException {
+		checkClose();
+		cursor = 0;
+	}
+	public void afterLast() throws SQLException {
+		checkClose();
+		cursor = rowCount + 1;
+	}
+	public boolean absolute(int row) throws SQLException {
+		checkClose();
+		if (row >= 0)
+			cursor = Math.min(row, rowCount + 1);
+		else
+			cursor = Math.max(rowCount + row + 1, 0);
+		return cursor >= 1 && cursor <= rowCount;
+	}
+	public boolean relative(int rows) throws SQLException {
+		checkClose();
+		long row = (long) cursor + rows;
+		cursor = (int) Math.max(0, Math.min(row, rowCount + 1));
+		return cursor >= 1 && cursor <= rowCount;
+	}
+	public boolean isBeforeFirst() throws SQLException {
+		checkClose();
+		return rowCount > 0 && cursor == 0;
+	}
+	public boolean isAfterLast() throws SQLException {
+		checkClose();
+		return rowCount > 0 && cursor == rowCount + 1;
+	}
+	public boolean isFirst() throws SQLException {
+		checkClose();
+		return rowCount > 0 && cursor == 1;
+	}
+	public boolean isLast() throws SQLException {
+		checkClose();
+		return rowCount > 0 && cursor == rowCount;
+	}
+	public int getRow() throws SQLException {
+		checkClose();
+		return (cursor >= 1 && cursor <= rowCount) ? cursor : 0;
+	}
+
+	//******************************** getters by index **************************************//
+	public boolean wasNull() throws SQLException {
+		checkClose();
+		return wasNull;
+	}
+	public int findColumn(String columnLabel) throws SQLException {
+		checkClose();
+		return rows.findColumn(columnLabel);
+	}
+	public Object getObject(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value instanceof byte[]) return ((byte[]) value).clone();
+		if (value instanceof java.util.Date) return ((java.util.Date) value).clone();
+		return value;
+	}
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		if (type == null) throw new SQLException("Type can't be null");
+		Object value = getValue(columnIndex);
+		if (value == null) return null;
+		if (type == String.class) return type.cast(getString(columnIndex));
+		if (type == Integer.class) return type.cast(getInt(columnIndex));
+		if (type == Long.class) return type.cast(getLong(columnIndex));
+		if (type == Short.class) return type.cast(getShort(columnIndex));
+		if (type == Byte.class) return type.cast(getByte(columnIndex));
+		if (type == Double.class) return type.cast(getDouble(columnIndex));
+		if (type == Float.class) return type.cast(getFloat(columnIndex));
+		if (type == Boolean.class) return type.cast(getBoolean(columnIndex));
+		if (type == BigDecimal.class) return type.cast(getBigDecimal(columnIndex));
+		if (type == byte[].class) return type.cast(getBytes(columnIndex));
+		if (type == Date.class) return type.cast(getDate(columnIndex));
+		if (type == Time.class) return type.cast(getTime(columnIndex));
+		if (type == Timestamp.class) return type.cast(getTimestamp(columnIndex));
+		if (type.isInstance(value)) return type.cast(getObject(columnIndex));
+		throw conversionException(value, type.getName());
+	}
+	public String getString(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return null;
+		if (value instanceof byte[]) throw conversionException(value, "String");
+		return value.toString();
+	}
+	public String getNString(int columnIndex) throws SQLException {
+		return getString(columnIndex);
+	}
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return false;
+		if (value instanceof Boolean) return (Boolean) value;
+		if (value instanceof Number) return ((Number) value).intValue() != 0;
+		if (value instanceof String) {
+			String text = ((String) value).trim();
+			return "1".equals(text) || "true".equalsIgnoreCase(text) || "y".equalsIgnoreCase(text);
+		}
+		throw conversionException(value, "boolean");
+	}
+	private Number getNumber(int columnIndex, String type) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return 0;
+		if (value instanceof Number) return (Number) value;
+		if (value instanceof Boolean) return ((Boolean) value) ? 1 : 0;
+		if (value instanceof String) {
+			try {
+				return new BigDecimal(((String) value).trim());
+			} catch (NumberFormatException e) {
+				throw new SQLException("Can't convert value(" + value + ")to " + type, e);
+			}
+		}
+		throw conversionException(value, type);
+	}
+	public byte getByte(int columnIndex) throws SQLException {
+		return getNumber(columnIndex, "byte").byteValue();
+	}
+	public short getShort(int columnIndex) throws SQLException {
+		return getNumber(columnIndex, "short").shortValue();
+	}
+	public int getInt(int columnIndex) throws SQLException {
+		return getNumber(columnIndex, "int").intValue();
+	}
+	public long getLong(int columnIndex) throws SQLException {
+		return getNumber(columnIndex, "long").longValue();
+	}
+	public float getFloat(int columnIndex) throws SQLException {
+		return getNumber(columnIndex, "float").floatValue();
+	}
+	public double getDouble(int columnIndex) throws SQLException {
+		return getNumber(columnIndex, "double").doubleValue();
+	}
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return null;
+		if (value instanceof BigDecimal) return (BigDecimal) value;
+		if (value instanceof BigInteger) return new BigDecimal((BigInteger) value);
+		if (value instanceof Double || value instanceof Float) return BigDecimal.valueOf(((Number) value).doubleValue());
+		if (value instanceof Number) return BigDecimal.valueOf(((Number) value).longValue());
+		return new BigDecimal(getNumber(columnIndex, "BigDecimal").toString());
+	}
+	@Deprecated
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		BigDecimal value = getBigDecimal(columnIndex);
+		return value == null ? null : value.setScale(scale, RoundingMode.HALF_UP);
+	}
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return null;
+		if (value instanceof byte[]) return ((byte[]) value).clone();
+		throw conversionException(value, "byte[]");
+	}
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		byte[] value = getBytes(columnIndex);
+		return value == null ? null : new ByteArrayInputStream(value);
+	}
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		String value = getString(columnIndex);
+		return value == null ? null : new StringReader(value);
+	}
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		return getCharacterStream(columnIndex);
+	}
+	public Date getDate(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return null;
+		if (value instanceof java.util.Date) return new Date(((java.util.Date) value).getTime());
+		if (value instanceof String) {
+			try {
+				return Date.valueOf(((String) value).trim());
+			} catch (IllegalArgumentException e) {
+				throw new SQLException("Can't convert value(" + value + ")to Date", e);
+			}
+		}
+		throw conversionException(value, "Date");
+	}
+	public Time getTime(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return null;
+		if (value instanceof java.util.Date) return new Time(((java.util.Date) value).getTime());
+		if (value instanceof String) {
+			try {
+				return Time.valueOf(((String) value).trim());
+			} catch (IllegalArgumentException e) {
+				throw new SQLException("Can't convert value(" + value + ")to Time", e);
+			}
+		}
+		throw conversionException(value, "Time");
+	}
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		Object value = getValue(columnIndex);
+		if (value == null) return null;
+		if (value instanceof Timestamp) return (Timestamp) ((Timestamp) value).clone();
+		if (value instanceof java.util.Date) return new Timestamp(((java.util.Date) value).getTime());
+		if (value instanceof String) {
+			try {
+				return Timestamp.valueOf(((String) value).trim());
+			} catch (IllegalArgumentException e) {
+				throw new SQLException("Can't convert value(" + value + ")to Timestamp", e);
+			}
+		}
+		throw conversionException(value, "Timestamp");
+	}
+
+	//******************************** others **************************************//
+	public ResultSetMetaData getMetaData() throws SQLException {
+		checkClose();
+		return rows.metaData;
+	}
+	public Statement getStatement() throws SQLException {
+		checkClose();
+		return (Statement) proxyStatement;
+	}
+	public int getType() throws SQLException {
+		checkClose();
+		return TYPE_SCROLL_INSENSITIVE;
+	}
+	public int getConcurrency() throws SQLException {
+		checkClose();
+		return CONCUR_READ_ONLY;
+	}
+	public int getHoldability() throws SQLException {
+		checkClose();
+		return HOLD_CURSORS_OVER_COMMIT;
+	}
+	public int getFetchDirection() throws SQLException {
+		checkClose();
+		return fetchDirection;
+	}
+	public void setFetchDirection(int direction) throws SQLException {
+		checkClose();
+		fetchDirection = direction;
+	}
+	public int getFetchSize() throws SQLException {
+		checkClose();
+		return fetchSize;
+	}
+	public void setFetchSize(int rows) throws SQLException {
+		checkClose();
+		fetchSize = rows;
+	}
+	public SQLWarning getWarnings() throws SQLException {
+		checkClose();
+		return null;
+	}
+	public void clearWarnings() throws SQLException {
+		checkClose();
+	}
+	public boolean rowUpdated() throws SQLException {
+		checkClose();
+		return false;
+	}
+	public boolean rowInserted() throws SQLException {
+		checkClose();
+		return false;
+	}
+	public boolean rowDeleted() throws SQLException {
+		checkClose();
+		return false;
+	}
+	public boolean isClosed() throws SQLException {
+		return isClosed;
+	}
+	public void close() throws SQLException {
+		if (!isClosed) {
+			isClosed = true;
+			rows.release();
+		}
+	}
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		checkClose();
+		return iface.isInstance(this);
+	}
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		checkClose();
+		if (iface.isInstance(this)) return (T) this;
+		throw new SQLException("Wrapped object is not an instance of " + iface);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Meta data of cached result,copied from driver meta data(not depend on connection)
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class CachedResultSetMetaData implements ResultSetMetaData {
+	private final int columnCount;
+	private final String[] catalogNames;
+	private final String[] schemaNames;
+	private final String[] tableNames;
+	private final String[] columnNames;
+	private final String[] columnLabels;
+	private final String[] columnClassNames;
+	private final String[] columnTypeNames;
+	private final int[] columnTypes;
+	private final int[] displaySizes;
+	private final int[] precisions;
+	private final int[] scales;
+	private final int[] nullables;
+	private final boolean[] autoIncrements;
+	private final boolean[] caseSensitives;
+	private final boolean[] searchables;
+	private final boolean[] currencies;
+	private final boolean[] signeds;
+
+	CachedResultSetMetaData(ResultSetMetaData metaData) throws SQLException {
+		columnCount = metaData.getColumnCount();
+		catalogNames = new String[columnCount];
+		schemaNames = new String[columnCount];
+		tableNames = new String[columnCount];
+		columnNames = new String[columnCount];
+		columnLabels = new String[columnCount];
+		columnClassNames = new String[columnCount];
+		columnTypeNames = new String[columnCount];
+		columnTypes = new int[columnCount];
+		displaySizes = new int[columnCount];
+		precisions = new int[columnCount];
+		scales = new int[columnCount];
+		nullables = new int[columnCount];
+		autoIncrements = new boolean[columnCount];
+		caseSensitives = new boolean[columnCount];
+		searchables = new boolean[columnCount];
+		currencies = new boolean[columnCount];
+		signeds = new boolean[columnCount];
+
+		for (int i = 0; i < columnCount; i++) {
+			int column = i + 1;
+			columnNames[i] = metaData.getColumnName(column);
+			columnLabels[i] = metaData.getColumnLabel(column);
+			columnTypes[i] = metaData.getColumnType(column);
+			columnTypeNames[i] = metaData.getColumnTypeName(column);
+			columnClassNames[i] = metaData.getColumnClassName(column);
+			precisions[i] = metaData.getPrecision(column);
+			scales[i] = metaData.getScale(column);
+			nullables[i] = metaData.isNullable(column);
+			displaySizes[i] = metaData.getColumnDisplaySize(column);
+			signeds[i] = metaData.isSigned(column);
+			try {//not supported by some drivers
+				catalogNames[i] = metaData.getCatalogName(column);
+				schemaNames[i] = metaData.getSchemaName(column);
+				tableNames[i] = metaData.getTableName(column);
+				autoIncrements[i] = metaData.isAutoIncrement(column);
+				caseSensitives[i] = metaData.isCaseSensitive(column);
+				searchables[i] = metaData.isSearchable(column);
+				currencies[i] = metaData.isCurrency(column);
+			} catch (SQLException e) {
+			}
+		}
+	}
+	private int index(int column) throws SQLException {
+		if (column < 1 || column > columnCount) throw new SQLException("Invalid column index:" + column);
+		return column - 1;
+	}
+
+	public int getColumnCount() throws SQLException {
+		return columnCount;
+	}
+	public boolean isAutoIncrement(int column) throws SQLException {
+		return autoIncrements[index(column)];
+	}
+	public boolean isCaseSensitive(int column) throws SQLException {
+		return caseSensitives[index(column)];
+	}
+	public boolean isSearchable(int column) throws SQLException {
+		return searchables[index(column)];
+	}
+	public boolean isCurrency(int column) throws SQLException {
+		return currencies[index(column)];
+	}
+	public int isNullable(int column) throws SQLException {
+		return nullables[index(column)];
+	}
+	public boolean isSigned(int column) throws SQLException {
+		return signeds[index(column)];
+	}
+	public int getColumnDisplaySize(int column) throws SQLException {
+		return displaySizes[index(column)];
+	}
+	public String getColumnLabel(int column) throws SQLException {
+		return columnLabels[index(column)];
+	}
+	public String getColumnName(int column) throws SQLException {
+		return columnNames[index(column)];
+	}
+	public String getSchemaName(int column) throws SQLException {
+		return schemaNames[index(column)];
+	}
+	public int getPrecision(int column) throws SQLException {
+		return precisions[index(column)];
+	}
+	public int getScale(int column) throws SQLException {
+		return scales[index(column)];
+	}
+	public String getTableName(int column) throws SQLException {
+		return tableNames[index(column)];
+	}
+	public String getCatalogName(int column) throws SQLException {
+		return catalogNames[index(column)];
+	}
+	public int getColumnType(int column) throws SQLException {
+		return columnTypes[index(column)];
+	}
+	public String getColumnTypeName(int column) throws SQLException {
+		return columnTypeNames[index(column)];
+	}
+	public boolean isReadOnly(int column) throws SQLException {
+		index(column);
+		return true;
+	}
+	public boolean isWritable(int column) throws SQLException {
+		index(column);
+		return false;
+	}
+	public boolean isDefinitelyWritable(int column) throws SQLException {
+		index(column);
+		return false;
+	}
+	public String getColumnClassName(int column) throws SQLException {
+		return columnClassNames[index(column)];
+	}
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) return (T) this;
+		throw new SQLException("Wrapped object is not an instance of " + iface);
+	}
+}
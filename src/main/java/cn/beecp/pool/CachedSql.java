@@ -0,0 +1,34 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+/**
+ * parsed sql of prepared statement
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class CachedSql {
+	final StatementCachePsKey sqlKey;//null when not a query
+	final long tableMask;
+	final boolean query;
+
+	CachedSql(StatementCachePsKey sqlKey, long tableMask, boolean query) {
+		this.sqlKey = sqlKey;
+		this.tableMask = tableMask;
+		this.query = query;
+	}
+}
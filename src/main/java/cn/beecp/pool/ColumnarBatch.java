@@ -0,0 +1,156 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A batch of rows in columnar layout,filled by 'ColumnarBatchReader'.
+ *
+ * Integer,boolean,date and time columns are stored in long arrays(date and time
+ * as epoch milliseconds);float and double in double arrays;decimal with scale and
+ * precision not over 18 as unscaled values in long arrays with column scale;others
+ * (char,binary,decimal of larger or unknown precision as plain string...)in one byte
+ * array per column with row offsets,character values are UTF-8 encoded.
+ *
+ * Column index begins from 1(same as JDBC),row index begins from 0.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class ColumnarBatch {
+	public static final int TYPE_LONG = 1;
+	public static final int TYPE_DOUBLE = 2;
+	public static final int TYPE_BYTES = 3;
+	public static final int TYPE_DECIMAL = 4;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int[] columnTypes;
+	private final int[] columnScales;
+	private final long[][] longColumns;
+	private final double[][] doubleColumns;
+	private final byte[][] bytesColumns;
+	private final int[][] offsetColumns;
+	private final boolean[][] nullColumns;
+	int rowCount;
+
+	ColumnarBatch(int[] columnTypes, int[] columnScales, int capacity) {
+		int size = columnTypes.length;
+		this.columnTypes = columnTypes;
+		this.columnScales = columnScales;
+		longColumns = new long[size][];
+		doubleColumns = new double[size][];
+		bytesColumns = new byte[size][];
+		offsetColumns = new int[size][];
+		nullColumns = new boolean[size][capacity];
+		for (int i = 0; i < size; i++) {
+			switch (columnTypes[i]) {
+				case TYPE_LONG:
+				case TYPE_DECIMAL:longColumns[i] = new long[capacity];break;
+				case TYPE_DOUBLE:doubleColumns[i] = new double[capacity];break;
+				default:
+					bytesColumns[i] = new byte[capacity * 16];
+					offsetColumns[i] = new int[capacity + 1];
+			}
+		}
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+	public int getColumnCount() {
+		return columnTypes.length;
+	}
+	public int getColumnType(int column) {
+		return columnTypes[column - 1];
+	}
+	public boolean isNull(int column, int row) {
+		return nullColumns[column - 1][row];
+	}
+	/**
+	 * scale of a decimal column,unscaled values are read by 'getLong' or 'getLongs'
+	 */
+	public int getScale(int column) {
+		return columnScales[column - 1];
+	}
+	public long getLong(int column, int row) {
+		return longColumns[column - 1][row];
+	}
+	public BigDecimal getBigDecimal(int column, int row) {
+		if (nullColumns[column - 1][row]) return null;
+		return BigDecimal.valueOf(longColumns[column - 1][row], columnScales[column - 1]);
+	}
+	public double getDouble(int column, int row) {
+		return doubleColumns[column - 1][row];
+	}
+	public String getString(int column, int row) {
+		if (nullColumns[column - 1][row]) return null;
+		int[] offsets = offsetColumns[column - 1];
+		return new String(bytesColumns[column - 1], offsets[row], offsets[row + 1] - offsets[row], UTF8);
+	}
+
+	/**
+	 * values of a long column(unscaled values of a decimal column),valid length is row count
+	 */
+	public long[] getLongs(int column) {
+		return longColumns[column - 1];
+	}
+	/**
+	 * values of a double column,valid length is row count
+	 */
+	public double[] getDoubles(int column) {
+		return doubleColumns[column - 1];
+	}
+	/**
+	 * values of a bytes column,value of row i is from offsets[i] to offsets[i+1]
+	 */
+	public byte[] getBytes(int column) {
+		return bytesColumns[column - 1];
+	}
+	public int[] getOffsets(int column) {
+		return offsetColumns[column - 1];
+	}
+	public boolean[] getNulls(int column) {
+		return nullColumns[column - 1];
+	}
+
+	//********************** called by reader **********************//
+	void setLong(int index, int row, long value, boolean isNull) {
+		longColumns[index][row] = value;
+		nullColumns[index][row] = isNull;
+	}
+	void setDouble(int index, int row, double value, boolean isNull) {
+		doubleColumns[index][row] = value;
+		nullColumns[index][row] = isNull;
+	}
+	void setBytes(int index, int row, byte[] value) {
+		int[] offsets = offsetColumns[index];
+		int begin = offsets[row];
+		if (value == null) {
+			nullColumns[index][row] = true;
+			offsets[row + 1] = begin;
+		} else {
+			nullColumns[index][row] = false;
+			byte[] data = bytesColumns[index];
+			if (begin + value.length > data.length)
+				bytesColumns[index] = data = Arrays.copyOf(data, Math.max(data.length << 1, begin + value.length));
+			System.arraycopy(value, 0, data, begin, value.length);
+			offsets[row + 1] = begin + value.length;
+		}
+	}
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static cn.beecp.pool.ColumnarBatch.TYPE_BYTES;
+import static cn.beecp.pool.ColumnarBatch.TYPE_DECIMAL;
+import static cn.beecp.pool.ColumnarBatch.TYPE_DOUBLE;
+import static cn.beecp.pool.ColumnarBatch.TYPE_LONG;
+import static cn.beecp.pool.ColumnarBatch.UTF8;
+import static cn.beecp.util.BeecpUtil.oclose;
+
+/**
+ * Read a result set into columnar batches,values are stored in primitive arrays(no boxing),
+ * if the result set is a pool proxy,rows are read from driver result set directly.
+ *
+ * Without executor,rows are read in 'next()' and the returned batch is reused by next call;
+ * with executor,rows of next batch are read in executor while caller processes current batch
+ * (two batches are used in turn),current batch is valid until next call.Statement and connection
+ * of the result set must not be used by other threads before reader closed.
+ *
+ * <pre>
+ * ColumnarBatchReader reader = new ColumnarBatchReader(rs, 1000, executor);
+ * try {
+ *   ColumnarBatch batch;
+ *   while ((batch = reader.next()) != null) {
+ *     long[] ids = batch.getLongs(1);
+ *     for (int i = 0; i < batch.getRowCount(); i++) ...
+ *   }
+ * } finally {
+ *   reader.close();//close result set
+ * }
+ * </pre>
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class ColumnarBatchReader {
+	private static final ColumnarBatch EndBatch = new ColumnarBatch(new int[0], new int[0], 0);
+	private final ResultSet resultSet;
+	private final ResultSet rawResultSet;
+	private final int batchSize;
+	private final int[] columnTypes;
+	private final int[] columnScales;
+	private final int[] sqlTypes;
+	private final ColumnarBatch batch;//reused batch without executor
+	private boolean finished;
+	private volatile boolean closed;
+
+	private ColumnarBatch currentBatch;//prefetch begin
+	private LinkedBlockingQueue<ColumnarBatch> freeBatches;
+	private LinkedBlockingQueue<ColumnarBatch> filledBatches;
+	private CountDownLatch fetchDoneLatch;
+	private volatile Throwable fetchFailure;//prefetch end
+
+	/**
+	 * create reader,rows are read in caller thread
+	 *
+	 * @param resultSet result set to read
+	 * @param batchSize max row size of one batch,also as fetch size hint to driver
+	 * @throws SQLException if result set is closed or failed to read metadata
+	 */
+	public ColumnarBatchReader(ResultSet resultSet, int batchSize) throws SQLException {
+		this(resultSet, batchSize, null);
+	}
+
+	/**
+	 * create reader
+	 *
+	 * @param resultSet result set to read
+	 * @param batchSize max row size of one batch,also as fetch size hint to driver
+	 * @param prefetchExecutor executor to read next batch in advance,null means not prefetch
+	 * @throws SQLException if result set is closed or failed to read metadata
+	 */
+	public ColumnarBatchReader(ResultSet resultSet, int batchSize, Executor prefetchExecutor) throws SQLException {
+		if (resultSet == null) throw new SQLException("ResultSet can't be null");
+		if (batchSize <= 0) throw new SQLException("Batch size must be greater than zero");
+		if (resultSet instanceof ProxyResultSetBase) {
+			ProxyResultSetBase proxyResultSet = (ProxyResultSetBase) resultSet;
+			proxyResultSet.checkClose();
+			rawResultSet = proxyResultSet.delegate;
+		} else {
+			rawResultSet = resultSet;
+		}
+
+		this.resultSet = resultSet;
+		this.batchSize = batchSize;
+		try {
+			rawResultSet.setFetchSize(batchSize);
+		} catch (SQLException e) {//only a hint
+		}
+
+		ResultSetMetaData metaData = rawResultSet.getMetaData();
+		columnTypes = new int[metaData.getColumnCount()];
+		columnScales = new int[columnTypes.length];
+		sqlTypes = new int[columnTypes.length];
+		for (int i = 0; i < columnTypes.length; i++) {
+			sqlTypes[i] = metaData.getColumnType(i + 1);
+			columnTypes[i] = getColumnType(metaData, i + 1, sqlTypes[i]);
+			if (columnTypes[i] == TYPE_DECIMAL) columnScales[i] = metaData.getScale(i + 1);
+		}
+
+		if (prefetchExecutor == null) {
+			batch = new ColumnarBatch(columnTypes, columnScales, batchSize);
+		} else {
+			batch = null;
+			freeBatches = new LinkedBlockingQueue<ColumnarBatch>();
+			filledBatches = new LinkedBlockingQueue<ColumnarBatch>();
+			freeBatches.offer(new ColumnarBatch(columnTypes, columnScales, batchSize));
+			freeBatches.offer(new ColumnarBatch(columnTypes, columnScales, batchSize));
+			fetchDoneLatch = new CountDownLatch(1);
+			prefetchExecutor.execute(new PrefetchTask());
+		}
+	}
+	private static int getColumnType(ResultSetMetaData metaData, int column, int sqlType) throws SQLException {
+		switch (sqlType) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP:
+				return TYPE_LONG;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return TYPE_DOUBLE;
+			case Types.DECIMAL:
+			case Types.NUMERIC: {//not narrowed to double,larger or unknown precision read as string
+				int precision = metaData.getPrecision(column);
+				if (precision <= 0 || precision > 18) return TYPE_BYTES;
+				return metaData.getScale(column) == 0 ? TYPE_LONG : TYPE_DECIMAL;
+			}
+			default:
+				return TYPE_BYTES;
+		}
+	}
+
+	/**
+	 * read next batch
+	 *
+	 * @return next batch,null when no more rows
+	 * @throws SQLException if reader is closed or failed to read rows
+	 */
+	public ColumnarBatch next() throws SQLException {
+		if (closed) throw new SQLException("Reader has been closed");
+		if (finished) return null;
+
+		if (batch != null) {
+			fill(batch);
+			if (batch.rowCount < batchSize) finished = true;
+			return batch.rowCount > 0 ? batch : null;
+		}
+
+		if (currentBatch != null) {
+			freeBatches.offer(currentBatch);
+			currentBatch = null;
+		}
+		ColumnarBatch filledBatch;
+		try {
+			filledBatch = filledBatches.take();
+		} catch (InterruptedException e) {
+			throw new SQLException("Interrupted during waiting for batch", e);
+		}
+		if (filledBatch == EndBatch) {
+			finished = true;
+			Throwable failure = fetchFailure;
+			if (failure instanceof SQLException) throw (SQLException) failure;
+			if (failure != null) throw new SQLException("Failed to read batch", failure);
+			return null;
+		}
+		return currentBatch = filledBatch;
+	}
+
+	/**
+	 * close reader and result set,wait prefetch task to stop
+	 */
+	public void close() {
+		if (closed) return;
+		closed = true;
+		if (fetchDoneLatch != null) {
+			freeBatches.offer(EndBatch);//wake up prefetch task
+			boolean interrupted = false;
+			while (true) {
+				try {
+					fetchDoneLatch.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+		oclose(resultSet);
+	}
+
+	//read rows into batch,stop on batch size or last row
+	private void fill(ColumnarBatch batch) throws SQLException {
+		ResultSet rs = rawResultSet;
+		int[] types = columnTypes;
+		int row = 0;
+		while (row < batchSize && rs.next()) {
+			for (int i = 0; i < types.length; i++) {
+				int column = i + 1;
+				switch (types[i]) {
+					case TYPE_LONG:
+						batch.setLong(i, row, readLong(rs, column, sqlTypes[i]), rs.wasNull());
+						break;
+					case TYPE_DOUBLE:
+						batch.setDouble(i, row, rs.getDouble(column), rs.wasNull());
+						break;
+					case TYPE_DECIMAL: {
+						BigDecimal value = rs.getBigDecimal(column);
+						batch.setLong(i, row, value == null ? 0 : readUnscaled(value, columnScales[i]), value == null);
+						break;
+					}
+					default:
+						batch.setBytes(i, row, readBytes(rs, column, sqlTypes[i]));
+				}
+			}
+			row++;
+		}
+		batch.rowCount = row;
+	}
+	private static long readLong(ResultSet rs, int column, int sqlType) throws SQLException {
+		switch (sqlType) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return rs.getBoolean(column) ? 1 : 0;
+			case Types.DATE: {
+				Date date = rs.getDate(column);
+				return date == null ? 0 : date.getTime();
+			}
+			case Types.TIME: {
+				Time time = rs.getTime(column);
+				return time == null ? 0 : time.getTime();
+			}
+			case Types.TIMESTAMP: {
+				Timestamp timestamp = rs.getTimestamp(column);
+				return timestamp == null ? 0 : timestamp.getTime();
+			}
+			default:
+				return rs.getLong(column);
+		}
+	}
+	//unscaled value in column scale,value not fit in long is rejected(not truncated)
+	private static long readUnscaled(BigDecimal value, int scale) throws SQLException {
+		try {
+			BigDecimal scaledValue = value.setScale(scale, RoundingMode.UNNECESSARY);
+			if (scaledValue.unscaledValue().bitLength() < 64) return scaledValue.unscaledValue().longValue();
+		} catch (ArithmeticException e) {
+		}
+		throw new SQLException("Decimal value " + value + " not fit in scale " + scale + " of column");
+	}
+	private static byte[] readBytes(ResultSet rs, int column, int sqlType) throws SQLException {
+		switch (sqlType) {
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return rs.getBytes(column);
+			case Types.DECIMAL:
+			case Types.NUMERIC: {
+				BigDecimal value = rs.getBigDecimal(column);
+				return value == null ? null : value.toPlainString().getBytes(UTF8);
+			}
+			default: {
+				String value = rs.getString(column);
+				return value == null ? null : value.getBytes(UTF8);
+			}
+		}
+	}
+
+	//read batches in executor,two batches are used in turn
+	private final class PrefetchTask implements Runnable {
+		public void run() {
+			try {
+				while (!closed) {
+					ColumnarBatch freeBatch = freeBatches.take();
+					if (closed || freeBatch == EndBatch) break;
+					fill(freeBatch);
+					if (freeBatch.rowCount > 0) filledBatches.offer(freeBatch);
+					if (freeBatch.rowCount < batchSize) break;
+				}
+			} catch (Throwable e) {
+				fetchFailure = e;
+			} finally {
+				filledBatches.offer(EndBatch);
+				fetchDoneLatch.countDown();
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Adaptive concurrency limiter(TCP Vegas style),one permit is held by a borrowed
+ * connection until it returned,limit is adjusted by query round trip time(rtt).
+ *
+ * Average and min rtt are sampled in windows,queue size of database is estimated
+ * as limit*(1-minRtt/avgRtt),limit is increased when queue is short and decreased
+ * when queue is long;min rtt is probed again periodically,so a changed database
+ * is learned.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ConcurrencyLimiter extends Semaphore {
+	private static final long serialVersionUID = 1L;
+	private static final long WindowNanos = MILLISECONDS.toNanos(100);
+	private static final long ProbeNanos = SECONDS.toNanos(30);
+	private static final AtomicLongFieldUpdater<ConcurrencyLimiter> WindowTimeUpdater = AtomicLongFieldUpdater.newUpdater(ConcurrencyLimiter.class, "windowTime");
+	private final int maxLimit;
+	private final StripedCounter rttCounter = new StripedCounter();
+	private final StripedCounter rttTimeCounter = new StripedCounter();
+	private volatile int limit;
+	private volatile long windowTime = nanoTime();
+	private volatile long windowMinRtt = Long.MAX_VALUE;//racy update,a lost min is not important
+	private long windowRttCount;//read and written by window updating thread(won the time CAS)
+	private long windowRttTime;
+	private long minRtt;
+	private long probeTime = nanoTime();
+
+	ConcurrencyLimiter(int initLimit, int maxLimit, boolean fair) {
+		super(initLimit, fair);
+		this.limit = initLimit;
+		this.maxLimit = maxLimit;
+	}
+	int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * record round trip time of one query
+	 *
+	 * @param rtt nanoseconds
+	 */
+	void onRtt(long rtt) {
+		rttCounter.increment();
+		rttTimeCounter.add(rtt);
+		if (rtt < windowMinRtt) windowMinRtt = rtt;
+
+		long time = windowTime;
+		long now = nanoTime();
+		if (now - time >= WindowNanos && WindowTimeUpdater.compareAndSet(this, time, now))
+			updateLimit(now);
+	}
+	private synchronized void updateLimit(long now) {
+		long count = rttCounter.sum();
+		long rttTime = rttTimeCounter.sum();
+		long sampleCount = count - windowRttCount;
+		long sampleTime = rttTime - windowRttTime;
+		windowRttCount = count;
+		windowRttTime = rttTime;
+		long sampleMinRtt = windowMinRtt;
+		windowMinRtt = Long.MAX_VALUE;
+		if (sampleCount == 0) return;
+
+		long avgRtt = Math.max(sampleTime / sampleCount, 1);
+		sampleMinRtt = Math.max(Math.min(sampleMinRtt, avgRtt), 1);
+		if (minRtt == 0 || sampleMinRtt < minRtt) minRtt = sampleMinRtt;
+		if (now - probeTime >= ProbeNanos) {//probe again
+			probeTime = now;
+			minRtt = sampleMinRtt;
+		}
+
+		int curLimit = limit;
+		double queueSize = curLimit * (1 - (double) minRtt / avgRtt);
+		double log = Math.log10(curLimit);
+		double alpha = Math.max(1, 3 * log);
+		double beta = Math.max(2, 6 * log);
+		if (queueSize < alpha) {
+			int inUsing = curLimit - availablePermits();
+			if (curLimit < maxLimit && inUsing * 2 >= curLimit) {//not increase when limit is not reached
+				limit = curLimit + 1;
+				release();
+			}
+		} else if (queueSize > beta && curLimit > 1) {
+			limit = curLimit - 1;
+			reducePermits(1);
+		}
+	}
+}
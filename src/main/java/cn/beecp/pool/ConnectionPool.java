@@ -54,6 +54,73 @@ public interface ConnectionPool {
 	 *             if pool is closed or waiting timeout,then throw exception
 	 */
 	Connection getConnection(long wait) throws SQLException;
+
+	/**
+	 * borrow one connection from pool,prefer the connection last used by affinity key
+	 *
+	 * @param affinityKey logical session key,null means no affinity
+	 * @param wait must be greater than zero
+	 *
+	 * @return If the connection last used by the key is idle,then return it;otherwise
+	 *         return one as {@link #getConnection(long)}
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	Connection getConnection(Object affinityKey, long wait) throws SQLException;
+
+	/**
+	 * borrow one connection from pool before deadline,remaining time of deadline is
+	 * query timeout of statements of the connection
+	 *
+	 * @param deadline absolute time in {@link System#nanoTime()}
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release or deadline
+	 * @throws SQLException
+	 *             if pool is closed or deadline reached,then throw exception
+	 */
+	Connection getConnectionByDeadline(long deadline) throws SQLException;
+
+	/**
+	 * borrow one connection from pool with priority,returned connections are transferred
+	 * to waiters of higher priority first when priority borrow enabled
+	 *
+	 * @param priority 0(lowest) to 9(highest),5 is normal
+	 * @param wait must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed,priority is invalid or waiting timeout,then throw exception
+	 */
+	Connection getConnectionByPriority(int priority, long wait) throws SQLException;
+
+	/**
+	 * borrow one connection from pool for a tenant,borrowed connections of a tenant
+	 * are limited by its quota when tenant quotas configured
+	 *
+	 * @param tenant tenant key of borrower,null means no quota
+	 * @param wait must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	Connection getConnectionByTenant(String tenant, long wait) throws SQLException;
+
+	/**
+	 * borrow multiple connections from pool,all or none,borrowers not hold part of
+	 * connections and wait for each other
+	 *
+	 * @param count connection count,between 1 and pool max size
+	 * @param wait must be greater than zero
+	 *
+	 * @return connections of count
+	 * @throws SQLException
+	 *             if pool is closed,count is invalid or waiting timeout,then throw exception
+	 */
+	Connection[] getConnections(int count, long wait) throws SQLException;
 	
 	/**
 	 * return connection to pool
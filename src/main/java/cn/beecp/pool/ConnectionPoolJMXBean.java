@@ -49,5 +49,54 @@ public interface ConnectionPoolJMXBean {
 
 	int getTransferWaitingSize();
 
+	//return pool name
+	String getPoolName();
+
+	//below statistics are collected when 'enableMetrics' is true,times in nanoseconds
+	long getBorrowCount();
+
+	long getBorrowTimeTotal();
+
+	long getCreateCount();
+
+	long getCreateTimeTotal();
+
+	long getTestCount();
+
+	long getTestTimeTotal();
+
+	long getStatementCacheHitCount();
+
+	long getStatementCacheMissCount();
+
+	//below statistics are collected when result cache enabled,hit ratio is hits/(hits+misses)
+	long getResultCacheHitCount();
+
+	long getResultCacheMissCount();
+
+	int getResultCacheSize();
+
+	//remove all cached results,such as after writes not through pool
+	void clearResultCache();
+
+	//borrows with affinity key,hit means the connection last used by the key was returned
+	long getAffinityHitCount();
+
+	long getAffinityMissCount();
+
+	//current limit of adaptive concurrency limiter(borrowed connections),concurrent size when not adaptive
+	int getConcurrencyLimit();
+
+	//below statistics are collected when 'priorityBorrow' is true,indexed by priority,times in nanoseconds
+	long[] getPriorityBorrowCounts();
+
+	long[] getPriorityBorrowTimeTotals();
+
+	/**
+	 * usage of tenants when 'tenantQuotas' configured,one line for a tenant:
+	 * tenant,using size,min size,max size,borrow count,timeout count
+	 */
+	String[] getTenantUsages();
+
 }
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Rows read out from a result set(not depend on connection),viewed by 'CachedResultSetBase'
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+abstract class DetachedRows {
+	final int columnCount;
+	final CachedResultSetMetaData metaData;
+	private final HashMap<String, Integer> columnIndexMap;
+
+	DetachedRows(ResultSetMetaData rsMetaData) throws SQLException {
+		metaData = new CachedResultSetMetaData(rsMetaData);
+		columnCount = metaData.getColumnCount();
+		columnIndexMap = new HashMap<String, Integer>(columnCount * 2);
+		for (int i = 1; i <= columnCount; i++) {
+			String label = metaData.getColumnLabel(i).toLowerCase(Locale.ENGLISH);
+			if (!columnIndexMap.containsKey(label)) columnIndexMap.put(label, i);
+		}
+	}
+
+	/**
+	 * @return row size
+	 */
+	abstract int getRowCount();
+
+	/**
+	 * @param row    row index,start from 0
+	 * @param column column index,start from 1
+	 * @return column value,null for sql null
+	 * @throws SQLException if rows released
+	 */
+	abstract Object getValue(int row, int column) throws SQLException;
+
+	//called on result set close
+	void release() {
+	}
+	int findColumn(String columnLabel) throws SQLException {
+		Integer index = columnLabel == null ? null : columnIndexMap.get(columnLabel.toLowerCase(Locale.ENGLISH));
+		if (index == null) throw new SQLException("Column not found:" + columnLabel);
+		return index;
+	}
+
+	//lob values are read out,not depend on connection
+	static Object readValue(ResultSet rs, int column, int type) throws SQLException {
+		switch (type) {
+			case Types.BLOB:
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+				return rs.getBytes(column);
+			case Types.CLOB:
+			case Types.NCLOB:
+			case Types.LONGVARCHAR:
+			case Types.LONGNVARCHAR:
+				return rs.getString(column);
+			default:
+				return rs.getObject(column);
+		}
+	}
+}
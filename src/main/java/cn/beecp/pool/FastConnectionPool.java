@@ -24,13 +24,22 @@ import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 
 import static cn.beecp.pool.PoolExceptionList.*;
 import static cn.beecp.pool.PoolObjectsState.*;
@@ -38,6 +47,7 @@ import static cn.beecp.util.BeecpUtil.isNullText;
 import static cn.beecp.util.BeecpUtil.oclose;
 import static java.lang.System.currentTimeMillis;
 import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.concurrent.locks.LockSupport.*;
@@ -58,6 +68,11 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	private String ConnectionTestSQL;//select
 	private int ConnectionTestTimeout;//seconds
 	private long ConnectionTestInterval;//milliseconds
+	private boolean MetricsEnabled;
+	private boolean FairMode;
+	private boolean PriorityBorrow;
+	private long PriorityAgingNanos;
+	private boolean DeadlineFirstTransfer;
 
 	private ConnectionPoolHook exitHook;
 	private BeeDataSourceConfig poolConfig;
@@ -66,9 +81,29 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	private TransferPolicy transferPolicy;
 	private ConnectionTestPolicy testPolicy;
 	private ConnectionFactory connFactory;
+	private ProxyConnectionFactory proxyConnFactory;
 	private final Object connArrayLock =new Object();
 	private volatile PooledConnection[] connArray = new PooledConnection[0];
+	private final StripedCounter idleCounter=new StripedCounter();
+	private final StripedCounter borrowCounter=new StripedCounter();
+	private final StripedCounter borrowTimeCounter=new StripedCounter();
+	private final StripedCounter createCounter=new StripedCounter();
+	private final StripedCounter createTimeCounter=new StripedCounter();
+	private final StripedCounter testCounter=new StripedCounter();
+	private final StripedCounter testTimeCounter=new StripedCounter();
+	private final StripedCounter stmCacheHitCounter=new StripedCounter();
+	private final StripedCounter stmCacheMissCounter=new StripedCounter();
+	private SqlProfiler sqlProfiler;
+	private ResultCache resultCache;
+	private AffinityTable affinityTable;
+	private TenantQuotaTable tenantQuotaTable;//not null when tenant quotas configured
 	private ConcurrentLinkedQueue<Borrower> waitQueue = new ConcurrentLinkedQueue<>();
+	private ReentrantLock collectLock;//one borrower collects multiple connections at a time
+	private volatile Borrower collector;//returned connections are transferred to it first
+	private WaitTimeEstimator waitTimeEstimator;//not null when load shedding enabled
+	private ConcurrencyLimiter concurrencyLimiter;//not null when adaptive concurrency enabled
+	private AtomicLongArray priorityBorrowCounts;//indexed by priority,not null when priority borrow enabled
+	private AtomicLongArray priorityBorrowTimes;
 	private ThreadLocal<WeakReference<Borrower>> threadLocal = new ThreadLocal<>();
 	private ScheduledFuture<?> idleCheckSchFuture = null;
 	private ScheduledThreadPoolExecutor idleSchExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
@@ -101,8 +136,12 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	private AtomicInteger createNotifyCount = new AtomicInteger(0);
 	private static Logger log = LoggerFactory.getLogger(FastConnectionPool.class);
 	private static AtomicInteger PoolNameIndex = new AtomicInteger(1);
+	private static final long TenantGuaranteeLevel = 1L<<32;//above any priority level
 	private static final int MaxTimedSpins = (Runtime.getRuntime().availableProcessors() < 2) ? 0 : 32;
+	private static final String MySQLPingSQL = "/* ping */ SELECT 1";//Connector/J sends a protocol ping for it
+	private static final Pattern PlainQueryPattern = Pattern.compile("(?i)\\s*select\\s+[\\w'.]+(\\s*,\\s*[\\w'.]+)*(\\s+from\\s+dual)?\\s*;?\\s*");//such as 'select 1'
 	private static final AtomicIntegerFieldUpdater<PooledConnection> ConnStateUpdater = AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "state");
+	private static final AtomicIntegerFieldUpdater<PooledConnection> LimiterPermitUpdater = AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "limiterPermit");
 	private static final AtomicReferenceFieldUpdater<Borrower, Object> BorrowerStateUpdater = AtomicReferenceFieldUpdater.newUpdater(Borrower.class, Object.class, "stateObject");
 	private static final AtomicIntegerFieldUpdater<FastConnectionPool> PoolStateUpdater = AtomicIntegerFieldUpdater.newUpdater(FastConnectionPool.class, "poolState");
 	private static final AtomicIntegerFieldUpdater<FastConnectionPool> CreateConnThreadStateUpdater = AtomicIntegerFieldUpdater.newUpdater(FastConnectionPool.class, "createConnThreadState");
@@ -126,8 +165,8 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 */
 	public void init(BeeDataSourceConfig config) throws SQLException {
 		if (poolState== POOL_UNINIT) {
-			checkProxyClasses();
 			if(config == null)throw new SQLException("Datasource configuration can't be null");
+			proxyConnFactory=ProxyClassDefiner.getProxyConnectionFactory(config.getProxyClassCacheFolder());
 			poolConfig = config;
 
 			poolName = !isNullText(config.getPoolName()) ? config.getPoolName():"FastPool-" + PoolNameIndex.getAndIncrement();
@@ -145,6 +184,28 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			ConnectionTestInterval = poolConfig.getConnectionTestInterval();
 			TestOnBorrow = poolConfig.isTestOnBorrow();
 			TestOnReturn = poolConfig.isTestOnReturn();
+			MetricsEnabled = poolConfig.isEnableMetrics();
+			FairMode = poolConfig.isFairMode();
+			if(sqlProfiler==null && poolConfig.isEnableSqlProfile())
+				sqlProfiler=new SqlProfiler(poolName,poolConfig.getSqlProfileSize(),poolConfig.isSqlProfileNormalize(),poolConfig.getSlowSqlThreshold());
+			if(resultCache==null && poolConfig.getResultCacheSize()>0)
+				resultCache=new ResultCache(poolConfig.getResultCacheSize(),poolConfig.getResultCacheTimeToLive(),poolConfig.getResultCacheTables());
+			if(affinityTable==null)
+				affinityTable=new AffinityTable(PoolMaxSize);
+			if(tenantQuotaTable==null && !isNullText(poolConfig.getTenantQuotas()))
+				tenantQuotaTable=new TenantQuotaTable(poolConfig.getTenantQuotas(),PoolMaxSize,FairMode);
+			if(poolConfig.isEnableLoadShedding())
+				waitTimeEstimator=new WaitTimeEstimator();
+			if(poolConfig.isAdaptiveConcurrency())
+				concurrencyLimiter=new ConcurrencyLimiter(poolConfig.getConcurrentSize(),PoolMaxSize,FairMode);
+			collectLock=new ReentrantLock(FairMode);
+			PriorityBorrow=poolConfig.isPriorityBorrow();
+			DeadlineFirstTransfer=poolConfig.isDeadlineFirstTransfer();
+			PriorityAgingNanos=MILLISECONDS.toNanos(poolConfig.getPriorityAgingTime());
+			if(PriorityBorrow && priorityBorrowCounts==null){
+				priorityBorrowCounts=new AtomicLongArray(Borrower.MaxPriority+1);
+				priorityBorrowTimes=new AtomicLongArray(Borrower.MaxPriority+1);
+			}
 			connFactory =poolConfig.getConnectionFactory();
 
 			String mode;
@@ -173,6 +234,8 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 				}
 			},config.getIdleCheckTimeInitDelay(),config.getIdleCheckTimeInterval(), TimeUnit.MILLISECONDS);
 
+			if(poolConfig.isDriverSpecializedProxy())
+				specializeProxyClasses();
 			registerJMX();
 			createInitConnections();
 			poolState=POOL_NORMAL;
@@ -190,19 +253,54 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	}
 
 	/**
-	 * check some proxy classes whether exists
+	 * get driver classes from a test connection,then generate proxy classes casting
+	 * delegates to them;if failed,common proxy classes are still used
 	 */
-	private void checkProxyClasses() throws SQLException {
+	private void specializeProxyClasses() {
+		Connection con = null;
+		Statement st = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			Map<Class<?>,Class<?>> driverClassMap = new HashMap<>();
+			con = connFactory.create();
+			putDriverClass(driverClassMap,Connection.class,con);
+			st = con.createStatement();
+			putDriverClass(driverClassMap,Statement.class,st);
+			ps = con.prepareStatement(ConnectionTestSQL);
+			putDriverClass(driverClassMap,PreparedStatement.class,ps);
+			try {
+				rs = ps.executeQuery();
+				putDriverClass(driverClassMap,ResultSet.class,rs);
+			} catch (SQLException e) {
+				log.warn("BeeCP({})failed to execute test sql,result set proxy not specialized",poolName);
+			}
+
+			if (driverClassMap.containsKey(Connection.class)) {
+				proxyConnFactory = ProxyClassDefiner.getSpecializedProxyConnectionFactory(driverClassMap);
+			} else {
+				log.warn("BeeCP({})driver connection class not accessible,proxy not specialized",poolName);
+			}
+		} catch (Throwable e) {
+			log.warn("BeeCP({})failed to specialize proxy classes",poolName,e);
+		} finally {
+			if (rs != null) oclose(rs);
+			if (ps != null) oclose(ps);
+			if (st != null) oclose(st);
+			if (con != null) oclose(con);
+		}
+	}
+	//driver class must be public and visible in pool class loader
+	private void putDriverClass(Map<Class<?>,Class<?>> driverClassMap,Class<?> intf,Object driverObject) {
+		if (driverObject == null) return;
+		Class<?> driverClass = driverObject.getClass();
+		if (!Modifier.isPublic(driverClass.getModifiers())) return;
 		try {
 			ClassLoader classLoader = getClass().getClassLoader();
-			Class.forName("cn.beecp.pool.ProxyConnection",false, classLoader);
-			Class.forName("cn.beecp.pool.ProxyStatement", false, classLoader);
-			Class.forName("cn.beecp.pool.ProxyPsStatement", false, classLoader);
-			Class.forName("cn.beecp.pool.ProxyCsStatement", false, classLoader);
-			Class.forName("cn.beecp.pool.ProxyDatabaseMetaData", false, classLoader);
-			Class.forName("cn.beecp.pool.ProxyResultSet", false, classLoader);
+			if (classLoader.getResource(driverClass.getName().replace('.','/')+".class") != null
+					&& Class.forName(driverClass.getName(),false,classLoader) == driverClass)
+				driverClassMap.put(intf,driverClass);
 		} catch (ClassNotFoundException e) {
-			throw new SQLException("Jdbc proxy class missed",e);
 		}
 	}
 	boolean isSupportSchema() {
@@ -220,17 +318,64 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	ThreadPoolExecutor getNetworkTimeoutExecutor() {
 		return networkTimeoutExecutor;
 	}
+	boolean isMetricsEnabled() {
+		return MetricsEnabled;
+	}
+	StripedCounter getStmCacheHitCounter() {
+		return stmCacheHitCounter;
+	}
+	StripedCounter getStmCacheMissCounter() {
+		return stmCacheMissCounter;
+	}
+	ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+	SqlProfiler getSqlProfiler() {
+		return sqlProfiler;
+	}
+	ResultCache getResultCache() {
+		return resultCache;
+	}
+	//called by partitioned pool before initialization,partitions share one cache
+	void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+	//called by partitioned pool before initialization,keys are bound across partitions
+	void setAffinityTable(AffinityTable affinityTable) {
+		this.affinityTable = affinityTable;
+	}
+	void setTenantQuotaTable(TenantQuotaTable tenantQuotaTable) {
+		this.tenantQuotaTable = tenantQuotaTable;
+	}
+	//called by partitioned pool before initialization,sql of all partitions profiled together
+	void setSqlProfiler(SqlProfiler sqlProfiler) {
+		this.sqlProfiler = sqlProfiler;
+	}
+	//waiters skipped semaphore(deadline first,high priority,under min tenant)and collector are checked also
 	private boolean existBorrower() {
-		return poolConfig.getConcurrentSize()>semaphore.availablePermits()||semaphore.hasQueuedThreads();
+		return poolConfig.getConcurrentSize()>semaphore.availablePermits()||semaphore.hasQueuedThreads()
+				||!waitQueue.isEmpty()||collector!=null;
 	}
 	//create Pooled connection
 	private PooledConnection createPooledConn(int connState) throws SQLException {
 		synchronized (connArrayLock) {
 			int oldLen = connArray.length;
 			if (oldLen < PoolMaxSize) {
-				Connection con= connFactory.create();
+				Connection con;
+				if(MetricsEnabled) {
+					long startTime=nanoTime();
+					try{
+						con=connFactory.create();
+					}finally{
+						createCounter.increment();
+						createTimeCounter.add(nanoTime()-startTime);
+					}
+				}else{
+					con=connFactory.create();
+				}
 				setDefaultOnRawConn(con);
 				PooledConnection pConn = new PooledConnection(con,this,poolConfig,connState);// add
+				if(connState==CONNECTION_IDLE)idleCounter.increment();
 				PooledConnection[] arrayNew = new PooledConnection[oldLen + 1];
 				System.arraycopy(connArray, 0, arrayNew, 0, oldLen);
 				arrayNew[oldLen] = pConn;// tail
@@ -244,6 +389,8 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	}
 	//remove Pooled connection
 	private void removePooledConn(PooledConnection pConn,String removeType) {
+		if (pConn.limiterPermit == 1)releaseLimiterPermit(pConn);//removed in using
+		if (pConn.tenantQuota != null)TenantQuota.release(pConn);
 		synchronized (connArrayLock) {
 			pConn.closeRawConn();
 			int oldLen = connArray.length;
@@ -334,10 +481,48 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			} finally {
 				supportIsValidTested = true;
 			}
+			selectTestPolicy(rawConn);
 		}
 		//for JDK1.7 end
 	}
 
+	//driver aware test policy,selected on first connection
+	private void selectTestPolicy(Connection rawConn) {
+		String driverName = null;
+		try {
+			DatabaseMetaData metaData = rawConn.getMetaData();
+			driverName = metaData.getDriverName();
+		} catch (Throwable e) {
+			log.warn("BeeCP({})failed to read driver name",poolName);
+		}
+
+		if (!supportIsValid && driverName != null && driverName.startsWith("MySQL Connector")) {//isValid pings with timeout
+			testPolicy = new MySQLPingTestPolicy();
+		} else if (!supportIsValid && PlainQueryPattern.matcher(ConnectionTestSQL).matches()) {
+			testPolicy = new PlainQueryTestPolicy();
+		}
+		log.info("BeeCP({})test policy:{}", poolName, testPolicy.getClass().getSimpleName());
+	}
+	//test statement of pooled connection,created once with query timeout
+	private Statement getTestStatement(PooledConnection pConn) throws SQLException {
+		Statement st = pConn.testStatement;
+		if (st == null) {
+			st = pConn.rawConn.createStatement();
+			if (supportQueryTimeout) {
+				try {
+					st.setQueryTimeout(ConnectionTestTimeout);
+				} catch (Throwable e) {
+					log.error("BeeCP({})failed to setQueryTimeout", poolName, e);
+				}
+			}
+			pConn.testStatement = st;
+		}
+		return st;
+	}
+	private static void executeTestSQL(Statement st, String sql) throws SQLException {
+		if (st.execute(sql)) oclose(st.getResultSet());
+	}
+
 	/**
 	 * check connection state,when
 	 *
@@ -345,7 +530,16 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 *         false if false then close it
 	 */
 	private boolean isActiveConn(PooledConnection pConn) {
-		if(testPolicy.isActive(pConn))
+		boolean isActive;
+		if(MetricsEnabled){
+			long startTime=nanoTime();
+			isActive=testPolicy.isActive(pConn);
+			testCounter.increment();
+			testTimeCounter.add(nanoTime()-startTime);
+		}else{
+			isActive=testPolicy.isActive(pConn);
+		}
+		if(isActive)
 			return true;
 
 		pConn.state=CONNECTION_CLOSED;
@@ -374,6 +568,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		} catch (SQLException e) {
 			for (PooledConnection pConn : connArray) {
 				pConn.state = CONNECTION_CLOSED;
+				idleCounter.decrement();
 				removePooledConn(pConn, DESC_REMOVE_INIT);
 			}
 			throw e;
@@ -404,6 +599,309 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 *             if pool is closed or waiting timeout,then throw exception
 	 */
 	public Connection getConnection(long wait) throws SQLException {
+		if(PriorityBorrow)return getConnectionByPriority(Borrower.NormalPriority,wait);
+		return acquireConnection(wait);
+	}
+	/**
+	 * borrow one connection from pool with priority,when priority borrow enabled,
+	 * returned connection is transferred to waiter of highest priority(raised by
+	 * waited time),and borrowers of higher priority than normal not wait for
+	 * semaphore permit;otherwise priority is ignored
+	 *
+	 * @param priority
+	 *            0(lowest) to 9(highest),5 is normal
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByPriority(int priority, long wait) throws SQLException {
+		if(priority<Borrower.MinPriority || priority>Borrower.MaxPriority)throw PriorityException;
+		if(!PriorityBorrow)return acquireConnection(wait);
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+
+		Borrower borrower=getBorrower();
+		borrower.priority=priority;
+		long startTime=nanoTime();
+		try{
+			return acquireConnection(wait);
+		}finally{
+			borrower.priority=Borrower.NormalPriority;
+			priorityBorrowCounts.incrementAndGet(priority);
+			priorityBorrowTimes.addAndGet(priority,nanoTime()-startTime);
+		}
+	}
+	/**
+	 * borrow one connection from pool for a tenant,borrowed connections of the tenant
+	 * are limited by its max size,waiters of tenant under its min size are served first
+	 * on connection return
+	 *
+	 * @param tenant
+	 *            tenant key of borrower,null means no quota
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByTenant(String tenant, long wait) throws SQLException {
+		if(tenant==null || tenantQuotaTable==null)return getConnection(wait);
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+
+		TenantQuota quota=tenantQuotaTable.getQuota(tenant);
+		long deadline=nanoTime()+wait*MillsToNanoTimes;
+		try {
+			if (!quota.acquire(wait*MillsToNanoTimes))throw RequestTimeoutException;
+		} catch (InterruptedException e) {
+			throw RequestInterruptException;
+		}
+
+		try {
+			Connection con=getConnection(quota,Math.max(NANOSECONDS.toMillis(deadline-nanoTime()),0));
+			quota.bind(((ProxyConnectionBase)con).pConn);
+			return con;
+		} catch (SQLException e) {
+			quota.release();
+			throw e;
+		}
+	}
+	//borrow for tenant(permit of quota acquired),quota is used to order waiters on transfer
+	Connection getConnection(TenantQuota quota, long wait) throws SQLException {
+		Borrower borrower=getBorrower();
+		borrower.tenantQuota=quota;
+		try {
+			return getConnection(wait);
+		} finally {
+			borrower.tenantQuota=null;
+		}
+	}
+	/**
+	 * borrow multiple connections from pool,all or none,such as parallel queries on
+	 * partitions;one borrower collects idle,new and returned connections at a time(other
+	 * multiple borrowers wait),returned connections are transferred to it first,so
+	 * borrowers not hold part of connections and wait for each other;when concurrency
+	 * limiter enabled,permits of all connections are acquired before collecting;these
+	 * connections are not under tenant quotas(as borrowed without tenant)
+	 *
+	 * @param count
+	 *            connection count,between 1 and pool max size
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return connections of count
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception and
+	 *             collected connections are returned to pool
+	 */
+	public Connection[] getConnections(int count, long wait) throws SQLException {
+		if (count < 1 || count > PoolMaxSize)throw ConnectionCountException;
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+
+		long deadline=nanoTime()+wait*MillsToNanoTimes;
+		if(concurrencyLimiter==null)return collectConnections(count,deadline);
+		try {
+			if (!concurrencyLimiter.tryAcquire(count,wait*MillsToNanoTimes,NANOSECONDS))throw RequestTimeoutException;
+		} catch (InterruptedException e) {
+			throw RequestInterruptException;
+		}
+
+		try {
+			Connection[] cons=collectConnections(count,deadline);
+			for (Connection con:cons)
+				((ProxyConnectionBase)con).pConn.limiterPermit=1;//released on return of each one
+			return cons;
+		} catch (SQLException e) {
+			concurrencyLimiter.release(count);
+			throw e;
+		}
+	}
+	private Connection[] collectConnections(int count, long deadline) throws SQLException {
+		try {
+			if (!collectLock.tryLock(Math.max(deadline-nanoTime(),0),NANOSECONDS))throw RequestTimeoutException;
+		} catch (InterruptedException e) {
+			throw RequestInterruptException;
+		}
+
+		PooledConnection[] pConns=new PooledConnection[count];
+		Borrower borrower=new Borrower();
+		try {
+			collectConnections(pConns,deadline,borrower);
+		} finally {
+			collectLock.unlock();
+		}
+
+		Connection[] cons=new Connection[count];
+		try {
+			for (int i=0;i<count;i++)
+				cons[i]=createProxyConnection(pConns[i],borrower);
+			return cons;
+		} catch (SQLException e) {
+			for (PooledConnection pConn:pConns) {
+				pConn.proxyConn=null;
+				recycle(pConn);
+			}
+			throw e;
+		}
+	}
+	//collect connections until array filled,collected ones are returned to pool on failure
+	private void collectConnections(PooledConnection[] pConns, long deadline, Borrower borrower) throws SQLException {
+		int count=0;
+		long waitTime;
+		Object stateObject;
+		int spinSize = MaxTimedSpins;
+		Thread borrowThread=borrower.thread;
+		borrower.stateObject=BORROWER_NORMAL;
+		boolean isTimeout=false,isInterrupted=false;
+		SQLException failure=null;
+
+		collector=borrower;
+		try {
+			while (count<pConns.length) {
+				PooledConnection pConn=claimIdleConn();
+				if (pConn==null && connArray.length<PoolMaxSize)pConn=createPooledConn(CONNECTION_USING);
+				if (pConn != null) {
+					pConns[count++]=pConn;
+					continue;
+				}
+
+				stateObject = borrower.stateObject;
+				if (stateObject instanceof PooledConnection) {
+					pConn = (PooledConnection) stateObject;
+					borrower.stateObject=BORROWER_NORMAL;//wait next one
+					if(transferPolicy.tryToCatch(pConn) && testOnBorrow(pConn))
+						pConns[count++]=pConn;
+					continue;
+				}
+				if (stateObject instanceof SQLException) {//pool closed or reset
+					failure=(SQLException)stateObject;
+					break;
+				}
+
+				if (isInterrupted||(isInterrupted=borrowThread.isInterrupted()))break;
+				if (isTimeout||(isTimeout=(waitTime=deadline-nanoTime())<=0))break;
+				if (spinSize--> 0)continue;//spin
+				if (BorrowerStateUpdater.compareAndSet(borrower, stateObject, BORROWER_WAITING)) {
+					parkNanos(borrower, waitTime);
+					BorrowerStateUpdater.compareAndSet(borrower, BORROWER_WAITING, BORROWER_NORMAL);
+				}
+			}
+		} finally {
+			collector=null;
+			for (;;) {//connection may be transferred after collector cleared,return it to pool
+				stateObject = borrower.stateObject;
+				if (stateObject instanceof PooledConnection) {
+					if (BorrowerStateUpdater.compareAndSet(borrower, stateObject, BORROWER_TIMEOUT) && transferPolicy.tryToCatch((PooledConnection) stateObject))
+						recycle((PooledConnection) stateObject);
+				} else if (BorrowerStateUpdater.compareAndSet(borrower, stateObject, BORROWER_TIMEOUT)) {
+					break;
+				}
+			}
+			if (count<pConns.length) {
+				for (int i=0;i<count;i++)
+					recycle(pConns[i]);
+			}
+		}
+
+		if(failure!=null)throw failure;
+		if(isInterrupted)throw RequestInterruptException;
+		if(isTimeout)throw RequestTimeoutException;
+	}
+	//borrow with concurrency limiter and metrics
+	private Connection acquireConnection(long wait) throws SQLException {
+		if(concurrencyLimiter!=null)return borrowLimitedConnection(wait);
+		if(!MetricsEnabled)return borrowConnection(wait);
+
+		long startTime=nanoTime();
+		try{
+			return borrowConnection(wait);
+		}finally{
+			borrowCounter.increment();
+			borrowTimeCounter.add(nanoTime()-startTime);
+		}
+	}
+
+	/**
+	 * borrow the connection last used by affinity key if it is idle,otherwise borrow
+	 * one as normal and bind it to the key,so server side statements and session
+	 * caches of a logical session stay on one connection(best effort)
+	 *
+	 * @param affinityKey
+	 *            logical session key,null means no affinity
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnection(Object affinityKey, long wait) throws SQLException {
+		if(affinityKey==null)return getConnection(wait);
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+
+		Connection con=affinityTable.borrow(affinityKey);
+		if(con!=null)return con;
+		con=getConnection(wait);
+		affinityTable.bind(affinityKey,con);
+		return con;
+	}
+	/**
+	 * borrow one connection from pool before deadline,then deadline is recorded on
+	 * the connection,statements are cancelled when it reached(fail before execution
+	 * if reached),so database not do work which nobody is waiting for
+	 *
+	 * @param deadline
+	 *            absolute time in {@link System#nanoTime()}
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release or deadline
+	 * @throws SQLException
+	 *             if pool is closed or deadline reached,then throw exception
+	 */
+	public Connection getConnectionByDeadline(long deadline) throws SQLException {
+		long wait=deadline-nanoTime();
+		if(wait<=0)throw RequestTimeoutException;
+		Connection con=getConnection(NANOSECONDS.toMillis(wait));
+		((ProxyConnectionBase)con).pConn.deadline=deadline;
+		return con;
+	}
+	//borrow one with a permit of concurrency limiter,which is held until connection returned
+	private Connection borrowLimitedConnection(long wait) throws SQLException {
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+		long deadline=nanoTime()+wait*MillsToNanoTimes;
+		try {
+			if (!concurrencyLimiter.tryAcquire(wait*MillsToNanoTimes,NANOSECONDS))throw RequestTimeoutException;
+		} catch (InterruptedException e) {
+			throw RequestInterruptException;
+		}
+
+		long startTime=nanoTime();
+		try {
+			Connection con=borrowConnection(Math.max(NANOSECONDS.toMillis(deadline-startTime),0));
+			((ProxyConnectionBase)con).pConn.limiterPermit=1;
+			return con;
+		} catch (SQLException e) {
+			concurrencyLimiter.release();
+			throw e;
+		} finally {
+			if(MetricsEnabled){
+				borrowCounter.increment();
+				borrowTimeCounter.add(nanoTime()-startTime);
+			}
+		}
+	}
+	//called on connection returned or removed in using
+	void releaseLimiterPermit(PooledConnection pConn) {
+		if (LimiterPermitUpdater.compareAndSet(pConn, 1, 0))
+			concurrencyLimiter.release();
+	}
+	// borrow one PooledConnection
+	private Connection borrowConnection(long wait) throws SQLException {
 		if (poolState != POOL_NORMAL)throw PoolCloseException;
 
 		WeakReference<Borrower> bRef = threadLocal.get();
@@ -411,6 +909,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		if (borrower != null) {
 			PooledConnection pConn = borrower.initBeforeBorrow();
 			if (pConn != null && ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)) {
+				idleCounter.decrement();
 				if(testOnBorrow(pConn))
 					return createProxyConnection(pConn, borrower);
 
@@ -421,9 +920,22 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			threadLocal.set(new WeakReference<>(borrower));
 		}
 
+		//fast path:claim an idle one without semaphore,semaphore only limits creating and waiting
+		if (!FairMode && idleCounter.sum() > 0) {
+			PooledConnection pConn = claimIdleConn();
+			if (pConn != null)
+				return createProxyConnection(pConn, borrower);
+		}
+
 		try {
 			wait*=MillsToNanoTimes;
 			long deadline=nanoTime()+wait;
+			//load shedding:pool is full and no idle,reject when estimated wait time exceeds max wait
+			if (waitTimeEstimator!=null && connArray.length>=PoolMaxSize && idleCounter.sum()==0 && waitTimeEstimator.estimate(semaphore.getQueueLength())>wait)
+				throw RequestRejectException;
+			//waiters ordered by deadline,of high priority or under tenant min size wait in transfer queue directly,not behind others on semaphore
+			if (DeadlineFirstTransfer || borrower.priority>Borrower.NormalPriority || (borrower.tenantQuota!=null && borrower.tenantQuota.isUnderMinSize()))
+				return takeOneConnection(deadline, borrower);
 			if (semaphore.tryAcquire(wait,NANOSECONDS)) {
 				try {
 					return takeOneConnection(deadline, borrower);
@@ -447,13 +959,11 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	}
 	// take one PooledConnection
 	private Connection takeOneConnection(long deadline, Borrower borrower) throws SQLException {
-		for (PooledConnection pConn:connArray) {
-			if (ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING) && testOnBorrow(pConn))
-				return createProxyConnection(pConn, borrower);
-		}
+		PooledConnection pConn=claimIdleConn();
+		if (pConn != null)
+			return createProxyConnection(pConn, borrower);
 
 		//create directly
-		PooledConnection pConn=null;
 		if(connArray.length<PoolMaxSize && (pConn=createPooledConn(CONNECTION_USING))!=null){
 			return createProxyConnection(pConn,borrower);
 		}
@@ -463,8 +973,11 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		int spinSize = MaxTimedSpins;
 		Thread borrowThread=borrower.thread;
 		borrower.stateObject=BORROWER_NORMAL;
+		borrower.waitStartTime=nanoTime();
+		borrower.deadline=deadline;
 		boolean isTimeout=false,isInterrupted=false;
 
+		if(waitTimeEstimator!=null)waitTimeEstimator.onWaitBegin();
 		try {// wait one transferred connection
 			waitQueue.offer(borrower);
 			for (;;) {
@@ -501,18 +1014,80 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			} // for
 		} finally {
 			waitQueue.remove(borrower);
+			if(waitTimeEstimator!=null)waitTimeEstimator.onWaitEnd();
 		}
 
 		if(isInterrupted)throw RequestInterruptException;
 		throw RequestTimeoutException;
 	}
 
+	/**
+	 * borrow one idle connection without waiting,used by partitioned pool
+	 * to steal connection from neighbour partitions
+	 *
+	 * @return null if no idle connection in pool
+	 * @throws SQLException if failed to create proxy connection
+	 */
+	Connection pollIdleConnection() throws SQLException {
+		if (poolState != POOL_NORMAL || idleCounter.sum()<=0)return null;
+		if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire())return null;
+
+		PooledConnection pConn=claimIdleConn();
+		if (pConn == null){
+			if (concurrencyLimiter != null)concurrencyLimiter.release();
+			return null;
+		}
+		if (concurrencyLimiter != null)pConn.limiterPermit=1;
+		if(MetricsEnabled)borrowCounter.increment();
+		return createProxyConnection(pConn, getBorrower());
+	}
+	/**
+	 * borrow the given connection without waiting,used by affinity table
+	 *
+	 * @param pConn connection of this pool
+	 * @return null if the connection is not idle
+	 * @throws SQLException if failed to create proxy connection
+	 */
+	Connection claimConnection(PooledConnection pConn) throws SQLException {
+		if (poolState != POOL_NORMAL)return null;
+		if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire())return null;
+		if (ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)) {
+			idleCounter.decrement();
+			if (testOnBorrow(pConn)) {
+				if (concurrencyLimiter != null)pConn.limiterPermit=1;
+				if(MetricsEnabled)borrowCounter.increment();
+				return createProxyConnection(pConn, getBorrower());
+			}
+		}
+		if (concurrencyLimiter != null)concurrencyLimiter.release();
+		return null;
+	}
+	private Borrower getBorrower() {
+		WeakReference<Borrower> bRef = threadLocal.get();
+		Borrower borrower=(bRef !=null)?bRef.get():null;
+		if (borrower == null) {
+			borrower = new Borrower();
+			threadLocal.set(new WeakReference<>(borrower));
+		}
+		return borrower;
+	}
+	// claim one idle connection by CAS,return null if not found
+	private PooledConnection claimIdleConn() {
+		for (PooledConnection pConn:connArray) {
+			if (ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)) {
+				idleCounter.decrement();
+				if (testOnBorrow(pConn))
+					return pConn;
+			}
+		}
+		return null;
+	}
+
 	// create proxy to wrap connection as result
-	private static ProxyConnectionBase createProxyConnection(PooledConnection pConn, Borrower borrower)
+	private ProxyConnectionBase createProxyConnection(PooledConnection pConn, Borrower borrower)
 			throws SQLException {
-		// borrower.setBorrowedConnection(pConn);
-		// return pConn.proxyConnCurInstance=new ProxyConnection(pConn);
-		throw new SQLException("Proxy classes not be generated,please execute 'ProxyClassGenerator' after compile");
+		borrower.setBorrowedConnection(pConn);
+		return pConn.proxyConn=proxyConnFactory.createProxyConnection(pConn);
 	}
 
 	/**
@@ -534,10 +1109,17 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 *            target connection need release
 	 */
 	public void recycle(PooledConnection pConn) {
+		if(waitTimeEstimator!=null)waitTimeEstimator.onRelease();
 		if(testOnReturn(pConn)) {
 			transferPolicy.beforeTransfer(pConn);
-			for(Borrower borrower : waitQueue)
-				if (pConn.state != ConUnCatchStateCode || transferToWaiter(pConn,borrower)) return;
+			Borrower multiBorrower=collector;
+			if(multiBorrower!=null && (pConn.state != ConUnCatchStateCode || transferToWaiter(pConn,multiBorrower)))return;
+			if(PriorityBorrow||DeadlineFirstTransfer||tenantQuotaTable!=null){
+				if(transferByOrder(pConn))return;
+			}else{
+				for(Borrower borrower : waitQueue)
+					if (pConn.state != ConUnCatchStateCode || transferToWaiter(pConn,borrower)) return;
+			}
 
 			transferPolicy.onFailedTransfer(pConn);
 		}
@@ -547,6 +1129,8 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 *            transfer Exception to waiter
 	 */
 	private void transferException(SQLException exception) {
+		Borrower multiBorrower=collector;
+		if(multiBorrower!=null && transferToWaiter(exception,multiBorrower))return;
 		for(Borrower borrower:waitQueue){
 			if(transferToWaiter(exception,borrower))return;
 		}
@@ -563,6 +1147,38 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		}
 		return false;
 	}
+	/**
+	 * transfer connection to waiter of highest priority,priority of a waiter is raised one
+	 * level for each aging time waited,waiters of tenants under min size are above all levels;
+	 * waiters of same level are served by earliest deadline when deadline first transfer enabled,
+	 * otherwise by waiting order
+	 *
+	 * @return true,if transferred or caught by others
+	 */
+	private boolean transferByOrder(PooledConnection pConn) {
+		for(;;){
+			Borrower target=null;
+			long targetLevel=0,time=nanoTime();
+			for(Borrower borrower:waitQueue){
+				Object state=borrower.stateObject;
+				if(state!=BORROWER_NORMAL && state!=BORROWER_WAITING)continue;
+				long level=0;
+				if(PriorityBorrow){
+					level=borrower.priority;
+					if(PriorityAgingNanos>0)level+=(time-borrower.waitStartTime)/PriorityAgingNanos;
+				}
+				TenantQuota quota=borrower.tenantQuota;
+				if(quota!=null && quota.isUnderMinSize())level+=TenantGuaranteeLevel;
+				if(target==null || level>targetLevel || (level==targetLevel && DeadlineFirstTransfer && borrower.deadline-target.deadline<0)){
+					target=borrower;
+					targetLevel=level;
+				}
+			}
+
+			if(target==null)return false;
+			if(pConn.state != ConUnCatchStateCode || transferToWaiter(pConn,target))return true;
+		}
+	}
 
 	/**
 	 * inner timer will call the method to clear some idle timeout connections
@@ -575,10 +1191,11 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 				if (state == CONNECTION_IDLE && !existBorrower()) {
 					boolean isTimeoutInIdle = ((currentTimeMillis() - pConn.lastAccessTime - poolConfig.getIdleTimeout() >= 0));
 					if (isTimeoutInIdle && ConnStateUpdater.compareAndSet(pConn, state, CONNECTION_CLOSED)) {//need close idle
+						idleCounter.decrement();
 						removePooledConn(pConn, DESC_REMOVE_IDLE);
 						tryToCreateNewConnByAsyn();
 					}
-				} else if (state == CONNECTION_USING) {
+				} else if (state == CONNECTION_USING && !pConn.trustedInd) {//access time of trusted one not updated on execution
 					boolean isHolTimeoutInNotUsing = ((currentTimeMillis() - pConn.lastAccessTime - poolConfig.getHoldIdleTimeout() >= 0));
 					if (isHolTimeoutInNotUsing && ConnStateUpdater.compareAndSet(pConn, state, CONNECTION_CLOSED)) {
 						removePooledConn(pConn, DESC_REMOVE_HOLDTIMEOUT);
@@ -589,6 +1206,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 					tryToCreateNewConnByAsyn();
 				}
 			}
+			if (tenantQuotaTable != null)tenantQuotaTable.evictIdleQuotas();
 		}
 	}
 
@@ -634,6 +1252,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		while (connArray.length > 0) {
 			for (PooledConnection pConn : connArray) {
 				if (ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_CLOSED)) {
+					idleCounter.decrement();
 					removePooledConn(pConn,source);
 				} else if (pConn.state == CONNECTION_CLOSED) {
 					removePooledConn(pConn,source);
@@ -742,12 +1361,8 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		return connArray.length;
 	}
 	public int getConnIdleSize(){
-		int idleConnections=0;
-		for (PooledConnection pConn:this.connArray) {
-			if(pConn.state == CONNECTION_IDLE)
-				idleConnections++;
-		}
-		return idleConnections;
+		long idleConnections=idleCounter.sum();
+		return (idleConnections>0)?(int)idleConnections:0;
 	}
 	public int getConnUsingSize(){
 		int active=connArray.length - getConnIdleSize();
@@ -757,17 +1372,84 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		return poolConfig.getConcurrentSize()-semaphore.availablePermits();
 	}
 	public int getSemaphoreWaitingSize(){
-		return semaphore.getQueueLength();
+		return semaphore.getQueueLength()+(concurrencyLimiter==null?0:concurrencyLimiter.getQueueLength());
 	}
 	public int getTransferWaitingSize(){
 		return waitQueue.size();
 	}
+	public String getPoolName(){
+		return poolName;
+	}
+	public long getBorrowCount(){
+		return borrowCounter.sum();
+	}
+	public long getBorrowTimeTotal(){
+		return borrowTimeCounter.sum();
+	}
+	public long getCreateCount(){
+		return createCounter.sum();
+	}
+	public long getCreateTimeTotal(){
+		return createTimeCounter.sum();
+	}
+	public long getTestCount(){
+		return testCounter.sum();
+	}
+	public long getTestTimeTotal(){
+		return testTimeCounter.sum();
+	}
+	public long getStatementCacheHitCount(){
+		return stmCacheHitCounter.sum();
+	}
+	public long getStatementCacheMissCount(){
+		return stmCacheMissCounter.sum();
+	}
+	public long getResultCacheHitCount(){
+		return resultCache==null?0:resultCache.getHitCount();
+	}
+	public long getResultCacheMissCount(){
+		return resultCache==null?0:resultCache.getMissCount();
+	}
+	public int getResultCacheSize(){
+		return resultCache==null?0:resultCache.size();
+	}
+	public void clearResultCache(){
+		if(resultCache!=null)resultCache.clear();
+	}
+	public long getAffinityHitCount(){
+		return affinityTable==null?0:affinityTable.getHitCount();
+	}
+	public long getAffinityMissCount(){
+		return affinityTable==null?0:affinityTable.getMissCount();
+	}
+	public int getConcurrencyLimit(){
+		return concurrencyLimiter==null?poolConfig.getConcurrentSize():concurrencyLimiter.getLimit();
+	}
+	public String[] getTenantUsages(){
+		return tenantQuotaTable==null?new String[0]:tenantQuotaTable.getUsages();
+	}
+	public long[] getPriorityBorrowCounts(){
+		return toArray(priorityBorrowCounts);
+	}
+	public long[] getPriorityBorrowTimeTotals(){
+		return toArray(priorityBorrowTimes);
+	}
+	private static long[] toArray(AtomicLongArray counters){
+		long[] values=new long[Borrower.MaxPriority+1];
+		if(counters!=null){
+			for(int i=0;i<values.length;i++)
+				values[i]=counters.get(i);
+		}
+		return values;
+	}
 	// register JMX
 	private void registerJMX() {
 		if (poolConfig.isEnableJMX()) {
 			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
 			registerJMXBean(mBeanServer,String.format("cn.beecp.pool.FastConnectionPool:type=BeeCP(%s)",poolName),this);
 			registerJMXBean(mBeanServer,String.format("cn.beecp.BeeDataSourceConfig:type=BeeCP(%s)-config",poolName),poolConfig);
+			if(sqlProfiler!=null)
+				registerJMXBean(mBeanServer,String.format("cn.beecp.pool.SqlProfiler:type=BeeCP(%s)-sql",poolName),sqlProfiler);
 		}
 	}
 	private void registerJMXBean(MBeanServer mBeanServer,String regName,Object bean) {
@@ -786,6 +1468,8 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
 			unregisterJMXBean(mBeanServer,String.format("cn.beecp.pool.FastConnectionPool:type=BeeCP(%s)",poolName));
 			unregisterJMXBean(mBeanServer,String.format("cn.beecp.BeeDataSourceConfig:type=BeeCP(%s)-config",poolName));
+			if(sqlProfiler!=null)
+				unregisterJMXBean(mBeanServer,String.format("cn.beecp.pool.SqlProfiler:type=BeeCP(%s)-sql",poolName));
 		}
 	}
 	private void unregisterJMXBean(MBeanServer mBeanServer,String regName) {
@@ -818,17 +1502,9 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 					autoCommitChged=true;
 				}
 
-				st = con.createStatement();
+				st = getTestStatement(pConn);
 				pConn.updateAccessTime();
-				if(supportQueryTimeout){
-					try {
-						st.setQueryTimeout(ConnectionTestTimeout);
-					}catch(Throwable e){
-						log.error("BeeCP({})failed to setQueryTimeout",poolName,e);
-					}
-				}
-
-				st.execute(ConnectionTestSQL);
+				executeTestSQL(st,ConnectionTestSQL);
 				return true;
 			} catch (Throwable e) {
 				log.error("BeeCP({})failed to test connection",poolName,e);
@@ -841,7 +1517,34 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 				} catch (Throwable e){
 					log.error("BeeCP({})failed to execute 'rollback or setAutoCommit(true)' after connection test",poolName,e);
 				}
-				oclose(st);
+			}
+		}
+	}
+	//plain select(no function call),no side effect,so not need transaction and rollback in autoCommit mode
+	class PlainQueryTestPolicy extends SQLQueryTestPolicy {
+		public boolean isActive(PooledConnection pConn){
+			if(!pConn.curAutoCommit)//select would begin a transaction(snapshot) left to next borrower
+				return super.isActive(pConn);
+			try {
+				executeTestSQL(getTestStatement(pConn),ConnectionTestSQL);
+				pConn.updateAccessTime();
+				return true;
+			} catch (Throwable e) {
+				log.error("BeeCP({})failed to test connection",poolName,e);
+				return false;
+			}
+		}
+	}
+	//MySQL Connector/J:protocol level ping,no sql parsed by server
+	class MySQLPingTestPolicy implements ConnectionTestPolicy {
+		public boolean isActive(PooledConnection pConn){
+			try {
+				executeTestSQL(getTestStatement(pConn),MySQLPingSQL);
+				pConn.updateAccessTime();
+				return true;
+			} catch (Throwable e) {
+				log.error("BeeCP({})failed to test connection",poolName,e);
+				return false;
 			}
 		}
 	}
@@ -870,10 +1573,16 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	class CompeteTransferPolicy implements TransferPolicy {
 		public int getCheckStateCode() {return CONNECTION_IDLE;}
 		public boolean tryToCatch(PooledConnection pConn) {
-			return ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING); }
+			if(ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)){
+				idleCounter.decrement();
+				return true;
+			}
+			return false;
+		}
 		public void onFailedTransfer(PooledConnection pConn) { }
 		public void beforeTransfer(PooledConnection pConn) {
 			pConn.state=CONNECTION_IDLE;
+			idleCounter.increment();
 		}
 	}
 	class FairTransferPolicy implements TransferPolicy {
@@ -881,7 +1590,10 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		public boolean tryToCatch(PooledConnection pConn) {
 			return pConn.state == CONNECTION_USING;
 		}
-		public void onFailedTransfer(PooledConnection pConn){pConn.state=CONNECTION_IDLE; }
+		public void onFailedTransfer(PooledConnection pConn){
+			pConn.state=CONNECTION_IDLE;
+			idleCounter.increment();
+		}
 		public void beforeTransfer(PooledConnection pConn) { }
 	}
 }
@@ -0,0 +1,548 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.BeeDataSourceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.beecp.pool.PoolExceptionList.PoolCloseException;
+import static cn.beecp.pool.PoolExceptionList.PriorityException;
+import static cn.beecp.pool.PoolExceptionList.RequestInterruptException;
+import static cn.beecp.pool.PoolExceptionList.RequestTimeoutException;
+import static cn.beecp.pool.PoolObjectsState.POOL_CLOSED;
+import static cn.beecp.pool.PoolObjectsState.POOL_NORMAL;
+import static cn.beecp.pool.PoolObjectsState.POOL_UNINIT;
+import static cn.beecp.util.BeecpUtil.isNullText;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * JDBC Connection Pool Implementation,connections,semaphore and waiters are
+ * split into some partitions(each one is a FastConnectionPool),borrowers are
+ * mapped to a partition by thread id,so they not contend on one semaphore.
+ *
+ * When home partition has no idle connection,borrower steals one from neighbour
+ * partitions;if home partition is full,borrower goes to a neighbour partition
+ * which can create new connection.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class PartitionedConnectionPool implements ConnectionPool, ConnectionPoolJMXBean {
+	private long DefaultMaxWaitMills;
+	private BeeDataSourceConfig poolConfig;
+	private FastConnectionPool[] partitions;
+	private ResultCache resultCache;//shared by partitions,writes in one partition invalidate results of others
+	private AffinityTable affinityTable;//shared by partitions,key may be bound to a connection of any partition
+	private TenantQuotaTable tenantQuotaTable;//shared by partitions,quota limits connections of all partitions
+	private SqlProfiler sqlProfiler;//shared by partitions,registered as jmx-bean of this pool
+	private int[] partitionMaxSizes;
+	private String poolName;
+	private volatile int poolState=POOL_UNINIT;
+	private static Logger log = LoggerFactory.getLogger(PartitionedConnectionPool.class);
+	private static AtomicInteger PoolNameIndex = new AtomicInteger(1);
+
+	/**
+	 * initialize pool with configuration
+	 *
+	 * @param config
+	 *            data source configuration
+	 * @throws SQLException
+	 *             check configuration fail or to create initiated connection
+	 */
+	public void init(BeeDataSourceConfig config) throws SQLException {
+		if (poolState != POOL_UNINIT)throw new SQLException("Pool has initialized");
+		if (config == null)throw new SQLException("Datasource configuration can't be null");
+		poolConfig = config;
+		DefaultMaxWaitMills = config.getMaxWait();
+		poolName = !isNullText(config.getPoolName()) ? config.getPoolName():"PartitionedPool-" + PoolNameIndex.getAndIncrement();
+
+		//each partition has one connection and one permit at least
+		int size=Math.min(config.getPartitionSize(),config.getConcurrentSize());
+		size=Math.min(size,config.getMaxActive());
+		partitions = new FastConnectionPool[size];
+		partitionMaxSizes = new int[size];
+		if (config.getResultCacheSize() > 0)
+			resultCache = new ResultCache(config.getResultCacheSize(), config.getResultCacheTimeToLive(), config.getResultCacheTables());
+		affinityTable = new AffinityTable(config.getMaxActive());
+		if (!isNullText(config.getTenantQuotas()))
+			tenantQuotaTable = new TenantQuotaTable(config.getTenantQuotas(), config.getMaxActive(), config.isFairMode());
+		if (config.isEnableSqlProfile())
+			sqlProfiler = new SqlProfiler(poolName, config.getSqlProfileSize(), config.isSqlProfileNormalize(), config.getSlowSqlThreshold());
+		try {
+			for (int i = 0; i < size; i++) {
+				BeeDataSourceConfig partitionConfig = new BeeDataSourceConfig();
+				config.copyTo(partitionConfig);
+				partitionConfig.setPoolName(poolName + "-" + i);
+				partitionConfig.setEnableJMX(false);
+				partitionConfig.setMaxActive(split(config.getMaxActive(), size, i));
+				partitionConfig.setInitialSize(split(config.getInitialSize(), size, i));
+				partitionConfig.setConcurrentSize(split(config.getConcurrentSize(), size, i));
+				partitionMaxSizes[i] = partitionConfig.getMaxActive();
+
+				partitions[i] = new FastConnectionPool();
+				partitions[i].setResultCache(resultCache);
+				partitions[i].setAffinityTable(affinityTable);
+				partitions[i].setTenantQuotaTable(tenantQuotaTable);
+				partitions[i].setSqlProfiler(sqlProfiler);
+				partitions[i].init(partitionConfig);
+			}
+		} catch (SQLException e) {
+			for (FastConnectionPool partition : partitions)
+				if (partition != null) partition.shutdown();
+			throw e;
+		}
+
+		registerJMX();
+		poolState = POOL_NORMAL;
+		log.info("BeeCP({})has startup{partition size:{},max size:{},concurrent size:{}}",
+				poolName,
+				size,
+				config.getMaxActive(),
+				config.getConcurrentSize());
+	}
+	//split total value to partitions,remainder to front partitions
+	private static int split(int total, int size, int index) {
+		return total / size + (index < total % size ? 1 : 0);
+	}
+
+	/**
+	 * borrow a connection from pool
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnection() throws SQLException {
+		return getConnection(DefaultMaxWaitMills);
+	}
+
+	/**
+	 * borrow one connection from pool
+	 *
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnection(long wait) throws SQLException {
+		return getConnectionByPriority(Borrower.NormalPriority, wait);
+	}
+
+	/**
+	 * borrow one connection from pool with priority,idle connections of partitions
+	 * are taken first,then wait in selected partition by priority
+	 *
+	 * @param priority
+	 *            0(lowest) to 9(highest),5 is normal
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed,priority is invalid or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByPriority(int priority, long wait) throws SQLException {
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+		if (priority < Borrower.MinPriority || priority > Borrower.MaxPriority)throw PriorityException;
+		return borrowConnection(priority, null, wait);
+	}
+
+	/**
+	 * borrow one connection from pool for a tenant,borrowed connections of the tenant
+	 * in all partitions are limited by its quota
+	 *
+	 * @param tenant
+	 *            tenant key of borrower,null means no quota
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByTenant(String tenant, long wait) throws SQLException {
+		if (tenant == null || tenantQuotaTable == null)return getConnection(wait);
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+
+		TenantQuota quota = tenantQuotaTable.getQuota(tenant);
+		long deadline = nanoTime() + MILLISECONDS.toNanos(wait);
+		try {
+			if (!quota.acquire(MILLISECONDS.toNanos(wait)))throw RequestTimeoutException;
+		} catch (InterruptedException e) {
+			throw RequestInterruptException;
+		}
+
+		try {
+			Connection con = borrowConnection(Borrower.NormalPriority, quota, Math.max(NANOSECONDS.toMillis(deadline - nanoTime()), 0));
+			quota.bind(((ProxyConnectionBase)con).pConn);
+			return con;
+		} catch (SQLException e) {
+			quota.release();
+			throw e;
+		}
+	}
+	//idle connections of partitions are taken first,then wait in selected partition
+	private Connection borrowConnection(int priority, TenantQuota quota, long wait) throws SQLException {
+		int size = partitions.length;
+		int home = (int) (Thread.currentThread().getId() % size);
+		FastConnectionPool partition = partitions[home];
+		Connection con = partition.pollIdleConnection();
+		if (con != null)return con;
+
+		//steal idle one from neighbours
+		for (int i = 1; i < size; i++) {
+			con = partitions[(home + i) % size].pollIdleConnection();
+			if (con != null)return con;
+		}
+
+		//home partition is full,then try a neighbour which can create new one
+		if (partition.getConnTotalSize() >= partitionMaxSizes[home]) {
+			for (int i = 1; i < size; i++) {
+				int index = (home + i) % size;
+				if (partitions[index].getConnTotalSize() < partitionMaxSizes[index]) {
+					partition = partitions[index];
+					break;
+				}
+			}
+		}
+		return quota == null ? partition.getConnectionByPriority(priority, wait) : partition.getConnection(quota, wait);
+	}
+
+	/**
+	 * borrow one connection from pool,prefer the connection last used by affinity key
+	 *
+	 * @param affinityKey
+	 *            logical session key,null means no affinity
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return If the connection last used by the key is idle,then return it;otherwise
+	 *         return one as getConnection(wait)
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnection(Object affinityKey, long wait) throws SQLException {
+		if (affinityKey == null)return getConnection(wait);
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+
+		Connection con = affinityTable.borrow(affinityKey);
+		if (con != null)return con;
+		con = getConnection(wait);
+		affinityTable.bind(affinityKey, con);
+		return con;
+	}
+
+	/**
+	 * borrow multiple connections from one partition,all or none,home partition is
+	 * selected if its max size is enough,otherwise the largest one
+	 *
+	 * @param count
+	 *            connection count,between 1 and max size of largest partition
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return connections of count
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection[] getConnections(int count, long wait) throws SQLException {
+		if (poolState != POOL_NORMAL)throw PoolCloseException;
+		int size = partitions.length;
+		int index = (int) (Thread.currentThread().getId() % size);
+		if (partitionMaxSizes[index] < count) {
+			for (int i = 0; i < size; i++)
+				if (partitionMaxSizes[i] > partitionMaxSizes[index])index = i;
+		}
+		return partitions[index].getConnections(count, wait);
+	}
+
+	/**
+	 * borrow one connection from pool before deadline,then deadline is recorded on
+	 * the connection,statements are cancelled when it reached(fail before execution
+	 * if reached),so database not do work which nobody is waiting for
+	 *
+	 * @param deadline
+	 *            absolute time in {@link System#nanoTime()}
+	 *
+	 * @return If exists idle connection in pool,then return one;if not, waiting
+	 *         until other borrower release or deadline
+	 * @throws SQLException
+	 *             if pool is closed or deadline reached,then throw exception
+	 */
+	public Connection getConnectionByDeadline(long deadline) throws SQLException {
+		long wait = deadline-nanoTime();
+		if (wait <= 0)throw RequestTimeoutException;
+		Connection con = getConnection(NANOSECONDS.toMillis(wait));
+		((ProxyConnectionBase)con).pConn.deadline = deadline;
+		return con;
+	}
+
+	/**
+	 * return connection to pool
+	 *
+	 * @param pConn
+	 *            target connection need release
+	 */
+	public void recycle(PooledConnection pConn) {}//connection is returned to its partition
+
+	/**
+	 * close pool
+	 */
+	public void shutdown() {
+		if (poolState == POOL_NORMAL) {
+			poolState = POOL_CLOSED;
+			for (FastConnectionPool partition : partitions)
+				partition.shutdown();
+			unregisterJMX();
+			log.info("BeeCP({})has shutdown",poolName);
+		}
+	}
+
+	//******************************** JMX **************************************//
+	// close all connections
+	public void reset() {
+		for (FastConnectionPool partition : partitions)
+			partition.reset();
+	}
+	public void reset(boolean force) {
+		for (FastConnectionPool partition : partitions)
+			partition.reset(force);
+	}
+	public int getConnTotalSize(){
+		int size=0;
+		for (FastConnectionPool partition : partitions)
+			size+=partition.getConnTotalSize();
+		return size;
+	}
+	public int getConnIdleSize(){
+		int size=0;
+		for (FastConnectionPool partition : partitions)
+			size+=partition.getConnIdleSize();
+		return size;
+	}
+	public int getConnUsingSize(){
+		int size=0;
+		for (FastConnectionPool partition : partitions)
+			size+=partition.getConnUsingSize();
+		return size;
+	}
+	public int getSemaphoreAcquiredSize(){
+		int size=0;
+		for (FastConnectionPool partition : partitions)
+			size+=partition.getSemaphoreAcquiredSize();
+		return size;
+	}
+	public int getSemaphoreWaitingSize(){
+		int size=0;
+		for (FastConnectionPool partition : partitions)
+			size+=partition.getSemaphoreWaitingSize();
+		return size;
+	}
+	public int getTransferWaitingSize(){
+		int size=0;
+		for (FastConnectionPool partition : partitions)
+			size+=partition.getTransferWaitingSize();
+		return size;
+	}
+	public String getPoolName(){
+		return poolName;
+	}
+	public long getBorrowCount(){
+		long count=0;
+		for (FastConnectionPool partition : partitions)
+			count+=partition.getBorrowCount();
+		return count;
+	}
+	public long getBorrowTimeTotal(){
+		long time=0;
+		for (FastConnectionPool partition : partitions)
+			time+=partition.getBorrowTimeTotal();
+		return time;
+	}
+	public long getCreateCount(){
+		long count=0;
+		for (FastConnectionPool partition : partitions)
+			count+=partition.getCreateCount();
+		return count;
+	}
+	public long getCreateTimeTotal(){
+		long time=0;
+		for (FastConnectionPool partition : partitions)
+			time+=partition.getCreateTimeTotal();
+		return time;
+	}
+	public long getTestCount(){
+		long count=0;
+		for (FastConnectionPool partition : partitions)
+			count+=partition.getTestCount();
+		return count;
+	}
+	public long getTestTimeTotal(){
+		long time=0;
+		for (FastConnectionPool partition : partitions)
+			time+=partition.getTestTimeTotal();
+		return time;
+	}
+	public long getStatementCacheHitCount(){
+		long count=0;
+		for (FastConnectionPool partition : partitions)
+			count+=partition.getStatementCacheHitCount();
+		return count;
+	}
+	public long getStatementCacheMissCount(){
+		long count=0;
+		for (FastConnectionPool partition : partitions)
+			count+=partition.getStatementCacheMissCount();
+		return count;
+	}
+	public long getResultCacheHitCount(){
+		return resultCache==null?0:resultCache.getHitCount();
+	}
+	public long getResultCacheMissCount(){
+		return resultCache==null?0:resultCache.getMissCount();
+	}
+	public int getResultCacheSize(){
+		return resultCache==null?0:resultCache.size();
+	}
+	public void clearResultCache(){
+		if(resultCache!=null)resultCache.clear();
+	}
+	public long getAffinityHitCount(){
+		return affinityTable==null?0:affinityTable.getHitCount();
+	}
+	public long getAffinityMissCount(){
+		return affinityTable==null?0:affinityTable.getMissCount();
+	}
+	public int getConcurrencyLimit(){
+		int size=0;
+		for (FastConnectionPool partition : partitions)
+			size+=partition.getConcurrencyLimit();
+		return size;
+	}
+	public String[] getTenantUsages(){
+		return tenantQuotaTable == null ? new String[0] : tenantQuotaTable.getUsages();
+	}
+	public long[] getPriorityBorrowCounts(){
+		long[] counts=new long[Borrower.MaxPriority+1];
+		for (FastConnectionPool partition : partitions)
+			addTo(counts,partition.getPriorityBorrowCounts());
+		return counts;
+	}
+	public long[] getPriorityBorrowTimeTotals(){
+		long[] times=new long[Borrower.MaxPriority+1];
+		for (FastConnectionPool partition : partitions)
+			addTo(times,partition.getPriorityBorrowTimeTotals());
+		return times;
+	}
+	private static void addTo(long[] sums,long[] values){
+		for (int i = 0; i < sums.length; i++)
+			sums[i]+=values[i];
+	}
+	// register JMX
+	private void registerJMX() {
+		if (poolConfig.isEnableJMX()) {
+			final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			try {
+				final ObjectName poolRegName = new ObjectName("cn.beecp.pool.PartitionedConnectionPool:type=BeeCP("+poolName+")");
+				if (!mBeanServer.isRegistered(poolRegName)) {
+					mBeanServer.registerMBean(this,poolRegName);
+					log.info("Registered BeeCP({})as jmx-bean",poolName);
+				} else {
+					log.error("Jmx-name BeeCP({})has been exist in jmx server",poolName);
+				}
+			} catch (Exception e) {
+				log.warn("Failed to register pool jmx-bean", e);
+			}
+
+			try {
+				final ObjectName configRegName = new ObjectName("cn.beecp.BeeDataSourceConfig:type=BeeCP("+poolName+")-config");
+				if (!mBeanServer.isRegistered(configRegName)) {
+					mBeanServer.registerMBean(poolConfig,configRegName);
+					log.info("Registered BeeCP({})config as jmx-bean",poolName);
+				} else {
+					log.error("Pool BeeCP({})config has been exist in jmx server",poolName);
+				}
+			} catch (Exception e) {
+				log.warn("Failed to register pool jmx-bean", e);
+			}
+
+			if (sqlProfiler != null) {
+				try {
+					final ObjectName profilerRegName = new ObjectName("cn.beecp.pool.SqlProfiler:type=BeeCP("+poolName+")-sql");
+					if (!mBeanServer.isRegistered(profilerRegName)) {
+						mBeanServer.registerMBean(sqlProfiler,profilerRegName);
+						log.info("Registered BeeCP({})sql profiler as jmx-bean",poolName);
+					} else {
+						log.error("Pool BeeCP({})sql profiler has been exist in jmx server",poolName);
+					}
+				} catch (Exception e) {
+					log.warn("Failed to register pool jmx-bean", e);
+				}
+			}
+		}
+	}
+	// unregister JMX
+	private void unregisterJMX() {
+		if (poolConfig.isEnableJMX()) {
+			final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			try {
+				final ObjectName poolRegName = new ObjectName("cn.beecp.pool.PartitionedConnectionPool:type=BeeCP("+poolName+")");
+				if(mBeanServer.isRegistered(poolRegName)) {
+					mBeanServer.unregisterMBean(poolRegName);
+				}
+			} catch (Exception e) {
+				log.warn("Failed to unregister pool jmx-bean", e);
+			}
+
+			try {
+				final ObjectName configRegName = new ObjectName("cn.beecp.BeeDataSourceConfig:type=BeeCP("+poolName+")-config");
+				if(mBeanServer.isRegistered(configRegName)) {
+					mBeanServer.unregisterMBean(configRegName);
+				}
+			} catch (Exception e) {
+				log.warn("Failed to unregister pool jmx-bean", e);
+			}
+
+			if (sqlProfiler != null) {
+				try {
+					final ObjectName profilerRegName = new ObjectName("cn.beecp.pool.SqlProfiler:type=BeeCP("+poolName+")-sql");
+					if(mBeanServer.isRegistered(profilerRegName)) {
+						mBeanServer.unregisterMBean(profilerRegName);
+					}
+				} catch (Exception e) {
+					log.warn("Failed to unregister pool jmx-bean", e);
+				}
+			}
+		}
+	}
+	//******************************** JMX **************************************//
+}
@@ -29,9 +29,15 @@ class PoolExceptionList {
 	static final SQLTimeoutException RequestTimeoutException = new SQLTimeoutException("Request timeout");
 
 	static final SQLException RequestInterruptException = new SQLException("Request interrupt");
+
+	static final RequestRejectedException RequestRejectException = new RequestRejectedException("Request rejected,estimated wait time exceeds max wait");
 	
 	static final SQLException PoolCloseException = new SQLException("Pool has been closed or in resting");
 	
+	static final SQLException PriorityException = new SQLException("Priority must be between 0 and 9");
+
+	static final SQLException ConnectionCountException = new SQLException("Connection count must be between 1 and pool max size");
+
 	static final SQLException WaitTimeException = new SQLException("Wait time must be greater than zero");
 
     static final SQLException ConnectionClosedException = new SQLException("Connection has been closed");
@@ -21,6 +21,7 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import static cn.beecp.pool.PoolObjectsState.CONNECTION_IDLE;
 import static cn.beecp.util.BeecpUtil.oclose;
@@ -42,6 +43,25 @@ class PooledConnection extends StatementCache{
 	volatile long lastAccessTime;
 	boolean commitDirtyInd;
 	boolean curAutoCommit;
+	boolean thinResultSetInd;
+	boolean trustedInd;//statements not wrapped,assume commit dirty when autoCommit off
+	int updateBatchSize;//max size of coalesced inserts,0 means not coalesce
+	ProxyStatementBase batchingStatement;//statement has coalesced inserts not executed
+	SqlProfiler sqlProfiler;//not null when sql profile enabled
+	ResultCache resultCache;//not null when result cache enabled
+	long resultCacheWriteMask;//cached tables written in transaction,invalidated again on commit
+	volatile Object affinityKey;//key of last affinity borrow
+	boolean sessionStateCacheInd;//getters answered by kept state,setters with same value skipped
+	int curTransactionIsolation;
+	boolean curReadOnly;
+	String curCatalog;
+	boolean[] stateKnownInds=new boolean[4];//index same as changed indicator,known after set or read once
+	int defaultQueryTimeout;//seconds,0:not managed by pool
+	long deadline;//nano time of borrower deadline,limits statement execution,0:none
+	ConcurrencyLimiter concurrencyLimiter;//rtt of queries are recorded to it
+	volatile int limiterPermit;//1:a permit of concurrency limiter is held by borrower
+	volatile TenantQuota tenantQuota;//quota of borrower tenant,permit is held until return
+	Statement testStatement;//created on first test,reused by sql test policies
 	private FastConnectionPool pool;
 	private static Logger log = LoggerFactory.getLogger(PooledConnection.class);
 	
@@ -66,10 +86,21 @@ class PooledConnection extends StatementCache{
 		state=connState;
 		pConfig=config;
 		curAutoCommit=pConfig.isDefaultAutoCommit();
-		stmCacheValid = pConfig.getPreparedStatementCacheSize()>0;
+		thinResultSetInd=pConfig.isThinResultSet();
+		trustedInd=pConfig.isTrustedMode();
+		sessionStateCacheInd=pConfig.isCacheSessionState();
+		updateBatchSize=pConfig.getUpdateBatchSize();
+		defaultQueryTimeout=pConfig.getDefaultQueryTimeout();
+		sqlProfiler=connPool.getSqlProfiler();
+		resultCache=connPool.getResultCache();
+		concurrencyLimiter=connPool.getConcurrencyLimiter();
+		stmCacheValid = pConfig.getPreparedStatementCacheSize()>0 && !trustedInd;
+		if(stmCacheValid && connPool.isMetricsEnabled())
+			setStatisticCounters(connPool.getStmCacheHitCounter(),connPool.getStmCacheMissCounter());
 		updateAccessTime();
 	}
 	public String toString() { return rawConn.toString();}
+	FastConnectionPool getPool() { return pool;}
 	public boolean equals(Object obj) { return this==obj;}
 
 	void closeRawConn() {//called by pool
@@ -81,17 +112,46 @@ class PooledConnection extends StatementCache{
 		resetRawConnOnReturn();
 		if(stmCacheValid)
 			this.clearStatement();
+		if(testStatement!=null)
+			oclose(testStatement);
 		oclose(rawConn);
 	}
 
 	//***************called by connection proxy ********//
 	void returnToPoolBySelf(){
 		proxyConn=null;
+		deadline=0;
+		if(limiterPermit==1)pool.releaseLimiterPermit(this);
+		if(tenantQuota!=null)TenantQuota.release(this);
 		if(resetRawConnOnReturn()) {
 			pool.recycle(this);
 		}else
 		    pool.abandonOnReturn(this);
 	}
+	void flushUpdateBatch() throws SQLException {
+		ProxyStatementBase statement=batchingStatement;
+		batchingStatement=null;
+		statement.executeUpdateBatch();
+	}
+	void discardUpdateBatch() {
+		ProxyStatementBase statement=batchingStatement;
+		batchingStatement=null;
+		try {
+			statement.clearUpdateBatch();
+		} catch (Throwable e) {
+			log.warn("Failed to clear coalesced inserts", e);
+		}
+	}
+	//other connections may cache results before commit,so invalidate again on commit
+	void invalidateResultCache(long tableMask) {
+		resultCache.invalidate(tableMask);
+		if(!curAutoCommit)resultCacheWriteMask|=tableMask;
+	}
+	void invalidateCommittedResultCache() {
+		long tableMask=resultCacheWriteMask;
+		resultCacheWriteMask=0;
+		resultCache.invalidate(tableMask);
+	}
 	void setCurAutoCommit(boolean curAutoCommit) {
 		this.curAutoCommit = curAutoCommit;
 	}
@@ -102,6 +162,9 @@ class PooledConnection extends StatementCache{
 		commitDirtyInd=!curAutoCommit;
 		lastAccessTime=currentTimeMillis();
 	}
+	void setStateKnown(short pos){
+		stateKnownInds[pos]=true;
+	}
     void setChangedInd(short pos,boolean changed){
 		if(changedInds[pos]=changed)
 			changedCount++;
@@ -121,7 +184,8 @@ class PooledConnection extends StatementCache{
 	}
 	//reset connection on return to pool
 	private boolean resetRawConnOnReturn() {
-		if (!curAutoCommit&&commitDirtyInd){//Roll back when commit dirty
+		resultCacheWriteMask=0;
+		if (!curAutoCommit&&(commitDirtyInd||trustedInd)){//Roll back when commit dirty
 			try {
 				rawConn.rollback();
 				updateAccessTime();
@@ -146,18 +210,24 @@ class PooledConnection extends StatementCache{
 				if (changedInds[1]) {
 					pos=1;
 					rawConn.setTransactionIsolation(pConfig.getDefaultTransactionIsolationCode());
+					setStateKnown(Pos_TransactionIsolationInd);
+					curTransactionIsolation=pConfig.getDefaultTransactionIsolationCode();
 					updateAccessTime();
 					changedInds[1] = false;
 				}
 				if (changedInds[2]) {//reset readonly
 					pos=2;
 					rawConn.setReadOnly(pConfig.isDefaultReadOnly());
+					setStateKnown(Pos_ReadOnlyInd);
+					curReadOnly=pConfig.isDefaultReadOnly();
 					updateAccessTime();
 					changedInds[2] = false;
 				}
 				if (changedInds[3]) {//reset catalog
 					pos=3;
 					rawConn.setCatalog(pConfig.getDefaultCatalog());
+					setStateKnown(Pos_CatalogInd);
+					curCatalog=pConfig.getDefaultCatalog();
 					updateAccessTime();
 					changedInds[3] = false;
 				}
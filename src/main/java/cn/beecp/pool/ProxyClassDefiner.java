@@ -0,0 +1,312 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import static cn.beecp.util.BeecpUtil.isNullText;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Load proxy connection factory,proxy classes are generated at build time normally;
+ * if not found(repackaged or shaded jar without them),generate them with javassist
+ * and define them into pool package at runtime,generated byte code can be cached
+ * in a disk folder,then reused in next startup.Cached classes are checked with a
+ * checksum file(written last),a partial or corrupt cache is generated again.
+ * Time of definition is reported in log(generated or cached),not limited.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ProxyClassDefiner {
+	private static ProxyConnectionFactory proxyConnFactory;
+	private static Map<String, byte[]> commonClassBytesMap;//common proxy classes defined at runtime
+	private static final Map<String, ProxyConnectionFactory> SpecializedFactoryMap = new HashMap<String, ProxyConnectionFactory>();
+	private static final AtomicInteger SpecializedClassIndex = new AtomicInteger();//suffix not reused after failed definition
+	private static final String[] ProxyBaseClassNames = {
+			"cn.beecp.pool.ProxyConnectionBase",
+			"cn.beecp.pool.ProxyStatementBase",
+			"cn.beecp.pool.ProxyDatabaseMetaDataBase",
+			"cn.beecp.pool.ProxyResultSetBase",
+			"cn.beecp.pool.CachedResultSetBase",
+			"cn.beecp.pool.PooledConnection",
+			"cn.beecp.pool.ProxyConnectionFactory",
+			"cn.beecp.pool.ProxyClassGenerator"};
+	//define order,referred classes first(Java9+ links class on definition,verifier loads referred classes)
+	private static final String[] ProxyClassNames = {
+			"cn.beecp.pool.ProxyStatement",
+			"cn.beecp.pool.ProxyPsStatement",
+			"cn.beecp.pool.ProxyCsStatement",
+			"cn.beecp.pool.ProxyProfiledStatement",
+			"cn.beecp.pool.ProxyProfiledPsStatement",
+			"cn.beecp.pool.ProxyProfiledCsStatement",
+			"cn.beecp.pool.ProxyDatabaseMetaData",
+			"cn.beecp.pool.ProxyResultSet",
+			"cn.beecp.pool.ProxyThinResultSet",
+			"cn.beecp.pool.ProxyCachedResultSet",
+			"cn.beecp.pool.ProxyConnection",
+			"cn.beecp.pool.ProxyTrustedConnection",
+			"cn.beecp.pool.ProxyProfiledConnection",
+			ProxyConnectionFactory.ImplClassName};
+	private static final String ChecksumFileName = "checksum";
+	private static Logger log = LoggerFactory.getLogger(ProxyClassDefiner.class);
+
+	/**
+	 * get proxy connection factory,which is shared by pools in same class loader
+	 *
+	 * @param cacheFolder disk folder to cache byte code of generated classes,null means no cache
+	 * @return proxy connection factory
+	 * @throws SQLException if proxy classes not found and failed to generate them
+	 */
+	static synchronized ProxyConnectionFactory getProxyConnectionFactory(String cacheFolder) throws SQLException {
+		if (proxyConnFactory == null) {
+			Class<?> factoryClass;
+			try {
+				factoryClass = Class.forName(ProxyConnectionFactory.ImplClassName, true, ProxyClassDefiner.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				factoryClass = defineProxyClasses(cacheFolder);
+			}
+
+			try {
+				proxyConnFactory = (ProxyConnectionFactory) factoryClass.getDeclaredConstructor().newInstance();
+			} catch (Exception e) {
+				throw new SQLException("Failed to instantiate proxy connection factory", e);
+			}
+		}
+		return proxyConnFactory;
+	}
+
+	/**
+	 * get proxy connection factory of driver specialized proxy classes,pools with same
+	 * driver classes share one
+	 *
+	 * @param driverClassMap jdbc interface to driver implementation class,connection interface must be mapped
+	 * @return proxy connection factory
+	 * @throws SQLException if failed to generate specialized classes
+	 */
+	static synchronized ProxyConnectionFactory getSpecializedProxyConnectionFactory(Map<Class<?>, Class<?>> driverClassMap) throws SQLException {
+		Map<String, String> classNameMap = new TreeMap<String, String>();
+		for (Map.Entry<Class<?>, Class<?>> entry : driverClassMap.entrySet())
+			classNameMap.put(entry.getKey().getName(), entry.getValue().getName());
+		String key = classNameMap.toString();
+		ProxyConnectionFactory factory = SpecializedFactoryMap.get(key);
+		if (factory != null) return factory;
+
+		long startTime = nanoTime();
+		String classNameSuffix = "_" + SpecializedClassIndex.incrementAndGet();
+		Map<String, byte[]> classBytesMap;
+		try {
+			ProxyClassGenerator generator = new ProxyClassGenerator(classNameSuffix, driverClassMap);
+			generator.setCommonClassBytes(commonClassBytesMap);
+			classBytesMap = generator.createJdbcProxyClassBytes();
+		} catch (NoClassDefFoundError e) {
+			throw new SQLException("Javassist not found to generate driver specialized proxy classes", e);
+		} catch (Exception e) {
+			throw new SQLException("Failed to generate driver specialized proxy classes", e);
+		}
+
+		try {
+			Class<?> factoryClass = defineClasses(classBytesMap, classNameSuffix);
+			factory = (ProxyConnectionFactory) factoryClass.getDeclaredConstructor().newInstance();
+		} catch (Throwable e) {
+			throw new SQLException("Failed to define driver specialized proxy classes", e);
+		}
+
+		SpecializedFactoryMap.put(key, factory);
+		log.info("BeeCP defined driver specialized proxy classes{}in {}ms", key, NANOSECONDS.toMillis(nanoTime() - startTime));
+		return factory;
+	}
+
+	//generate(or read from cache)proxy classes and define them
+	private static Class<?> defineProxyClasses(String cacheFolder) throws SQLException {
+		long startTime = nanoTime();
+		File folder = null;
+		if (!isNullText(cacheFolder)) {
+			String cacheKey = getCacheKey();
+			if (cacheKey != null) folder = new File(cacheFolder, cacheKey);
+		}
+
+		Map<String, byte[]> classBytesMap = (folder != null) ? readCache(folder) : null;
+		boolean fromCache = classBytesMap != null;
+		if (!fromCache) {
+			try {
+				classBytesMap = new ProxyClassGenerator().createJdbcProxyClassBytes();
+			} catch (NoClassDefFoundError e) {
+				throw new SQLException("Jdbc proxy class missed,javassist not found to generate them", e);
+			} catch (Exception e) {
+				throw new SQLException("Failed to generate jdbc proxy classes", e);
+			}
+			if (folder != null) writeCache(folder, classBytesMap);
+		}
+
+		Class<?> factoryClass = null;
+		try {
+			factoryClass = defineClasses(classBytesMap, "");
+		} catch (Throwable e) {
+			throw new SQLException("Failed to define jdbc proxy classes", e);
+		}
+		if (factoryClass == null) throw new SQLException("Jdbc proxy class missed");
+		commonClassBytesMap = classBytesMap;
+
+		log.info("BeeCP defined jdbc proxy classes({})in {}ms", fromCache ? "cached" : "generated", NANOSECONDS.toMillis(nanoTime() - startTime));
+		return factoryClass;
+	}
+
+	//define classes in order of 'ProxyClassNames',return factory class(null if missed)
+	private static Class<?> defineClasses(Map<String, byte[]> classBytesMap, String classNameSuffix) throws Exception {
+		Class<?> factoryClass = null;
+		for (String className : ProxyClassNames) {
+			String name = className + classNameSuffix;
+			byte[] bytes = classBytesMap.get(name);
+			if (bytes == null) continue;//common one of specialized classes
+			Class<?> proxyClass = defineClass(name, bytes);
+			if (className.equals(ProxyConnectionFactory.ImplClassName)) factoryClass = proxyClass;
+		}
+		return factoryClass;
+	}
+	//define class into pool package,generated classes use package members of base classes
+	private static Class<?> defineClass(String className, byte[] bytes) throws Exception {
+		Method lookupDefineMethod = null;
+		try {//Java9+
+			lookupDefineMethod = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+		} catch (NoSuchMethodException e) {
+		}
+
+		if (lookupDefineMethod != null) {
+			return (Class<?>) lookupDefineMethod.invoke(MethodHandles.lookup(), bytes);
+		} else {
+			Method loaderDefineMethod = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class, int.class, int.class);
+			loaderDefineMethod.setAccessible(true);
+			return (Class<?>) loaderDefineMethod.invoke(ProxyClassDefiner.class.getClassLoader(), className, bytes, 0, bytes.length);
+		}
+	}
+
+	//cache key:java version and checksum of base classes,cache is invalid when any one changed
+	private static String getCacheKey() {
+		CRC32 crc = new CRC32();
+		ClassLoader classLoader = ProxyClassDefiner.class.getClassLoader();
+		for (String className : ProxyBaseClassNames) {
+			byte[] bytes = readBytes(classLoader.getResourceAsStream(className.replace('.', '/') + ".class"));
+			if (bytes == null) return null;
+			crc.update(bytes);
+		}
+		return "java" + System.getProperty("java.specification.version") + "-" + Long.toHexString(crc.getValue());
+	}
+	private static Map<String, byte[]> readCache(File folder) {
+		File checksumFile = new File(folder, ChecksumFileName);
+		if (!checksumFile.isFile()) return null;
+		Map<String, byte[]> classBytesMap = new LinkedHashMap<String, byte[]>(ProxyClassNames.length);
+		for (String className : ProxyClassNames) {
+			File classFile = new File(folder, className.replace('.', File.separatorChar) + ".class");
+			if (!classFile.isFile()) return null;
+			try {
+				byte[] bytes = readBytes(new FileInputStream(classFile));
+				if (bytes == null) return null;
+				classBytesMap.put(className, bytes);
+			} catch (IOException e) {
+				log.warn("Failed to read cached proxy class:{}", classFile, e);
+				return null;
+			}
+		}
+		try {
+			byte[] checksum = readBytes(new FileInputStream(checksumFile));
+			if (checksum != null && getChecksum(classBytesMap).equals(new String(checksum, "UTF-8"))) return classBytesMap;
+		} catch (IOException e) {
+		}
+		log.warn("Cached proxy classes are corrupt,generate them again:{}", folder);
+		return null;
+	}
+	private static String getChecksum(Map<String, byte[]> classBytesMap) {
+		CRC32 crc = new CRC32();
+		for (String className : ProxyClassNames) {
+			byte[] bytes = classBytesMap.get(className);
+			if (bytes != null) crc.update(bytes);
+		}
+		return Long.toHexString(crc.getValue());
+	}
+	private static void writeCache(File folder, Map<String, byte[]> classBytesMap) {
+		for (Map.Entry<String, byte[]> entry : classBytesMap.entrySet()) {
+			File classFile = new File(folder, entry.getKey().replace('.', File.separatorChar) + ".class");
+			if (!writeFile(classFile, entry.getValue())) return;
+		}
+		try {//checksum is last one,cache is valid after it written
+			writeFile(new File(folder, ChecksumFileName), getChecksum(classBytesMap).getBytes("UTF-8"));
+		} catch (IOException e) {
+		}
+	}
+	private static boolean writeFile(File file, byte[] bytes) {
+		File tempFile = new File(file.getPath() + ".tmp");
+		FileOutputStream out = null;
+		try {//write to temp file,then rename,other processes not read a partial file
+			file.getParentFile().mkdirs();
+			out = new FileOutputStream(tempFile);
+			out.write(bytes);
+			out.close();
+			out = null;
+			if (!tempFile.renameTo(file)) {
+				file.delete();//not replaced on some platforms
+				if (!tempFile.renameTo(file)) tempFile.delete();
+			}
+			return true;
+		} catch (IOException e) {
+			log.warn("Failed to cache proxy class:{}", file, e);
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	private static byte[] readBytes(InputStream in) {
+		if (in == null) return null;
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+			byte[] buffer = new byte[4096];
+			int len;
+			while ((len = in.read(buffer)) != -1)
+				out.write(buffer, 0, len);
+			return out.toByteArray();
+		} catch (IOException e) {
+			return null;
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+}
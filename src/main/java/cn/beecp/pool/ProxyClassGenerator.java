@@ -18,12 +18,17 @@ package cn.beecp.pool;
 import javassist.*;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 /**
  * An independent execution toolkit class to generate JDBC proxy classes with javassist,
- * then write to class folder.
+ * then write to class folder;if proxy classes not found at pool initialization,
+ * it is also called to generate them in memory(see ProxyClassDefiner).
  *
  * @author Chris.Liao
  * @version 1.0
@@ -36,6 +41,42 @@ public final class ProxyClassGenerator {
 	 */
 	private static String folder ="BeeCP/target/classes";
 
+	/**
+	 * suffix of generated class names,empty for common proxy classes
+	 */
+	private String classNameSuffix="";
+
+	/**
+	 * jdbc interface to driver implementation class,proxies cast delegate to them
+	 */
+	private Map<Class<?>,Class<?>> driverClassMap=new HashMap<Class<?>,Class<?>>();
+
+	/**
+	 * byte code of common proxy classes defined at runtime(not found as class file),
+	 * specialized classes refer to them
+	 */
+	private Map<String,byte[]> commonClassBytesMap;
+
+	/**
+	 * generator of common proxy classes
+	 */
+	public ProxyClassGenerator(){}
+
+	/**
+	 * generator of driver specialized proxy classes,only mapped interfaces have specialized
+	 * proxy classes,connection interface must be mapped.
+	 *
+	 * @param classNameSuffix suffix of generated class names
+	 * @param driverClassMap jdbc interface to driver implementation class
+	 */
+	ProxyClassGenerator(String classNameSuffix,Map<Class<?>,Class<?>> driverClassMap){
+		this.classNameSuffix=classNameSuffix;
+		this.driverClassMap=driverClassMap;
+	}
+	void setCommonClassBytes(Map<String,byte[]> commonClassBytesMap){
+		this.commonClassBytesMap=commonClassBytesMap;
+	}
+
 	/**
 	 * @param args take the first argument as classes generated output folder,otherwise take default folder
 	 *
@@ -61,6 +102,20 @@ public final class ProxyClassGenerator {
 		}
 	}
 
+	/**
+	 * generate proxy classes in memory
+	 * @return class name to byte code,in generated order
+	 * @throws Exception if failed to generate class
+	 */
+	public Map<String,byte[]> createJdbcProxyClassBytes() throws Exception {
+		CtClass[] ctClasses = createJdbcProxyClasses();
+		Map<String,byte[]> classBytesMap = new LinkedHashMap<String,byte[]>(ctClasses.length);
+		for (CtClass ctClass:ctClasses) {
+			classBytesMap.put(ctClass.getName(),ctClass.toBytecode());
+		}
+		return classBytesMap;
+	}
+
 	/**
 	 * create all wrapper classes based on JDBC some interfaces
 	 *  @throws Exception if failed to generate class
@@ -68,188 +123,254 @@ public final class ProxyClassGenerator {
 	 *
 	 * new Class:
 	 * cn.beecp.pool.ProxyConnection
+	 * cn.beecp.pool.ProxyTrustedConnection
+	 * cn.beecp.pool.ProxyProfiledConnection
 	 * cn.beecp.pool.ProxyStatement
 	 * cn.beecp.pool.ProxyPsStatement
 	 * cn.beecp.pool.ProxyCsStatement
+	 * cn.beecp.pool.ProxyProfiledStatement
+	 * cn.beecp.pool.ProxyProfiledPsStatement
+	 * cn.beecp.pool.ProxyProfiledCsStatement
 	 * cn.beecp.pool.ProxyResultSet
+	 * cn.beecp.pool.ProxyThinResultSet
+	 * cn.beecp.pool.ProxyCachedResultSet
+	 * cn.beecp.pool.ProxyConnectionFactoryImpl
 	 */
 	public CtClass[] createJdbcProxyClasses() throws Exception {
 		try{
-			ClassPool classPool = ClassPool.getDefault();
+			ClassPool classPool = new ClassPool(true);//not shared,generation may be run again at pool initialization
 			classPool.importPackage("java.sql");
 			classPool.importPackage("cn.beecp.pool");
 			classPool.appendClassPath(new LoaderClassPath(this.getClass().getClassLoader()));
+			for (Class<?> driverClass:driverClassMap.values()) {
+				if (driverClass.getClassLoader() != null)
+					classPool.appendClassPath(new LoaderClassPath(driverClass.getClassLoader()));
+			}
+			if (commonClassBytesMap != null) {
+				for (Map.Entry<String,byte[]> entry:commonClassBytesMap.entrySet())
+					classPool.insertClassPath(new ByteArrayClassPath(entry.getKey(),entry.getValue()));
+			}
+			CtClass ctStatementIntf = classPool.get(Statement.class.getName());
+			CtClass ctPsStatementIntf = classPool.get(PreparedStatement.class.getName());
+			CtClass ctCsStatementIntf = classPool.get(CallableStatement.class.getName());
+			CtClass ctDatabaseMetaDataIntf = classPool.get(DatabaseMetaData.class.getName());
+			CtClass ctResultSetIntf = classPool.get(ResultSet.class.getName());
+			CtClass ctDatabaseMetaDataSuperClass = classPool.get(ProxyDatabaseMetaDataBase.class.getName());
+			CtClass ctResultSetSuperclass = classPool.get(ProxyResultSetBase.class.getName());
+			ArrayList<CtClass> ctClassList = new ArrayList<CtClass>(14);
+			CtClass ctStatementProxyImplClass = null;
+			CtClass ctPsStatementProxyImplClass = null;
+			CtClass ctCsStatementProxyImplClass = null;
+			CtClass ctDatabaseMetaDataProxyImplClass = null;
+			CtClass ctResultSetIntfProxyImplClass = null;
+			CtClass ctThinResultSetProxyImplClass = null;
 
 			//............Connection Begin.........
 			CtClass ctConIntf = classPool.get(Connection.class.getName());
 			CtClass ctConSuperclass = classPool.get(ProxyConnectionBase.class.getName());
-			String ctConIntfProxyClassName ="cn.beecp.pool.ProxyConnection";
-			CtClass ctConIntfProxyImplClass = classPool.makeClass(ctConIntfProxyClassName,ctConSuperclass);
-			ctConIntfProxyImplClass.setInterfaces(new CtClass[]{ctConIntf});
-			ctConIntfProxyImplClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
-
 			CtClass[] conCreateParam = new CtClass[]{
 					classPool.get("cn.beecp.pool.PooledConnection")};
-
-			CtConstructor subClassConstructor = new CtConstructor(conCreateParam,ctConIntfProxyImplClass);
-			subClassConstructor.setModifiers(Modifier.PUBLIC);
-			StringBuilder body = new StringBuilder();
-			body.append("{");
-			body.append("super($$);");
-			body.append("}");
-			subClassConstructor.setBody(body.toString());
-			ctConIntfProxyImplClass.addConstructor(subClassConstructor);
+			CtClass ctConIntfProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyConnection",ctConSuperclass,ctConIntf,conCreateParam);
+			ctClassList.add(ctConIntfProxyImplClass);
+
+			//trusted connection returns raw statements,profiled connection returns profiled statements,
+			//common ones shared by specialized factories
+			CtClass ctTrustedConProxyImplClass = null;
+			CtClass ctProfiledConProxyImplClass = null;
+			if (classNameSuffix.length() == 0) {
+				ctTrustedConProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyTrustedConnection",ctConSuperclass,ctConIntf,conCreateParam);
+				ctClassList.add(ctTrustedConProxyImplClass);
+				ctProfiledConProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyProfiledConnection",ctConSuperclass,ctConIntf,conCreateParam);
+				ctClassList.add(ctProfiledConProxyImplClass);
+			}
 			//...............Connection End................
 
-			//.............statement Begin.............
-			CtClass ctStatementIntf = classPool.get(Statement.class.getName());
-			CtClass ctStatementWrapClass=classPool.get(ProxyStatementBase.class.getName());
-			String ctStatementIntfProxyClassName ="cn.beecp.pool.ProxyStatement";
-			CtClass ctStatementProxyImplClass = classPool.makeClass(ctStatementIntfProxyClassName,ctStatementWrapClass);
-			ctStatementProxyImplClass.setInterfaces(new CtClass[]{ctStatementIntf});
-			ctStatementProxyImplClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
+			//.............Statement Begin.............
+			CtClass statementSuperClass= classPool.get(ProxyStatementBase.class.getName());
 			CtClass[] statementCreateParam = new CtClass[] {
 					classPool.get("java.sql.Statement"),
-					classPool.get("cn.beecp.pool.ProxyConnection"),
+					classPool.get("cn.beecp.pool.ProxyConnectionBase"),
 					classPool.get("cn.beecp.pool.PooledConnection")};
-			subClassConstructor = new CtConstructor(statementCreateParam,ctStatementProxyImplClass);
-			subClassConstructor.setModifiers(Modifier.PUBLIC);
-			body.delete(0, body.length());
-			body.append("{");
-			body.append("super($$);");
-			body.append("}");
-			subClassConstructor.setBody(body.toString());
-			ctStatementProxyImplClass.addConstructor(subClassConstructor);
-			//.............Statement Begin...............
+			if (isGenerated(Statement.class)) {
+				ctStatementProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyStatement",statementSuperClass,ctStatementIntf,statementCreateParam);
+				ctClassList.add(ctStatementProxyImplClass);
+			}
+			//.............Statement End...............
 
 			//............PreparedStatement Begin...............
-			CtClass ctPsStatementIntf = classPool.get(PreparedStatement.class.getName());
-			CtClass ctPStatementWrapClass=classPool.get(ProxyStatementBase.class.getName());
-			String ctPsStatementIntfProxyClassName ="cn.beecp.pool.ProxyPsStatement";
-			CtClass ctPsStatementProxyImplClass = classPool.makeClass(ctPsStatementIntfProxyClassName,ctPStatementWrapClass);
-			ctPsStatementProxyImplClass.setInterfaces(new CtClass[]{ctPsStatementIntf});
-			ctPsStatementProxyImplClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
-
 			CtClass[] statementPsCreateParam = new CtClass[] {
 					classPool.get("java.sql.PreparedStatement"),
-					classPool.get("cn.beecp.pool.ProxyConnection"),
+					classPool.get("cn.beecp.pool.ProxyConnectionBase"),
 					classPool.get("cn.beecp.pool.PooledConnection"),
 					classPool.get("boolean")};
-			subClassConstructor = new CtConstructor(statementPsCreateParam,ctPsStatementProxyImplClass);
-			subClassConstructor.setModifiers(Modifier.PUBLIC);
-			body.delete(0, body.length());
-			body.append("{");
-			body.append("super($$);");
-			body.append("}");
-			subClassConstructor.setBody(body.toString());
-			ctPsStatementProxyImplClass.addConstructor(subClassConstructor);
+			if (isGenerated(PreparedStatement.class)) {
+				ctPsStatementProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyPsStatement",statementSuperClass,ctPsStatementIntf,statementPsCreateParam);
+				ctClassList.add(ctPsStatementProxyImplClass);
+			}
 			//........PreparedStatement End..............
 
 			//..............CallableStatement Begin.............
-			CtClass ctCsStatementIntf = classPool.get(CallableStatement.class.getName());
-			CtClass ctCStatementWrapClass=classPool.get(ProxyStatementBase.class.getName());
-			String ctCsStatementIntfProxyClassName ="cn.beecp.pool.ProxyCsStatement";
-			CtClass ctCsStatementProxyImplClass = classPool.makeClass(ctCsStatementIntfProxyClassName,ctCStatementWrapClass);
-			ctCsStatementProxyImplClass.setInterfaces(new CtClass[]{ctCsStatementIntf});
-			ctCsStatementProxyImplClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
-
 			CtClass[] statementCsCreateParam = new CtClass[] {
 					classPool.get("java.sql.CallableStatement"),
-					classPool.get("cn.beecp.pool.ProxyConnection"),
+					classPool.get("cn.beecp.pool.ProxyConnectionBase"),
 					classPool.get("cn.beecp.pool.PooledConnection"),
 					classPool.get("boolean")};
-			subClassConstructor = new CtConstructor(statementCsCreateParam,ctCsStatementProxyImplClass);
-			subClassConstructor.setModifiers(Modifier.PUBLIC);
-
-			body.delete(0, body.length());
-			body.append("{");
-			body.append("super($$);");
-			body.append("}");
-			subClassConstructor.setBody(body.toString());
-			ctCsStatementProxyImplClass.addConstructor(subClassConstructor);
+			if (isGenerated(CallableStatement.class)) {
+				ctCsStatementProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyCsStatement",statementSuperClass,ctCsStatementIntf,statementCsCreateParam);
+				ctClassList.add(ctCsStatementProxyImplClass);
+			}
 			//...........CallableStatement End...............
 
+			//..............Profiled statements Begin.............
+			CtClass ctProfiledStatementProxyImplClass = null;
+			CtClass ctProfiledPsStatementProxyImplClass = null;
+			CtClass ctProfiledCsStatementProxyImplClass = null;
+			if (ctProfiledConProxyImplClass != null) {
+				ctProfiledStatementProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyProfiledStatement",statementSuperClass,ctStatementIntf,statementCreateParam);
+				ctProfiledPsStatementProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyProfiledPsStatement",statementSuperClass,ctPsStatementIntf,statementPsCreateParam);
+				ctProfiledCsStatementProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyProfiledCsStatement",statementSuperClass,ctCsStatementIntf,statementCsCreateParam);
+				ctClassList.add(ctProfiledStatementProxyImplClass);
+				ctClassList.add(ctProfiledPsStatementProxyImplClass);
+				ctClassList.add(ctProfiledCsStatementProxyImplClass);
+			}
+			//...........Profiled statements End...............
+
 			//..............DatabaseMetaData Begin.............
-			CtClass ctDatabaseMetaDataIntf = classPool.get(DatabaseMetaData.class.getName());
-			CtClass ctDatabaseMetaDataSuperClass = classPool.get(ProxyDatabaseMetaDataBase.class.getName());
-			String cttDatabaseMetaDataIntfProxyClassName ="cn.beecp.pool.ProxyDatabaseMetaData";
-			CtClass ctDatabaseMetaDataProxyImplClass = classPool.makeClass(cttDatabaseMetaDataIntfProxyClassName,ctDatabaseMetaDataSuperClass);
-			ctDatabaseMetaDataProxyImplClass.setInterfaces(new CtClass[]{ctDatabaseMetaDataIntf});
-			ctDatabaseMetaDataProxyImplClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
-
-			CtClass[] databaseMetaData = new CtClass[] {
-					classPool.get("java.sql.DatabaseMetaData"),
-					classPool.get("cn.beecp.pool.ProxyConnection"),
-					classPool.get("cn.beecp.pool.PooledConnection")};
-			subClassConstructor = new CtConstructor(databaseMetaData,ctDatabaseMetaDataProxyImplClass);
-			subClassConstructor.setModifiers(Modifier.PUBLIC);
-			body.delete(0, body.length());
-			body.append("{");
-			body.append("super($$);");
-			body.append("}");
-			subClassConstructor.setBody(body.toString());
-			ctDatabaseMetaDataProxyImplClass.addConstructor(subClassConstructor);
+			if (isGenerated(DatabaseMetaData.class)) {
+				CtClass[] databaseMetaData = new CtClass[] {
+						classPool.get("java.sql.DatabaseMetaData"),
+						classPool.get("cn.beecp.pool.ProxyConnectionBase"),
+						classPool.get("cn.beecp.pool.PooledConnection")};
+				ctDatabaseMetaDataProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyDatabaseMetaData",ctDatabaseMetaDataSuperClass,ctDatabaseMetaDataIntf,databaseMetaData);
+				ctClassList.add(ctDatabaseMetaDataProxyImplClass);
+			}
 			//...........DatabaseMetaData End...............
 
 			//............... Result Begin..................
-			CtClass ctResultSetIntf = classPool.get(ResultSet.class.getName());
-			CtClass ctResultSetSuperclass= classPool.get(ProxyResultSetBase.class.getName());
-			String ctResultSetIntfProxyClassName ="cn.beecp.pool.ProxyResultSet";
-			CtClass ctResultSetIntfProxyImplClass = classPool.makeClass(ctResultSetIntfProxyClassName,ctResultSetSuperclass);
-			ctResultSetIntfProxyImplClass.setInterfaces(new CtClass[]{ctResultSetIntf});
-			ctResultSetIntfProxyImplClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
-
-			CtClass[] resultSetCreateParam = new CtClass[]{
-					classPool.get("java.sql.ResultSet"),
-					classPool.get("cn.beecp.pool.ProxyStatementBase"),
-					classPool.get("cn.beecp.pool.PooledConnection")};
-			subClassConstructor = new CtConstructor(resultSetCreateParam,ctResultSetIntfProxyImplClass);
-			subClassConstructor.setModifiers(Modifier.PUBLIC);
-			body.delete(0, body.length());
-			body.append("{");
-			body.append("super($$);");
-			body.append("}");
-			subClassConstructor.setBody(body.toString());
-			ctResultSetIntfProxyImplClass.addConstructor(subClassConstructor);
+			if (isGenerated(ResultSet.class)) {
+				CtClass[] resultSetCreateParam = new CtClass[]{
+						classPool.get("java.sql.ResultSet"),
+						classPool.get("cn.beecp.pool.ProxyStatementBase"),
+						classPool.get("cn.beecp.pool.PooledConnection")};
+				ctResultSetIntfProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyResultSet",ctResultSetSuperclass,ctResultSetIntf,resultSetCreateParam);
+				ctClassList.add(ctResultSetIntfProxyImplClass);
+
+				//thin result set registers to connection,which closes it on return
+				ctThinResultSetProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyThinResultSet",ctResultSetSuperclass,ctResultSetIntf,resultSetCreateParam);
+				ctThinResultSetProxyImplClass.getDeclaredConstructors()[0].insertAfter("registerToConnection();");
+				ctClassList.add(ctThinResultSetProxyImplClass);
+			}
+
+			//cached result set on rows in memory,common one shared by specialized factories
+			CtClass ctCachedResultSetSuperclass = classPool.get(CachedResultSetBase.class.getName());
+			CtClass ctCachedResultSetProxyImplClass = null;
+			if (classNameSuffix.length() == 0) {
+				CtClass[] cachedResultSetCreateParam = new CtClass[]{
+						classPool.get("cn.beecp.pool.DetachedRows"),
+						classPool.get("cn.beecp.pool.ProxyStatementBase")};
+				ctCachedResultSetProxyImplClass = makeProxyClass(classPool,"cn.beecp.pool.ProxyCachedResultSet",ctCachedResultSetSuperclass,ctResultSetIntf,cachedResultSetCreateParam);
+				ctClassList.add(ctCachedResultSetProxyImplClass);
+			}
 			//............Result End...............
 
-			this.createProxyConnectionClass(classPool,ctConIntfProxyImplClass,ctConIntf,ctConSuperclass);
-			CtClass statementSuperClass= classPool.get(ProxyStatementBase.class.getName());
-			this.createProxyStatementClass(classPool,ctStatementProxyImplClass,ctStatementIntf,statementSuperClass);
-			this.createProxyStatementClass(classPool,ctPsStatementProxyImplClass,ctPsStatementIntf,statementSuperClass);
-			this.createProxyStatementClass(classPool,ctCsStatementProxyImplClass,ctCsStatementIntf,statementSuperClass);
-			this.createProxyDatabaseMetaDataClass(classPool,ctDatabaseMetaDataProxyImplClass,ctDatabaseMetaDataIntf,ctDatabaseMetaDataSuperClass);
-			this.createProxyResultSetClass(classPool,ctResultSetIntfProxyImplClass,ctResultSetIntf,ctResultSetSuperclass);
-
-			//............... FastConnectionPool Begin..................
-			CtClass ctFastConnectionPoolClass = classPool.get(FastConnectionPool.class.getName());
-			CtClass[] ctcreateProxyConnectionParamTypes = new CtClass[] {
-					classPool.get("cn.beecp.pool.PooledConnection"),
-					classPool.get("cn.beecp.pool.Borrower"),
-			};
-			CtMethod createProxyConnectionMethod=ctFastConnectionPoolClass.getDeclaredMethod("createProxyConnection",ctcreateProxyConnectionParamTypes);
-			body.delete(0, body.length());
+			//methods compiled after all classes made,they refer to each other
+			this.createProxyConnectionClass(classPool,ctConIntfProxyImplClass,ctConIntf,ctConSuperclass,false,false);
+			if (ctTrustedConProxyImplClass != null)this.createProxyConnectionClass(classPool,ctTrustedConProxyImplClass,ctConIntf,ctConSuperclass,true,false);
+			if (ctProfiledConProxyImplClass != null)this.createProxyConnectionClass(classPool,ctProfiledConProxyImplClass,ctConIntf,ctConSuperclass,false,true);
+			if (ctStatementProxyImplClass != null)this.createProxyStatementClass(classPool,ctStatementProxyImplClass,ctStatementIntf,statementSuperClass,false);
+			if (ctPsStatementProxyImplClass != null)this.createProxyStatementClass(classPool,ctPsStatementProxyImplClass,ctPsStatementIntf,statementSuperClass,false);
+			if (ctCsStatementProxyImplClass != null)this.createProxyStatementClass(classPool,ctCsStatementProxyImplClass,ctCsStatementIntf,statementSuperClass,false);
+			if (ctProfiledStatementProxyImplClass != null)this.createProxyStatementClass(classPool,ctProfiledStatementProxyImplClass,ctStatementIntf,statementSuperClass,true);
+			if (ctProfiledPsStatementProxyImplClass != null)this.createProxyStatementClass(classPool,ctProfiledPsStatementProxyImplClass,ctPsStatementIntf,statementSuperClass,true);
+			if (ctProfiledCsStatementProxyImplClass != null)this.createProxyStatementClass(classPool,ctProfiledCsStatementProxyImplClass,ctCsStatementIntf,statementSuperClass,true);
+			if (ctDatabaseMetaDataProxyImplClass != null)this.createProxyDatabaseMetaDataClass(classPool,ctDatabaseMetaDataProxyImplClass,ctDatabaseMetaDataIntf,ctDatabaseMetaDataSuperClass);
+			if (ctResultSetIntfProxyImplClass != null)this.createProxyResultSetClass(classPool,ctResultSetIntfProxyImplClass,ctResultSetIntf,ctResultSetSuperclass,false);
+			if (ctThinResultSetProxyImplClass != null)this.createProxyResultSetClass(classPool,ctThinResultSetProxyImplClass,ctResultSetIntf,ctResultSetSuperclass,true);
+			if (ctCachedResultSetProxyImplClass != null)this.createCachedResultSetClass(classPool,ctCachedResultSetProxyImplClass,ctResultSetIntf,ctCachedResultSetSuperclass);
+
+			//............... ProxyConnectionFactory Begin..................
+			CtClass ctFactoryIntf = classPool.get(ProxyConnectionFactory.class.getName());
+			CtClass ctFactoryImplClass = classPool.makeClass(ProxyConnectionFactory.ImplClassName+classNameSuffix);
+			ctFactoryImplClass.setInterfaces(new CtClass[]{ctFactoryIntf});
+			ctFactoryImplClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
+			ctFactoryImplClass.addConstructor(CtNewConstructor.defaultConstructor(ctFactoryImplClass));
+
+			CtMethod createProxyConnectionMethod = new CtMethod(ctConSuperclass,"createProxyConnection",conCreateParam,ctFactoryImplClass);
+			createProxyConnectionMethod.setModifiers(Modifier.PUBLIC);
+			StringBuilder body = new StringBuilder();
 			body.append("{");
-			body.append(" $2.setBorrowedConnection($1);");
-			body.append("	return $1.proxyConn=new ProxyConnection($1);");
+			body.append("if($1.trustedInd)return new ProxyTrustedConnection($1);");
+			body.append("if($1.sqlProfiler!=null)return new ProxyProfiledConnection($1);");
+			body.append(newProxy(Connection.class,"ProxyConnection","$1.rawConn","$1"));
 			body.append("}");
 			createProxyConnectionMethod.setBody(body.toString());
-			//............... FastConnectionPool end..................
-
-			return new CtClass[]{
-					ctConIntfProxyImplClass,
-					ctStatementProxyImplClass,
-					ctPsStatementProxyImplClass,
-					ctCsStatementProxyImplClass,
-					ctDatabaseMetaDataProxyImplClass,
-					ctResultSetIntfProxyImplClass,
-					ctFastConnectionPoolClass};
+			ctFactoryImplClass.addMethod(createProxyConnectionMethod);
+
+			CtMethod createDetachedResultSetMethod = new CtMethod(ctResultSetIntf,"createDetachedResultSet",new CtClass[]{classPool.get("cn.beecp.pool.DetachedRows")},ctFactoryImplClass);
+			createDetachedResultSetMethod.setModifiers(Modifier.PUBLIC);
+			createDetachedResultSetMethod.setBody("{return new ProxyCachedResultSet($1,null);}");
+			ctFactoryImplClass.addMethod(createDetachedResultSetMethod);
+			ctClassList.add(ctFactoryImplClass);
+			//............... ProxyConnectionFactory end..................
+
+			return ctClassList.toArray(new CtClass[ctClassList.size()]);
 		}catch(Throwable e){
 			e.printStackTrace();
 			throw new Exception(e);
 		}
 	}
 
+	//create a final proxy class with a constructor calling super
+	private CtClass makeProxyClass(ClassPool classPool,String className,CtClass ctSuperClass,CtClass ctIntf,CtClass[] constructorParams)throws Exception{
+		CtClass ctProxyClass = classPool.makeClass(className+classNameSuffix,ctSuperClass);
+		ctProxyClass.setInterfaces(new CtClass[]{ctIntf});
+		ctProxyClass.setModifiers(Modifier.PUBLIC|Modifier.FINAL);
+
+		CtConstructor subClassConstructor = new CtConstructor(constructorParams,ctProxyClass);
+		subClassConstructor.setModifiers(Modifier.PUBLIC);
+		subClassConstructor.setBody("{super($$);}");
+		ctProxyClass.addConstructor(subClassConstructor);
+		return ctProxyClass;
+	}
+	//whether proxy class of the interface is generated,driver specialized classes only for mapped interfaces
+	private boolean isGenerated(Class<?> intf){
+		return classNameSuffix.length()==0||driverClassMap.containsKey(intf);
+	}
+	/**
+	 * source to return a new proxy,if proxy class of the interface is specialized,
+	 * check the delegate is instance of driver class,otherwise return common proxy
+	 */
+	private String newProxy(Class<?> intf,String proxyClassName,String delegate,String args){
+		return newProxy(intf,proxyClassName,delegate,args,"%s");
+	}
+	//returned expression is formatted with new proxy,such as "init(%s)"
+	private String newProxy(Class<?> intf,String proxyClassName,String delegate,String args,String returnFormat){
+		Class<?> driverClass=driverClassMap.get(intf);
+		String commonProxy="return "+String.format(returnFormat,"new "+proxyClassName+"("+args+")")+";";
+		if(classNameSuffix.length()>0 && driverClass!=null)
+			return "if("+delegate+" instanceof "+driverClass.getName()+")return "+String.format(returnFormat,"new "+proxyClassName+classNameSuffix+"("+args+")")+";"
+					+commonProxy;
+		return commonProxy;
+	}
+	/**
+	 * source to call delegate,cast to driver class when method is public in it,
+	 * then call site is monomorphic and can be inlined
+	 */
+	private String delegateOf(ClassPool classPool,Class<?> intf,CtMethod ctMethod,String defaultDelegate){
+		Class<?> driverClass=driverClassMap.get(intf);
+		if(driverClass==null)return defaultDelegate;
+		try{
+			CtMethod driverMethod=classPool.get(driverClass.getName()).getMethod(ctMethod.getName(),ctMethod.getSignature());
+			int modifiers=driverMethod.getModifiers();
+			CtClass declaringClass=driverMethod.getDeclaringClass();
+			if(Modifier.isPublic(modifiers) && !Modifier.isAbstract(modifiers)
+					&& !declaringClass.isInterface() && Modifier.isPublic(declaringClass.getModifiers()))
+				return "(("+driverClass.getName()+")delegate).";
+		}catch(NotFoundException e){
+		}
+		return defaultDelegate;
+	}
+
 	/**
 	 * create connection proxy class, and add JDBC statement methods to it
 	 *
@@ -257,10 +378,11 @@ public final class ProxyClassGenerator {
 	 * @param ctConIntfProxyClass connection implemented sub class will be generated
 	 * @param ctConIntf connection interface in javassist class pool
 	 * @param ctConSuperClass super class extend by 'ctConIntfProxyClass'
-	 * @return proxy class base on connection interface
+	 * @param trusted true,statements are not wrapped and not cached
+	 * @param profiled true,statements are wrapped by profiled statement classes
 	 * @throws Exception some error occurred
 	 */
-	private Class createProxyConnectionClass(ClassPool classPool,CtClass ctConIntfProxyClass,CtClass ctConIntf,CtClass ctConSuperClass)throws Exception{
+	private void createProxyConnectionClass(ClassPool classPool,CtClass ctConIntfProxyClass,CtClass ctConIntf,CtClass ctConSuperClass,boolean trusted,boolean profiled)throws Exception{
 		CtMethod[] ctSuperClassMethods = ctConSuperClass.getMethods();
 		HashSet notNeedAddProxyMethods= new HashSet();
 		for(int i=0,l=ctSuperClassMethods.length;i<l;i++){
@@ -279,60 +401,73 @@ public final class ProxyClassGenerator {
 		CtClass ctCsStatementIntf = classPool.get(CallableStatement.class.getName());
 		CtClass ctDatabaseMetaDataIntf = classPool.get(DatabaseMetaData.class.getName());
 
+		String stmClassPrefix=profiled?"ProxyProfiled":"Proxy";
 		StringBuilder methodBuffer = new StringBuilder();
 		for(CtMethod ctMethod:linkedList){
 			String methodName = ctMethod.getName();
+			String delegateName = delegateOf(classPool,Connection.class,ctMethod,"delegate.");
 			CtMethod newCtMethodm = CtNewMethod.copy(ctMethod, ctConIntfProxyClass, null);
 			newCtMethodm.setModifiers(Modifier.PUBLIC);
 
 			methodBuffer.delete(0, methodBuffer.length());
 			methodBuffer.append("{");
 			methodBuffer.append("checkClose();");
-			if (newCtMethodm.getReturnType() == ctStatementIntf) {
-				methodBuffer.append("return new ProxyStatement(delegate."+methodName+"($$),this,pConn);");
+			if (trusted && (newCtMethodm.getReturnType() == ctStatementIntf
+					|| newCtMethodm.getReturnType() == ctPsStatementIntf || newCtMethodm.getReturnType() == ctCsStatementIntf)) {
+				methodBuffer.append("return "+delegateName+methodName+"($$);");
+			}else if (newCtMethodm.getReturnType() == ctStatementIntf) {
+				methodBuffer.append("Statement stm="+delegateName+methodName+"($$);");
+				methodBuffer.append(newProxy(Statement.class,stmClassPrefix+"Statement","stm","stm,this,pConn"));
 			}else if(newCtMethodm.getReturnType() == ctPsStatementIntf){
+				//statement prepared with sql only may coalesce inserts into batch
+				String returnFormat=newCtMethodm.getParameterTypes().length==1?"initUpdateBatch(%s,$1)":"%s";
+				returnFormat="initResultCache("+returnFormat+",$1)";
+				returnFormat="(PreparedStatement)"+(profiled?"initProfiledSql("+returnFormat+",$1)":returnFormat);
 				methodBuffer.append("if(pConn.stmCacheValid){");
 				methodBuffer.append(" StatementCachePsKey key=new StatementCachePsKey($$);");
 				methodBuffer.append(" PreparedStatement stm=pConn.getStatement(key);");
 				methodBuffer.append(" if(stm==null){");
-				methodBuffer.append("   stm=delegate."+methodName+"($$);");
+				methodBuffer.append("   stm="+delegateName+methodName+"($$);");
 				methodBuffer.append("   pConn.putStatement(key,stm);");
 				methodBuffer.append("  }");
-				methodBuffer.append("  return new ProxyPsStatement(stm,this,pConn,true);");
+				methodBuffer.append(newProxy(PreparedStatement.class,stmClassPrefix+"PsStatement","stm","stm,this,pConn,true",returnFormat));
 				methodBuffer.append("}else{");
-				methodBuffer.append("  return new ProxyPsStatement(delegate."+methodName+"($$),this,pConn,false);");
+				methodBuffer.append(" PreparedStatement newStm="+delegateName+methodName+"($$);");
+				methodBuffer.append(newProxy(PreparedStatement.class,stmClassPrefix+"PsStatement","newStm","newStm,this,pConn,false",returnFormat));
 				methodBuffer.append("}");
 			}else if(newCtMethodm.getReturnType() == ctCsStatementIntf){
+				String returnFormat=profiled?"(CallableStatement)initProfiledSql(%s,$1)":"%s";
 				methodBuffer.append("if(pConn.stmCacheValid){");
 				methodBuffer.append(" StatementCacheCsKey key=new StatementCacheCsKey($$);");
 				methodBuffer.append(" CallableStatement stm=(CallableStatement)pConn.getStatement(key);");
 				methodBuffer.append(" if(stm==null){");
-				methodBuffer.append("   stm=delegate."+methodName+"($$);");
+				methodBuffer.append("   stm="+delegateName+methodName+"($$);");
 				methodBuffer.append("   pConn.putStatement(key,stm);");
 				methodBuffer.append(  "}");
-				methodBuffer.append("  return new ProxyCsStatement(stm,this,pConn,true);");
+				methodBuffer.append("  return "+String.format(returnFormat,"new "+stmClassPrefix+"CsStatement(stm,this,pConn,true)")+";");
 				methodBuffer.append("}else{");
-				methodBuffer.append(" return new ProxyCsStatement(delegate."+methodName+"($$),this,pConn,false);");
+				methodBuffer.append(" return "+String.format(returnFormat,"new "+stmClassPrefix+"CsStatement("+delegateName+methodName+"($$),this,pConn,false)")+";");
 				methodBuffer.append("}");
 			}else if (newCtMethodm.getReturnType() == ctDatabaseMetaDataIntf) {
-				methodBuffer.append("return new ProxyDatabaseMetaData(delegate."+methodName+"($$),this,pConn);");
+				methodBuffer.append("return new ProxyDatabaseMetaData("+delegateName+methodName+"($$),this,pConn);");
+			}else if(methodName.equals("setSavepoint")){//coalesced inserts belong to savepoint
+				methodBuffer.append("if(pConn.batchingStatement!=null)pConn.flushUpdateBatch();");
+				methodBuffer.append("return " + delegateName + methodName + "($$);");
 			}else if(methodName.equals("close")){
 				//methodBuffer.append("super."+methodName + "($$);");
 			}else if (newCtMethodm.getReturnType() == CtClass.voidType){
-				methodBuffer.append(" delegate." + methodName + "($$);");
+				methodBuffer.append(delegateName + methodName + "($$);");
 			}else{
-				methodBuffer.append("return delegate." + methodName + "($$);");
+				methodBuffer.append("return " + delegateName + methodName + "($$);");
 			}
 
 			methodBuffer.append("}");
 			newCtMethodm.setBody(methodBuffer.toString());
 			ctConIntfProxyClass.addMethod(newCtMethodm);
-
 		}
-		return ctConIntfProxyClass.toClass();
 	}
 
-	private Class createProxyStatementClass(ClassPool classPool, CtClass statementProxyClass,CtClass ctStatementIntf, CtClass ctStatementSuperClass) throws Exception {
+	private void createProxyStatementClass(ClassPool classPool, CtClass statementProxyClass,CtClass ctStatementIntf, CtClass ctStatementSuperClass,boolean profiled) throws Exception {
 		CtMethod[] ctSuperClassMethods = ctStatementSuperClass.getMethods();
 		HashSet superClassSignatureSet = new HashSet();
 		for (int i = 0, l = ctSuperClassMethods.length; i < l; i++) {
@@ -349,45 +484,101 @@ public final class ProxyClassGenerator {
 		CtClass ctResultSetIntf=classPool.get(ResultSet.class.getName());
 		StringBuilder methodBuffer = new StringBuilder();
 
-		String delegateName="delegate.";
+		Class<?> statementIntf=Statement.class;
+		String defaultDelegateName="delegate.";
 		if("java.sql.PreparedStatement".equals(ctStatementIntf.getName())){
-			delegateName="((PreparedStatement)delegate).";
+			statementIntf=PreparedStatement.class;
+			defaultDelegateName="((PreparedStatement)delegate).";
 		}else if("java.sql.CallableStatement".equals(ctStatementIntf.getName())){
-			delegateName="((CallableStatement)delegate).";
+			statementIntf=CallableStatement.class;
+			defaultDelegateName="((CallableStatement)delegate).";
 		}
 
 		for (CtMethod ctMethod : linkedList) {
 			String methodName = ctMethod.getName();
+			String delegateName = delegateOf(classPool,statementIntf,ctMethod,defaultDelegateName);
 			CtMethod newCtMethodm = CtNewMethod.copy(ctMethod, statementProxyClass, null);
 			newCtMethodm.setModifiers(Modifier.PUBLIC);
 
 			methodBuffer.delete(0, methodBuffer.length());
 			methodBuffer.append("{");
 			methodBuffer.append("checkClose();");
+			CtClass[] paramTypes=newCtMethodm.getParameterTypes();
+			boolean sqlParam=paramTypes.length>0 && "java.lang.String".equals(paramTypes[0].getName());
+			if(statementIntf==PreparedStatement.class && methodName.equals("executeUpdate") && paramTypes.length==0)
+				methodBuffer.append("if(updateBatchInd && !pConn.curAutoCommit)return addUpdateBatch();");
+			if(methodName.startsWith("execute")||methodName.equals("addBatch")||methodName.equals("clearBatch"))
+				methodBuffer.append("if(pConn.batchingStatement!=null)pConn.flushUpdateBatch();");
+			else if(methodName.equals("getGeneratedKeys")||methodName.equals("getUpdateCount")||methodName.equals("getLargeUpdateCount")
+					||methodName.equals("getResultSet")||methodName.equals("getMoreResults")||methodName.equals("getWarnings"))
+				methodBuffer.append("if(pConn.batchingStatement==this)pConn.flushUpdateBatch();");//driver state of queued rows
+
+			//result cache:parameters of cacheable query are kept as key,sql written cached tables invalidates results
+			if(statementIntf==PreparedStatement.class && methodName.startsWith("set") && paramTypes.length>1 && paramTypes[0]==CtClass.intType){
+				if(methodName.equals("setNull"))
+					methodBuffer.append("if(resultCacheQueryInd)bindCacheParameter($1,null);");
+				else if(paramTypes.length==2)
+					methodBuffer.append("if(resultCacheQueryInd)bindCacheParameter($1,($w)$2);");
+				else
+					methodBuffer.append("if(resultCacheQueryInd)unbindCacheParameter($1);");
+			}else if(statementIntf==PreparedStatement.class && methodName.equals("clearParameters")){
+				methodBuffer.append("if(resultCacheQueryInd)clearCacheParameters();");
+			}else if(statementIntf==PreparedStatement.class && methodName.equals("executeQuery") && paramTypes.length==0){
+				methodBuffer.append("if(resultCacheQueryInd && pConn.curAutoCommit){");
+				methodBuffer.append(" CachedResult cachedResult=getCachedResult();");
+				methodBuffer.append(" if(cachedResult!=null)return new ProxyCachedResultSet(cachedResult,this);");
+				methodBuffer.append("}");
+			}
+			if(sqlParam && (methodName.startsWith("execute")||methodName.equals("addBatch")))
+				methodBuffer.append("if(pConn.resultCache!=null)addCacheWriteSql($1);");
+			String invalidateSource=methodName.startsWith("execute")?"if(resultCacheWriteMask!=0)invalidateResultCache();":"";
+
+			//profiled execution:sql is the first parameter or prepared sql
+			String profileSource="";
+			if(profiled && methodName.startsWith("execute")){
+				methodBuffer.append("long startTime=System.nanoTime();");
+				if(sqlParam)
+					profileSource="pConn.sqlProfiler.record($1,System.nanoTime()-startTime);";
+				else
+					profileSource="pConn.sqlProfiler.recordPrepared(profiledSql,System.nanoTime()-startTime);";
+			}
+
+			//pool managed query timeout(statement is cancelled by timer wheel on timeout)and rtt of concurrency limiter
+			boolean voidReturn=newCtMethodm.getReturnType() == CtClass.voidType;
+			String invokeSource=(voidReturn?"":"re=")+delegateName+methodName + "($$);";
+			if(methodName.startsWith("execute"))
+				invokeSource="beforeExecution();try{"+invokeSource+"}catch(SQLException e){throw executionException(e);}finally{afterExecution();}";
 
-			if (newCtMethodm.getReturnType() == CtClass.voidType) {
-				methodBuffer.append(delegateName+methodName + "($$);");
+			if (voidReturn) {
+				methodBuffer.append(invokeSource);
 				if(methodName.startsWith("execute"))
 					methodBuffer.append("pConn.updateAccessTimeWithCommitDirty();");
+				methodBuffer.append(invalidateSource);
+				methodBuffer.append(profileSource);
 			} else {
-				methodBuffer.append(newCtMethodm.getReturnType().getName() + " re="+delegateName+methodName + "($$);");
+				methodBuffer.append(newCtMethodm.getReturnType().getName() + " re;");
+				methodBuffer.append(invokeSource);
 				if(methodName.startsWith("execute"))methodBuffer.append("pConn.updateAccessTimeWithCommitDirty();");
+				methodBuffer.append(invalidateSource);
+				methodBuffer.append(profileSource);
 				if (newCtMethodm.getReturnType() == ctResultSetIntf) {
-					methodBuffer.append("re=new ProxyResultSet(re,this,pConn);");
+					methodBuffer.append("if(pConn.thinResultSetInd){");
+					methodBuffer.append(newProxy(ResultSet.class,"ProxyThinResultSet","re","re,this,pConn"));
+					methodBuffer.append("}");
+					methodBuffer.append(newProxy(ResultSet.class,"ProxyResultSet","re","re,this,pConn"));
+				}else{
+					methodBuffer.append(" return re;");
 				}
-				methodBuffer.append(" return re;");
 			}
 
 			methodBuffer.append("}");
 			newCtMethodm.setBody(methodBuffer.toString());
 			statementProxyClass.addMethod(newCtMethodm);
-
 		}
-		return statementProxyClass.toClass();
 	}
 
 	//ctDatabaseMetaDataProxyImplClass,ctDatabaseMetaDataIntf,ctDatabaseMetaDataSuperClass
-	private Class createProxyDatabaseMetaDataClass(ClassPool classPool,CtClass ctDatabaseMetaDataProxyImplClass,CtClass ctDatabaseMetaDataIntf,CtClass ctDatabaseMetaDataSuperClass)throws Exception{
+	private void createProxyDatabaseMetaDataClass(ClassPool classPool,CtClass ctDatabaseMetaDataProxyImplClass,CtClass ctDatabaseMetaDataIntf,CtClass ctDatabaseMetaDataSuperClass)throws Exception{
 		CtMethod[] ctSuperClassMethods = ctDatabaseMetaDataSuperClass.getMethods();
 		HashSet superClassSignatureSet= new HashSet();
 		for(int i=0,l=ctSuperClassMethods.length;i<l;i++){
@@ -424,10 +615,13 @@ public final class ProxyClassGenerator {
 			newCtMethodm.setBody(methodBuffer.toString());
 			ctDatabaseMetaDataProxyImplClass.addMethod(newCtMethodm);
 		}
-		return ctDatabaseMetaDataProxyImplClass.toClass();
 	}
 
-	private Class createProxyResultSetClass(ClassPool classPool,CtClass ctResultSetIntfProxyClass,CtClass ctResultSetIntf,CtClass ctResultSetIntfSuperClass)throws Exception{
+	/**
+	 * thin result set:getters and wasNull not check close state,which is checked on
+	 * cursor moving(next,etc),connection closes it on return to pool
+	 */
+	private void createProxyResultSetClass(ClassPool classPool,CtClass ctResultSetIntfProxyClass,CtClass ctResultSetIntf,CtClass ctResultSetIntfSuperClass,boolean thin)throws Exception{
 		CtMethod[] ctSuperClassMethods = ctResultSetIntfSuperClass.getMethods();
 		HashSet superClassSignatureSet= new HashSet();
 		for(int i=0,l=ctSuperClassMethods.length;i<l;i++){
@@ -444,22 +638,24 @@ public final class ProxyClassGenerator {
 
 		for(CtMethod ctMethod:linkedList){
 			String methodName = ctMethod.getName();
+			String delegateName = delegateOf(classPool,ResultSet.class,ctMethod,"delegate.");
 			CtMethod newCtMethodm = CtNewMethod.copy(ctMethod, ctResultSetIntfProxyClass, null);
 			newCtMethodm.setModifiers(Modifier.PUBLIC);
 
 			methodBuffer.delete(0, methodBuffer.length());
 			methodBuffer.append("{");
-			methodBuffer.append("checkClose();");
+			if (!thin || !(methodName.startsWith("get") || methodName.equals("wasNull")))
+				methodBuffer.append("checkClose();");
 
 			if (methodName.equals("close")) {
 				//methodBuffer.append("super." + methodName + "($$);");
 			} else {
 				if(newCtMethodm.getReturnType() == CtClass.voidType){
-					methodBuffer.append("delegate." + methodName + "($$);");
+					methodBuffer.append(delegateName + methodName + "($$);");
 					if (methodName.startsWith("insertRow")||methodName.startsWith("updateRow")||methodName.startsWith("deleteRow"))
 						methodBuffer.append(" pConn.updateAccessTimeWithCommitDirty();");
 				}else{
-					methodBuffer.append(newCtMethodm.getReturnType().getName() + " re=delegate." + methodName + "($$);");
+					methodBuffer.append(newCtMethodm.getReturnType().getName() + " re=" + delegateName + methodName + "($$);");
 					if (methodName.startsWith("insertRow")||methodName.startsWith("updateRow")||methodName.startsWith("deleteRow"))
 						methodBuffer.append(" pConn.updateAccessTimeWithCommitDirty();");
 					methodBuffer.append(" return re;");
@@ -470,7 +666,52 @@ public final class ProxyClassGenerator {
 			newCtMethodm.setBody(methodBuffer.toString());
 			ctResultSetIntfProxyClass.addMethod(newCtMethodm);
 		}
-		return ctResultSetIntfProxyClass.toClass();
+	}
+
+	/**
+	 * cached result set:getters by column label call getters by column index implemented
+	 * in super class,other methods not implemented in super class are not supported
+	 */
+	private void createCachedResultSetClass(ClassPool classPool,CtClass ctCachedResultSetProxyClass,CtClass ctResultSetIntf,CtClass ctCachedResultSetSuperClass)throws Exception{
+		CtMethod[] ctSuperClassMethods = ctCachedResultSetSuperClass.getMethods();
+		HashSet superClassSignatureSet= new HashSet();
+		for(int i=0,l=ctSuperClassMethods.length;i<l;i++){
+			int modifiers=ctSuperClassMethods[i].getModifiers();
+			if((!Modifier.isAbstract(modifiers) && (Modifier.isPublic(modifiers)||Modifier.isProtected(modifiers)))
+					|| Modifier.isFinal(modifiers)|| Modifier.isStatic(modifiers)|| Modifier.isNative(modifiers)){
+				superClassSignatureSet.add(ctSuperClassMethods[i].getName() + ctSuperClassMethods[i].getSignature());
+			}
+		}
+		HashSet implementedSignatureSet= new HashSet(superClassSignatureSet);
+
+		LinkedList<CtMethod> linkedList = new LinkedList();
+		resolveInterfaceMethods(ctResultSetIntf,linkedList,superClassSignatureSet);
+		StringBuilder methodBuffer = new StringBuilder();
+
+		for(CtMethod ctMethod:linkedList){
+			String methodName = ctMethod.getName();
+			String signature = ctMethod.getSignature();
+			CtMethod newCtMethodm = CtNewMethod.copy(ctMethod, ctCachedResultSetProxyClass, null);
+			newCtMethodm.setModifiers(Modifier.PUBLIC);
+
+			methodBuffer.delete(0, methodBuffer.length());
+			methodBuffer.append("{");
+			String labelPrefix="(Ljava/lang/String;";
+			String indexSignature=signature.startsWith(labelPrefix)?"(I"+signature.substring(labelPrefix.length()):null;
+			if(methodName.startsWith("get") && indexSignature!=null && implementedSignatureSet.contains(methodName+indexSignature)){
+				methodBuffer.append("return "+methodName+"(findColumn($1)");
+				for(int i=2,l=newCtMethodm.getParameterTypes().length;i<=l;i++)
+					methodBuffer.append(",$"+i);
+				methodBuffer.append(");");
+			}else{
+				methodBuffer.append("checkClose();");
+				methodBuffer.append("throw PoolExceptionList.FeatureNotSupportedException;");
+			}
+
+			methodBuffer.append("}");
+			newCtMethodm.setBody(methodBuffer.toString());
+			ctCachedResultSetProxyClass.addMethod(newCtMethodm);
+		}
 	}
 
 	private void resolveInterfaceMethods(CtClass interfaceClass,LinkedList linkedList,HashSet exitSignatureSet)throws Exception{
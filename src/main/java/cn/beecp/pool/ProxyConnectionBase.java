@@ -18,7 +18,10 @@ package cn.beecp.pool;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Savepoint;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
 
 import static cn.beecp.pool.PoolExceptionList.AutoCommitChangeForbiddennException;
 import static cn.beecp.pool.PoolExceptionList.ConnectionClosedException;
@@ -33,6 +36,11 @@ abstract class ProxyConnectionBase implements Connection{
 	private boolean isClosed;
 	protected Connection delegate;
 	protected PooledConnection pConn;//called by subclass to update time
+	private ProxyResultSetBase[] openResultSets;//thin result sets,closed on return to pool
+	private int openResultSetCount;
+	private static final Pattern MultiRowValuesPattern=Pattern.compile("\\)\\s*,\\s*\\(");
+	//conditional inserts(ignore,upsert,returning rows),their update count may not be 1
+	private static final Pattern ConditionalInsertPattern=Pattern.compile("^insert\\s+or\\b|\\b(ignore|ignore_row_on_dupkey_index|duplicate|conflict|returning|output)\\b",Pattern.CASE_INSENSITIVE);
 
 	public ProxyConnectionBase(PooledConnection pConn) {
 		this.pConn=pConn;
@@ -40,6 +48,7 @@ abstract class ProxyConnectionBase implements Connection{
 	}
 	void setAsClosed(){
 		isClosed=true;
+		pConn.batchingStatement=null;
 	}
 	protected void checkClose() throws SQLException {
 		if(isClosed)throw ConnectionClosedException;
@@ -47,34 +56,147 @@ abstract class ProxyConnectionBase implements Connection{
 	public void close() throws SQLException {
 		this.checkClose();
 		isClosed = true;
+		if(pConn.batchingStatement!=null)pConn.discardUpdateBatch();//not committed,rollback on return
+		if(openResultSetCount>0)closeResultSets();
 		pConn.returnToPoolBySelf();
 	}
 
+	//called by subclass on preparing statement,single row inserts are coalesced into batch in transaction
+	protected final ProxyStatementBase initUpdateBatch(ProxyStatementBase statement,String sql){
+		if(pConn.updateBatchSize>0 && isSingleRowInsert(sql))
+			statement.updateBatchInd=true;
+		return statement;
+	}
+	//sql of prepared statement is normalized once for profile
+	protected final ProxyStatementBase initProfiledSql(ProxyStatementBase statement,String sql){
+		statement.profiledSql=pConn.sqlProfiler.prepareSql(sql);
+		return statement;
+	}
+	//prepared query on cached tables may use cached result,writes invalidate cached results
+	protected final ProxyStatementBase initResultCache(ProxyStatementBase statement,String sql){
+		if(pConn.resultCache!=null)statement.initResultCache(pConn.resultCache.parseSql(sql));
+		return statement;
+	}
+	private static boolean isSingleRowInsert(String sql){
+		if(sql==null)return false;
+		String text=sql.trim();
+		if(!text.regionMatches(true,0,"insert",0,6))return false;
+		return text.toLowerCase(Locale.ENGLISH).indexOf("select")<0 && !MultiRowValuesPattern.matcher(text).find()
+				&& !ConditionalInsertPattern.matcher(text).find();
+	}
+
+	//************thin result sets,they not check close state on getters*************//
+	void registerResultSet(ProxyResultSetBase resultSet) {
+		if (openResultSets == null) {
+			openResultSets = new ProxyResultSetBase[8];
+		} else if (openResultSetCount == openResultSets.length) {
+			purgeResultSets();
+			if (openResultSetCount == openResultSets.length)
+				openResultSets = Arrays.copyOf(openResultSets, openResultSetCount << 1);
+		}
+		openResultSets[openResultSetCount++] = resultSet;
+	}
+	void unregisterResultSet(ProxyResultSetBase resultSet) {
+		for (int i = openResultSetCount - 1; i >= 0; i--) {//last one is closed at most time
+			if (openResultSets[i] == resultSet) {
+				System.arraycopy(openResultSets, i + 1, openResultSets, i, openResultSetCount - i - 1);
+				openResultSets[--openResultSetCount] = null;
+				return;
+			}
+		}
+	}
+	//close result sets of closed statements(cached statement not close its result set)
+	private void purgeResultSets() {
+		int size = 0;
+		for (int i = 0; i < openResultSetCount; i++) {
+			if (openResultSets[i].isStatementClosed())
+				openResultSets[i].closeByConnection();
+			else
+				openResultSets[size++] = openResultSets[i];
+		}
+		Arrays.fill(openResultSets, size, openResultSetCount, null);
+		openResultSetCount = size;
+	}
+	private void closeResultSets() {
+		for (int i = 0; i < openResultSetCount; i++) {
+			openResultSets[i].closeByConnection();
+			openResultSets[i] = null;
+		}
+		openResultSetCount = 0;
+	}
+
+	//*********session state,kept in pooled connection when 'cacheSessionState' is true*********//
 	public void setAutoCommit(boolean autoCommit) throws SQLException {
 		checkClose();
+		if(pConn.sessionStateCacheInd && autoCommit==pConn.curAutoCommit)return;
 		if(!pConn.curAutoCommit && pConn.commitDirtyInd)
 		  throw AutoCommitChangeForbiddennException;
 		
 		delegate.setAutoCommit(autoCommit);
+		if(autoCommit && pConn.resultCacheWriteMask!=0)pConn.invalidateCommittedResultCache();//committed by driver
 		pConn.setCurAutoCommit(autoCommit);
 		pConn.setChangedInd(PooledConnection.Pos_AutoCommitInd,autoCommit!=pConn.pConfig.isDefaultAutoCommit());
 		if(autoCommit)pConn.commitDirtyInd=false;
 	}
+	public boolean getAutoCommit() throws SQLException {
+		checkClose();
+		return pConn.sessionStateCacheInd?pConn.curAutoCommit:delegate.getAutoCommit();
+	}
 	public void setTransactionIsolation(int level) throws SQLException {
 		checkClose();
+		if(isStateKnown(PooledConnection.Pos_TransactionIsolationInd) && level==pConn.curTransactionIsolation)return;
 		delegate.setTransactionIsolation(level);
+		pConn.curTransactionIsolation=level;
+		pConn.setStateKnown(PooledConnection.Pos_TransactionIsolationInd);
 		pConn.setChangedInd(PooledConnection.Pos_TransactionIsolationInd,level!=pConn.pConfig.getDefaultTransactionIsolationCode());
 	}
+	public int getTransactionIsolation() throws SQLException {
+		checkClose();
+		if(!pConn.sessionStateCacheInd)return delegate.getTransactionIsolation();
+		if(!isStateKnown(PooledConnection.Pos_TransactionIsolationInd)){
+			pConn.curTransactionIsolation=delegate.getTransactionIsolation();
+			pConn.setStateKnown(PooledConnection.Pos_TransactionIsolationInd);
+		}
+		return pConn.curTransactionIsolation;
+	}
 	public void setReadOnly(boolean readOnly) throws SQLException {
 		checkClose();
+		if(isStateKnown(PooledConnection.Pos_ReadOnlyInd) && readOnly==pConn.curReadOnly)return;
 		delegate.setReadOnly(readOnly);
+		pConn.curReadOnly=readOnly;
+		pConn.setStateKnown(PooledConnection.Pos_ReadOnlyInd);
 		pConn.setChangedInd(PooledConnection.Pos_ReadOnlyInd,readOnly!=pConn.pConfig.isDefaultReadOnly());
 	}
+	public boolean isReadOnly() throws SQLException {
+		checkClose();
+		if(!pConn.sessionStateCacheInd)return delegate.isReadOnly();
+		if(!isStateKnown(PooledConnection.Pos_ReadOnlyInd)){
+			pConn.curReadOnly=delegate.isReadOnly();
+			pConn.setStateKnown(PooledConnection.Pos_ReadOnlyInd);
+		}
+		return pConn.curReadOnly;
+	}
 	public void setCatalog(String catalog) throws SQLException {
 		checkClose();
+		if(isStateKnown(PooledConnection.Pos_CatalogInd) && equalsText(catalog,pConn.curCatalog))return;
 		delegate.setCatalog(catalog);
+		pConn.curCatalog=catalog;
+		pConn.setStateKnown(PooledConnection.Pos_CatalogInd);
 		pConn.setChangedInd(PooledConnection.Pos_CatalogInd,!equalsText(catalog, pConn.pConfig.getDefaultCatalog()));
 	}
+	public String getCatalog() throws SQLException {
+		checkClose();
+		if(!pConn.sessionStateCacheInd)return delegate.getCatalog();
+		if(!isStateKnown(PooledConnection.Pos_CatalogInd)){
+			pConn.curCatalog=delegate.getCatalog();
+			pConn.setStateKnown(PooledConnection.Pos_CatalogInd);
+		}
+		return pConn.curCatalog;
+	}
+	//kept state is used only when 'cacheSessionState' is true
+	private boolean isStateKnown(short pos){
+		return pConn.sessionStateCacheInd && pConn.stateKnownInds[pos];
+	}
 	public boolean isValid(int timeout) throws SQLException {
 		checkClose();
 		if (pConn.isSupportSchema()){
@@ -127,18 +249,23 @@ abstract class ProxyConnectionBase implements Connection{
 
 	public void commit() throws SQLException{
 		checkClose();
+		if(pConn.batchingStatement!=null)pConn.flushUpdateBatch();
 		delegate.commit();
+		if(pConn.resultCacheWriteMask!=0)pConn.invalidateCommittedResultCache();
 		pConn.updateAccessTime();
 		pConn.commitDirtyInd=false;
 	}
 	public void rollback() throws SQLException{
 		checkClose();
+		if(pConn.batchingStatement!=null)pConn.discardUpdateBatch();
 		delegate.rollback();
+		pConn.resultCacheWriteMask=0;
 		pConn.updateAccessTime();
 		pConn.commitDirtyInd=false;
 	}
 	public void rollback(Savepoint savepoint) throws SQLException{
 		checkClose();
+		if(pConn.batchingStatement!=null)pConn.discardUpdateBatch();//flushed on setting savepoint,pending inserts are after it
 		delegate.rollback(savepoint);
 		pConn.updateAccessTime();
 		pConn.commitDirtyInd=false;
@@ -0,0 +1,51 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Proxy connection factory,implementation class is generated by 'ProxyClassGenerator'
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+interface ProxyConnectionFactory {
+
+	/**
+	 * generated implementation class name
+	 */
+	String ImplClassName = "cn.beecp.pool.ProxyConnectionFactoryImpl";
+
+	/**
+	 * create a proxy connection to wrap pooled connection
+	 *
+	 * @param pConn pooled connection
+	 * @return proxy connection
+	 * @throws SQLException if failed to create proxy
+	 */
+	ProxyConnectionBase createProxyConnection(PooledConnection pConn) throws SQLException;
+
+	/**
+	 * create a read only result set on detached rows,which is not bound to any statement
+	 *
+	 * @param rows detached rows
+	 * @return result set
+	 * @throws SQLException if failed to create result set
+	 */
+	ResultSet createDetachedResultSet(DetachedRows rows) throws SQLException;
+}
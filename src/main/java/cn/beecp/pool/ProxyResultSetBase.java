@@ -34,6 +34,7 @@ abstract class ProxyResultSetBase implements ResultSet {
 	protected PooledConnection pConn;//called by subclass to update time
 	private ProxyStatementBase proxyStatement;//called by subclass to check close state
 	private boolean proxyStatementIsNotNull;//called by subclass to check close state
+	private boolean registeredInd;//thin result set registered to connection
 
 	public ProxyResultSetBase(ResultSet delegate,ProxyStatementBase proxyStatement,PooledConnection pConn) {
 		this.pConn=pConn;
@@ -49,9 +50,25 @@ abstract class ProxyResultSetBase implements ResultSet {
 		if(isClosed)throw ResultSetClosedException;
 		if(proxyStatementIsNotNull)proxyStatement.checkClose();
 	}
+	//called by thin result set constructor
+	protected void registerToConnection() {
+		if(proxyStatementIsNotNull) {
+			proxyStatement.proxyConn.registerResultSet(this);
+			registeredInd=true;
+		}
+	}
+	boolean isStatementClosed() {
+		return proxyStatement.isClosedInd();
+	}
+	//called by connection on return to pool
+	void closeByConnection() {
+		isClosed=true;
+		oclose(delegate);
+	}
 	public void close() throws SQLException {
 		checkClose();
 		isClosed=true;
+		if(registeredInd)proxyStatement.proxyConn.unregisterResultSet(this);
 		oclose(delegate);
 	}
 	public boolean isWrapperFor(Class<?> iface) throws SQLException {
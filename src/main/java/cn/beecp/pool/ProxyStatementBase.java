@@ -16,8 +16,11 @@
 package cn.beecp.pool;
 
 import java.sql.*;
+import java.util.Arrays;
 
 import static cn.beecp.util.BeecpUtil.oclose;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static cn.beecp.pool.PoolExceptionList.StatementClosedException;
 
 /**
@@ -29,24 +32,40 @@ import static cn.beecp.pool.PoolExceptionList.StatementClosedException;
 class ProxyStatementBase{
 	private boolean isClosed;
 	private boolean stmCacheValid;
+	boolean updateBatchInd;//coalesce inserts into batch in transaction
+	private int updateBatchCount;
+	String profiledSql;//sql of profiled prepared statement
+	boolean resultCacheQueryInd;//prepared query on cached tables
+	long resultCacheWriteMask;//cached tables written by sql,invalidated after execution
+	private boolean resultCacheWritePrepared;//write mask of prepared sql,kept after execution
+	private CachedSql resultCacheSql;
+	private Object[] resultCacheParams;
+	private int resultCacheParamCount;
+	private int queryTimeout;//seconds,enforced by pool when 'defaultQueryTimeout' is set
+	private QueryTimeoutWheel.QueryTimeout curQueryTimeout;
+	private boolean curDeadlineTimeoutInd;//current timeout is remaining time of borrower deadline
+	private long executionStartTime;//rtt of concurrency limiter
 	protected Statement delegate;
 	protected PooledConnection pConn;//called by subclass to update time
 	protected ProxyConnectionBase proxyConn;//called by subclass to check close state
 
 	public ProxyStatementBase(Statement delegate,ProxyConnectionBase proxyConn,PooledConnection pConn){
 		this.pConn=pConn;
+		this.queryTimeout=pConn.defaultQueryTimeout;
 		this.proxyConn=proxyConn;
 		this.delegate=delegate;
 		this.stmCacheValid=false;
 	}
 	public ProxyStatementBase(PreparedStatement delegate,ProxyConnectionBase proxyConn,PooledConnection pConn,boolean stmCacheValid){
 		this.pConn=pConn;
+		this.queryTimeout=pConn.defaultQueryTimeout;
 		this.proxyConn=proxyConn;
 		this.delegate=delegate;
 		this.stmCacheValid=stmCacheValid;
 	}
 	public ProxyStatementBase(CallableStatement delegate,ProxyConnectionBase proxyConn,PooledConnection pConn,boolean stmCacheValid){
 		this.pConn=pConn;
+		this.queryTimeout=pConn.defaultQueryTimeout;
 		this.proxyConn=proxyConn;
 		this.delegate=delegate;
 		this.stmCacheValid=stmCacheValid;
@@ -59,12 +78,179 @@ class ProxyStatementBase{
 		if(isClosed)throw StatementClosedException;
 		proxyConn.checkClose();
 	}
+	boolean isClosedInd() {
+		return isClosed;
+	}
 	public void close() throws SQLException {
 		checkClose();
-		this.isClosed=true;
-		if(!stmCacheValid)
-			oclose(delegate);
+		try{
+			if(pConn.batchingStatement==this)pConn.flushUpdateBatch();
+		}finally{
+			this.isClosed=true;
+			if(!stmCacheValid)
+				oclose(delegate);
+		}
+	}
+
+	//********************** query timeout **********************//
+	public void setQueryTimeout(int seconds) throws SQLException {
+		checkClose();
+		if(pConn.defaultQueryTimeout==0){
+			delegate.setQueryTimeout(seconds);
+		}else{//not set to driver,no driver timer
+			if(seconds<0)throw new SQLException("Query timeout can't be negative");
+			queryTimeout=seconds;
+		}
+	}
+	public int getQueryTimeout() throws SQLException {
+		checkClose();
+		return pConn.defaultQueryTimeout==0?delegate.getQueryTimeout():queryTimeout;
+	}
+	//called by subclass before execution,start query timeout(remaining time of borrower deadline is used when less)and rtt
+	protected final void beforeExecution()throws SQLException{
+		long timeout=queryTimeout>0?SECONDS.toNanos(queryTimeout):0;
+		curDeadlineTimeoutInd=false;
+		if(pConn.deadline!=0){
+			long remaining=pConn.deadline-nanoTime();
+			if(remaining<=0)throw new SQLTimeoutException("Deadline of connection borrower exceeded before execution");
+			if(timeout==0||remaining<timeout){
+				timeout=remaining;
+				curDeadlineTimeoutInd=true;
+			}
+		}
+		if(timeout>0)curQueryTimeout=QueryTimeoutWheel.schedule(delegate,timeout);
+		if(pConn.concurrencyLimiter!=null)executionStartTime=nanoTime();
+	}
+	//called by subclass after execution,finish query timeout and record rtt
+	protected final void afterExecution(){
+		if(curQueryTimeout!=null){
+			curQueryTimeout.finish();
+			curQueryTimeout=null;
+		}
+		if(pConn.concurrencyLimiter!=null)pConn.concurrencyLimiter.onRtt(nanoTime()-executionStartTime);
+	}
+	//called by subclass on execution failed,cancelled execution is reported as timeout
+	protected final SQLException executionException(SQLException e){
+		if(curQueryTimeout!=null && curQueryTimeout.finish()){
+			curQueryTimeout=null;
+			if(curDeadlineTimeoutInd)return new SQLTimeoutException("Deadline of connection borrower exceeded in execution",e);
+			return new SQLTimeoutException("Query execution timeout("+queryTimeout+"s)",e);
+		}
+		return e;
+	}
+
+	//********************** coalesced inserts **********************//
+	//called by subclass,add parameters to batch instead of executing,count of one row is returned
+	protected int addUpdateBatch() throws SQLException {
+		if(resultCacheWriteMask!=0)pConn.invalidateResultCache(resultCacheWriteMask);
+		if(pConn.batchingStatement!=this){
+			if(pConn.batchingStatement!=null)pConn.flushUpdateBatch();
+			pConn.batchingStatement=this;
+		}
+		((PreparedStatement)delegate).addBatch();
+		updateBatchCount++;
+		pConn.updateAccessTimeWithCommitDirty();
+		if(updateBatchCount>=pConn.updateBatchSize)pConn.flushUpdateBatch();
+		return 1;
+	}
+	//called by pooled connection,each coalesced insert must affect one row
+	void executeUpdateBatch() throws SQLException {
+		int size=updateBatchCount;
+		updateBatchCount=0;
+		int[] counts=delegate.executeBatch();
+		pConn.updateAccessTimeWithCommitDirty();
+		if(counts.length!=size)
+			throw new BatchUpdateException("Coalesced insert size:"+size+",but batch count size:"+counts.length,counts);
+		for(int count:counts){
+			if(count!=1 && count!=Statement.SUCCESS_NO_INFO)
+				throw new BatchUpdateException("Coalesced insert affected "+count+" rows,expected 1",counts);
+		}
 	}
+	//called by pooled connection on rollback
+	void clearUpdateBatch() throws SQLException {
+		updateBatchCount=0;
+		delegate.clearBatch();
+	}
+
+	//********************** result cache **********************//
+	//called by connection on preparing statement
+	void initResultCache(CachedSql sql){
+		if(sql==null)return;
+		if(sql.query){
+			resultCacheSql=sql;
+			resultCacheQueryInd=true;
+		}else{
+			resultCacheWriteMask=sql.tableMask;
+			resultCacheWritePrepared=true;
+		}
+	}
+	//called by subclass on setting parameter of cacheable query
+	protected final void bindCacheParameter(int index,Object value){
+		if(index<1)return;
+		if(resultCacheParams==null)
+			resultCacheParams=new Object[Math.max(index,8)];
+		else if(index>resultCacheParams.length)
+			resultCacheParams=Arrays.copyOf(resultCacheParams,Math.max(index,resultCacheParams.length<<1));
+		resultCacheParams[index-1]=ResultCache.toKeyValue(value);
+		if(index>resultCacheParamCount)resultCacheParamCount=index;
+	}
+	//called by subclass on setting parameter not as key(stream,etc)
+	protected final void unbindCacheParameter(int index){
+		bindCacheParameter(index,ResultCache.UncacheableParameter);
+	}
+	protected final void clearCacheParameters(){
+		if(resultCacheParams!=null)Arrays.fill(resultCacheParams,null);
+		resultCacheParamCount=0;
+	}
+	/**
+	 * called by subclass on executing cacheable query,get cached result or execute
+	 * query and cache its result
+	 *
+	 * @return null,if some parameter not set or not cacheable
+	 */
+	protected final CachedResult getCachedResult() throws SQLException {
+		Object[] params=resultCacheParams==null?new Object[0]:Arrays.copyOf(resultCacheParams,resultCacheParamCount);
+		for(Object param:params)
+			if(param==null||param==ResultCache.UncacheableParameter)return null;
+
+		ResultCache cache=pConn.resultCache;
+		ResultCacheKey key=new ResultCacheKey(resultCacheSql.sqlKey,params);
+		CachedResult result=cache.get(key);
+		if(result==null){
+			long version=cache.getVersion(resultCacheSql.tableMask);//before query,writes during query make result invalid
+			long startTime=nanoTime();
+			ResultSet rs;
+			beforeExecution();//same timeout,deadline and rtt as generated execution
+			try{
+				rs=((PreparedStatement)delegate).executeQuery();
+			}catch(SQLException e){
+				throw executionException(e);
+			}finally{
+				afterExecution();
+			}
+			try{
+				result=new CachedResult(rs,resultCacheSql.tableMask,version);
+			}finally{
+				oclose(rs);
+			}
+			pConn.updateAccessTime();
+			if(pConn.sqlProfiler!=null)pConn.sqlProfiler.recordPrepared(profiledSql,nanoTime()-startTime);
+			cache.put(key,result);
+		}
+		return result;
+	}
+	//called by subclass before executing sql of plain statement
+	protected final void addCacheWriteSql(String sql){
+		CachedSql cachedSql=pConn.resultCache.parseSql(sql);
+		if(cachedSql!=null && !cachedSql.query)resultCacheWriteMask|=cachedSql.tableMask;
+	}
+	//called by subclass after execution
+	protected final void invalidateResultCache(){
+		long tableMask=resultCacheWriteMask;
+		if(!resultCacheWritePrepared)resultCacheWriteMask=0;
+		pConn.invalidateResultCache(tableMask);
+	}
+
 	public boolean isWrapperFor(Class<?> iface) throws SQLException {
 		checkClose();
 		return iface.isInstance(delegate);
@@ -0,0 +1,213 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Hashed wheel timer of pool managed query timeout,one per JVM(shared by pools),
+ * statement is cancelled when its execution is timeout.
+ *
+ * Scheduled timeouts are queued and moved into wheel buckets by wheel thread on
+ * each tick,finished timeouts are only marked and removed when their bucket is
+ * visited,so scheduling and finishing on execution thread are lock free.Cancellation
+ * is handed off to a small executor(some drivers open a new connection to cancel),
+ * a slow cancel not delay other timeouts.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class QueryTimeoutWheel extends Thread {
+	private static final long TickNanos = MILLISECONDS.toNanos(100);
+	private static final int WheelSize = 512;//power of 2
+	private static final int WheelMask = WheelSize - 1;
+	private static QueryTimeoutWheel instance;
+	private static Logger log = LoggerFactory.getLogger(QueryTimeoutWheel.class);
+	private static final ThreadPoolExecutor cancelExecutor = new ThreadPoolExecutor(4, 4, 15, SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread cancelThread = new Thread(r);
+			cancelThread.setDaemon(true);
+			cancelThread.setName("BeeCP-QueryTimeoutCancel");
+			return cancelThread;
+		}
+	});
+	static {
+		cancelExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	private final QueryTimeout[] buckets = new QueryTimeout[WheelSize];//head of linked timeouts
+	private final ConcurrentLinkedQueue<QueryTimeout> scheduledQueue = new ConcurrentLinkedQueue<QueryTimeout>();
+	private final long startTime = nanoTime();
+	private long tick;
+
+	private QueryTimeoutWheel() {
+		this.setDaemon(true);
+		this.setName("BeeCP-QueryTimeoutWheel");
+	}
+	private static synchronized QueryTimeoutWheel getInstance() {
+		if (instance == null) {
+			instance = new QueryTimeoutWheel();
+			instance.start();
+		}
+		return instance;
+	}
+
+	/**
+	 * schedule a timeout of statement execution
+	 *
+	 * @param statement raw statement,cancelled on timeout
+	 * @param nanos     timeout nanoseconds
+	 * @return timeout,which must be finished after execution
+	 */
+	static QueryTimeout schedule(Statement statement, long nanos) {
+		QueryTimeoutWheel wheel = instance;
+		if (wheel == null) wheel = getInstance();
+		QueryTimeout timeout = new QueryTimeout(statement, nanoTime() + nanos);
+		wheel.scheduledQueue.offer(timeout);
+		return timeout;
+	}
+
+	public void run() {
+		while (true) {
+			long deadline = startTime + (tick + 1) * TickNanos;
+			long waitTime;
+			while ((waitTime = deadline - nanoTime()) > 0)
+				LockSupport.parkNanos(waitTime);
+
+			transferScheduled();
+			expireBucket(buckets[(int) (tick & WheelMask)], (int) (tick & WheelMask));
+			tick++;
+		}
+	}
+	//move scheduled timeouts into buckets
+	private void transferScheduled() {
+		QueryTimeout timeout;
+		while ((timeout = scheduledQueue.poll()) != null) {
+			if (timeout.state != QueryTimeout.WAITING) continue;
+			long ticks = (timeout.deadline - startTime + TickNanos - 1) / TickNanos;
+			if (ticks < tick) ticks = tick;//expire in current tick
+			timeout.remainingRounds = (ticks - tick) / WheelSize;
+			int index = (int) (ticks & WheelMask);
+			timeout.next = buckets[index];
+			buckets[index] = timeout;
+		}
+	}
+	private void expireBucket(QueryTimeout timeout, int index) {
+		QueryTimeout prev = null;
+		while (timeout != null) {
+			QueryTimeout next = timeout.next;
+			boolean remove = true;
+			if (timeout.state == QueryTimeout.WAITING) {
+				if (timeout.remainingRounds > 0) {
+					timeout.remainingRounds--;
+					remove = false;
+				} else {
+					timeout.expire();
+				}
+			}
+
+			if (remove) {
+				if (prev == null) buckets[index] = next;
+				else prev.next = next;
+				timeout.next = null;
+			} else {
+				prev = timeout;
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * timeout of one statement execution
+	 */
+	static final class QueryTimeout implements Runnable {
+		static final int WAITING = 0;
+		static final int FINISHED = 1;
+		static final int EXPIRING = 2;
+		static final int EXPIRED = 3;
+		private static final AtomicIntegerFieldUpdater<QueryTimeout> StateUpdater = AtomicIntegerFieldUpdater.newUpdater(QueryTimeout.class, "state");
+		private final long deadline;
+		private Statement statement;
+		private volatile int state;
+		private volatile Thread finishThread;//parked in finish when expiring
+		private long remainingRounds;//read and written by wheel thread
+		private QueryTimeout next;
+
+		QueryTimeout(Statement statement, long deadline) {
+			this.statement = statement;
+			this.deadline = deadline;
+		}
+		//called by wheel thread
+		private void expire() {
+			if (StateUpdater.compareAndSet(this, WAITING, EXPIRING)) {
+				try {
+					cancelExecutor.execute(this);
+				} catch (Throwable e) {
+					log.warn("BeeCP failed to cancel timeout statement", e);
+					expired();
+				}
+			}
+		}
+		//called by cancel executor
+		public void run() {
+			try {
+				statement.cancel();
+			} catch (Throwable e) {
+				log.warn("BeeCP failed to cancel timeout statement", e);
+			} finally {
+				expired();
+			}
+		}
+		private void expired() {
+			statement = null;
+			state = EXPIRED;
+			Thread thread = finishThread;
+			if (thread != null) LockSupport.unpark(thread);
+		}
+		/**
+		 * called after execution,wait cancellation done when expiring,then the statement
+		 * can be reused safely
+		 *
+		 * @return true,if timeout expired
+		 */
+		boolean finish() {
+			if (StateUpdater.compareAndSet(this, WAITING, FINISHED)) {
+				statement = null;
+				return false;
+			}
+			if (state == EXPIRING) {
+				finishThread = Thread.currentThread();
+				while (state == EXPIRING)
+					LockSupport.park(this);
+				finishThread = null;
+			}
+			return true;
+		}
+	}
+}
@@ -27,9 +27,13 @@ import java.sql.SQLException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static cn.beecp.pool.PoolExceptionList.ConnectionCountException;
+import static cn.beecp.pool.PoolExceptionList.PriorityException;
 import static cn.beecp.pool.PoolExceptionList.RequestInterruptException;
 import static cn.beecp.pool.PoolExceptionList.RequestTimeoutException;
 import static cn.beecp.util.BeecpUtil.isNullText;
+import static cn.beecp.util.BeecpUtil.oclose;
+import static java.lang.System.nanoTime;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
@@ -116,6 +120,101 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJM
 		}
 	}
 
+	/**
+	 * borrow one connection from pool,raw connections are not reused,so affinity key is ignored
+	 *
+	 * @param affinityKey
+	 *            logical session key
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return a new raw connection
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnection(Object affinityKey, long wait) throws SQLException {
+		return getConnection(wait);
+	}
+
+	/**
+	 * borrow one connection from pool before deadline,raw connections are not proxied,
+	 * so deadline only limits waiting
+	 *
+	 * @param deadline
+	 *            absolute time in {@link System#nanoTime()}
+	 *
+	 * @return a new raw connection
+	 * @throws SQLException
+	 *             if pool is closed or deadline reached,then throw exception
+	 */
+	public Connection getConnectionByDeadline(long deadline) throws SQLException {
+		long wait = deadline - nanoTime();
+		if (wait <= 0)throw RequestTimeoutException;
+		return getConnection(NANOSECONDS.toMillis(wait));
+	}
+
+	/**
+	 * borrow one connection from pool,raw connections are created for each borrower,
+	 * so priority is ignored
+	 *
+	 * @param priority
+	 *            0(lowest) to 9(highest),5 is normal
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return a new raw connection
+	 * @throws SQLException
+	 *             if pool is closed,priority is invalid or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByPriority(int priority, long wait) throws SQLException {
+		if (priority < Borrower.MinPriority || priority > Borrower.MaxPriority)throw PriorityException;
+		return getConnection(wait);
+	}
+
+	/**
+	 * borrow multiple raw connections,all or none,created connections are closed
+	 * when one failed
+	 *
+	 * @param count
+	 *            connection count,greater than zero
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return new raw connections of count
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection[] getConnections(int count, long wait) throws SQLException {
+		if (count < 1)throw ConnectionCountException;
+		Connection[] cons = new Connection[count];
+		try {
+			for (int i = 0; i < count; i++)
+				cons[i] = getConnection(wait);
+			return cons;
+		} catch (SQLException e) {
+			for (Connection con : cons)
+				if (con != null)oclose(con);
+			throw e;
+		}
+	}
+
+	/**
+	 * borrow one connection from pool,raw connections are limited by pool semaphore
+	 * only,so tenant quota is ignored
+	 *
+	 * @param tenant
+	 *            tenant key of borrower
+	 * @param wait
+	 *            must be greater than zero
+	 *
+	 * @return a new raw connection
+	 * @throws SQLException
+	 *             if pool is closed or waiting timeout,then throw exception
+	 */
+	public Connection getConnectionByTenant(String tenant, long wait) throws SQLException {
+		return getConnection(wait);
+	}
+
 	/**
 	 * return connection to pool
 	 *
@@ -153,6 +252,62 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJM
 	public int getTransferWaitingSize(){
 		return 0;
 	}
+	public String getPoolName(){
+		return poolName;
+	}
+	public long getBorrowCount(){
+		return 0;
+	}
+	public long getBorrowTimeTotal(){
+		return 0;
+	}
+	public long getCreateCount(){
+		return 0;
+	}
+	public long getCreateTimeTotal(){
+		return 0;
+	}
+	public long getTestCount(){
+		return 0;
+	}
+	public long getTestTimeTotal(){
+		return 0;
+	}
+	public long getStatementCacheHitCount(){
+		return 0;
+	}
+	public long getStatementCacheMissCount(){
+		return 0;
+	}
+	public long getResultCacheHitCount(){
+		return 0;
+	}
+	public long getResultCacheMissCount(){
+		return 0;
+	}
+	public int getResultCacheSize(){
+		return 0;
+	}
+	public void clearResultCache(){
+	}
+	public long getAffinityHitCount(){
+		return 0;
+	}
+	public long getAffinityMissCount(){
+		return 0;
+	}
+	public int getConcurrencyLimit(){
+		return poolConfig.getConcurrentSize();
+	}
+	public String[] getTenantUsages(){
+		return new String[0];
+	}
+	public long[] getPriorityBorrowCounts(){
+		return new long[Borrower.MaxPriority+1];
+	}
+	public long[] getPriorityBorrowTimeTotals(){
+		return new long[Borrower.MaxPriority+1];
+	}
 	// register JMX
 	private void registerJMX() {
 		if (poolConfig.isEnableJMX()) {
@@ -0,0 +1,34 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.SQLTransientException;
+
+/**
+ * Thrown when pool is overloaded and estimated wait time of a borrow request
+ * exceeds its max wait time,request is rejected immediately without waiting,
+ * caller may retry later.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public class RequestRejectedException extends SQLTransientException {
+	private static final long serialVersionUID = 1L;
+
+	public RequestRejectedException(String reason) {
+		super(reason);
+	}
+}
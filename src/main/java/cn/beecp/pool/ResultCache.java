@@ -0,0 +1,271 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Result cache of prepared queries,shared by connections of a pool(and partitions).
+ *
+ * A query is cacheable when it is a 'select' and all tables after 'from' and 'join'
+ * are configured tables;results are keyed by sql and bound parameters,evicted by
+ * size(least recently used)and time to live.
+ *
+ * Each configured table has a version,which is increased on writes(statements with
+ * the table name)through the pool,and again on commit when written in transaction;
+ * a cached result is invalid when sum of versions of its tables changed.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ResultCache {
+	static final int MaxTableSize = 64;//one bit of long mask per table
+	static final Object NullParameter = new Object();
+	static final Object UncacheableParameter = new Object();
+	private static final String[] AliasEndWords = {"where", "join", "on", "using", "inner", "left", "right", "full",
+			"cross", "natural", "outer", "group", "order", "having", "union", "except", "intersect", "minus", "limit",
+			"offset", "fetch", "for", "window", "connect", "start", "lateral"};
+
+	private final long timeToLive;
+	private final HashMap<String, Integer> tableIndexMap;
+	private final AtomicLongArray tableVersions;
+	private final ResultLruMap resultMap;
+	private final StripedCounter hitCounter = new StripedCounter();
+	private final StripedCounter missCounter = new StripedCounter();
+
+	ResultCache(int maxSize, long timeToLive, String tables) {
+		this.timeToLive = timeToLive;
+		this.tableIndexMap = new HashMap<String, Integer>();
+		for (String table : splitTables(tables)) {
+			if (!tableIndexMap.containsKey(table))
+				tableIndexMap.put(table, tableIndexMap.size());
+		}
+		this.tableVersions = new AtomicLongArray(Math.max(tableIndexMap.size(), 1));
+		this.resultMap = new ResultLruMap(maxSize);
+	}
+
+	//configured table names(lower case),split by ',',schema prefix removed
+	static ArrayList<String> splitTables(String tables) {
+		ArrayList<String> tableList = new ArrayList<String>();
+		if (tables == null) return tableList;
+		for (String table : tables.split(",")) {
+			table = table.trim();
+			int index = table.lastIndexOf('.');
+			if (index >= 0) table = table.substring(index + 1);
+			if (table.length() > 0) tableList.add(table.toLowerCase(Locale.ENGLISH));
+		}
+		return tableList;
+	}
+
+	//******************************** sql parse **************************************//
+	/**
+	 * parse sql of statement
+	 *
+	 * @return null,if sql is not a cacheable query and not write any configured table
+	 */
+	CachedSql parseSql(String sql) {
+		if (sql == null || tableIndexMap.isEmpty()) return null;
+		ArrayList<String> tokens = tokenize(sql);
+		if (!tokens.isEmpty() && "select".equals(tokens.get(0)) && !tokens.contains("into")) {
+			if (isLockingQuery(tokens)) return null;
+			long tableMask = getQueryTableMask(tokens);
+			return tableMask == 0 ? null : new CachedSql(new StatementCachePsKey(sql), tableMask, true);
+		}
+
+		long tableMask = 0;
+		for (String token : tokens) {//all names matched,more invalidation is safe
+			Integer index = tableIndexMap.get(token);
+			if (index != null) tableMask |= 1L << index;
+		}
+		return tableMask == 0 ? null : new CachedSql(null, tableMask, false);
+	}
+	//mask of tables after 'from' and 'join',0 if any one is not configured
+	private long getQueryTableMask(ArrayList<String> tokens) {
+		long tableMask = 0;
+		int size = tokens.size();
+		for (int i = 0; i < size; i++) {
+			String token = tokens.get(i);
+			if (!"from".equals(token) && !"join".equals(token)) continue;
+			while (++i < size) {
+				String table = tokens.get(i);
+				if ("(".equals(table)) break;//sub query,parsed in outer loop
+				Integer index = tableIndexMap.get(table);
+				if (index == null) return 0;
+				tableMask |= 1L << index;
+
+				if (i + 1 < size && "as".equals(tokens.get(i + 1))) i += 2;//alias
+				else if (i + 1 < size && isAlias(tokens.get(i + 1))) i++;
+				if (i + 1 < size && ",".equals(tokens.get(i + 1))) i++;
+				else break;
+			}
+		}
+		return tableMask;
+	}
+	private static boolean isAlias(String token) {
+		if (!Character.isJavaIdentifierStart(token.charAt(0))) return false;
+		for (String word : AliasEndWords)
+			if (word.equals(token)) return false;
+		return true;
+	}
+	//select ... for update(share)
+	private static boolean isLockingQuery(ArrayList<String> tokens) {
+		for (int i = 0, l = tokens.size() - 1; i < l; i++) {
+			if ("for".equals(tokens.get(i)) && ("update".equals(tokens.get(i + 1)) || "share".equals(tokens.get(i + 1))))
+				return true;
+		}
+		return false;
+	}
+	/**
+	 * split sql into lower case words and symbols,literals,numbers and comments are skipped,
+	 * quotes of names are removed,only last part of qualified name is kept
+	 */
+	private static ArrayList<String> tokenize(String sql) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		int len = sql.length();
+		int i = 0;
+		while (i < len) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'') {//string literal
+				i = sql.indexOf('\'', i + 1);
+				i = i < 0 ? len : i + 1;
+			} else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+				i = sql.indexOf('\n', i);
+				if (i < 0) i = len;
+			} else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+				i = sql.indexOf("*/", i + 2);
+				i = i < 0 ? len : i + 2;
+			} else if (c == '"' || c == '`' || c == '[' || Character.isJavaIdentifierStart(c)) {
+				String name = null;
+				do {//qualified name:schema.table
+					if (i < len && sql.charAt(i) == '.') i++;
+					if (i >= len) break;
+					c = sql.charAt(i);
+					int begin = i;
+					if (c == '"' || c == '`' || c == '[') {
+						int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+						if (end < 0) end = len;
+						name = sql.substring(begin + 1, end);
+						i = Math.min(end + 1, len);
+					} else if (Character.isJavaIdentifierStart(c)) {
+						while (i < len && Character.isJavaIdentifierPart(sql.charAt(i))) i++;
+						name = sql.substring(begin, i);
+					} else {
+						break;
+					}
+				} while (i < len && sql.charAt(i) == '.');
+				if (name != null) tokens.add(name.toLowerCase(Locale.ENGLISH));
+			} else if (Character.isDigit(c)) {
+				while (i < len && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+			} else {
+				tokens.add(String.valueOf(c));
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	//******************************** cache **************************************//
+	//sum of versions,changed when any one increased
+	long getVersion(long tableMask) {
+		long version = 0;
+		for (int i = 0; tableMask != 0; i++, tableMask >>>= 1) {
+			if ((tableMask & 1) != 0) version += tableVersions.get(i);
+		}
+		return version;
+	}
+	void invalidate(long tableMask) {
+		for (int i = 0; tableMask != 0; i++, tableMask >>>= 1) {
+			if ((tableMask & 1) != 0) tableVersions.incrementAndGet(i);
+		}
+	}
+	CachedResult get(ResultCacheKey key) {
+		CachedResult result;
+		synchronized (resultMap) {
+			result = resultMap.get(key);
+		}
+		if (result != null && (currentTimeMillis() - result.loadTime >= timeToLive || result.version != getVersion(result.tableMask))) {
+			synchronized (resultMap) {
+				if (resultMap.get(key) == result) resultMap.remove(key);
+			}
+			result = null;
+		}
+
+		if (result == null)
+			missCounter.increment();
+		else
+			hitCounter.increment();
+		return result;
+	}
+	void put(ResultCacheKey key, CachedResult result) {
+		synchronized (resultMap) {
+			resultMap.put(key, result);
+		}
+	}
+	void clear() {
+		synchronized (resultMap) {
+			resultMap.clear();
+		}
+	}
+	int size() {
+		synchronized (resultMap) {
+			return resultMap.size();
+		}
+	}
+	long getHitCount() {
+		return hitCounter.sum();
+	}
+	long getMissCount() {
+		return missCounter.sum();
+	}
+
+	//access ordered map,eldest result removed when size exceeded
+	static final class ResultLruMap extends LinkedHashMap<ResultCacheKey, CachedResult> {
+		private static final long serialVersionUID = -3316402858137262846L;
+		private final int maxSize;
+
+		ResultLruMap(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+		protected boolean removeEldestEntry(Map.Entry<ResultCacheKey, CachedResult> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	//parameter value as part of key,mutable values are copied
+	static Object toKeyValue(Object value) {
+		if (value == null) return NullParameter;
+		if (value instanceof String || value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte || value instanceof Boolean
+				|| value instanceof Double || value instanceof Float || value instanceof Character
+				|| value instanceof BigDecimal || value instanceof BigInteger)
+			return value;
+		if (value instanceof byte[]) return ((byte[]) value).clone();
+		if (value instanceof java.util.Date) return ((java.util.Date) value).clone();
+		return UncacheableParameter;
+	}
+}
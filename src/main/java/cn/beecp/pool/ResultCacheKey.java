@@ -0,0 +1,46 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.Arrays;
+
+/**
+ * key of cached result:sql and bound parameters
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ResultCacheKey {
+	private final StatementCachePsKey sqlKey;
+	private final Object[] parameters;
+	private final int hashCode;
+
+	ResultCacheKey(StatementCachePsKey sqlKey, Object[] parameters) {
+		this.sqlKey = sqlKey;
+		this.parameters = parameters;
+		this.hashCode = 31 * sqlKey.hashCode() + Arrays.deepHashCode(parameters);
+	}
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof ResultCacheKey)) return false;
+		ResultCacheKey other = (ResultCacheKey) obj;
+		return hashCode == other.hashCode && sqlKey.equals(other.sqlKey) && Arrays.deepEquals(parameters, other.parameters);
+	}
+}
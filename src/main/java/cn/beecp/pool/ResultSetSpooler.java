@@ -0,0 +1,94 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static cn.beecp.util.BeecpUtil.oclose;
+
+/**
+ * Spool remaining rows of a result set into off-heap memory and return a detached,
+ * read only and scrollable result set on them,then the connection can be returned
+ * to pool before rows processed.If the result set is a pool proxy,rows are read from
+ * driver result set directly.
+ *
+ * <pre>
+ * ResultSet rows;
+ * Connection con = ds.getConnection();
+ * try {
+ *   rows = ResultSetSpooler.spool(con.createStatement().executeQuery(sql));
+ * } finally {
+ *   con.close();//return to pool
+ * }
+ * while (rows.next()) ...
+ * rows.close();//free off-heap memory
+ * </pre>
+ *
+ * Values are materialized to objects on read,binary values are read as bytes,character
+ * large objects and types without fixed format are read as strings.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class ResultSetSpooler {
+	private static final int DefaultChunkSize = 64 * 1024;
+
+	private ResultSetSpooler() {
+	}
+
+	/**
+	 * spool remaining rows into off-heap memory,the result set is closed after read
+	 *
+	 * @param resultSet result set to read
+	 * @return detached result set,statement of it is null
+	 * @throws SQLException if result set is closed or failed to read rows
+	 */
+	public static ResultSet spool(ResultSet resultSet) throws SQLException {
+		return spool(resultSet, DefaultChunkSize);
+	}
+
+	/**
+	 * spool remaining rows into off-heap memory,the result set is closed after read
+	 *
+	 * @param resultSet       result set to read
+	 * @param chunkSize       byte size of off-heap chunks(1024 at least),a new chunk is allocated
+	 *                        when current one is full,chunks are freed on close of returned result set
+	 * @return detached result set,statement of it is null
+	 * @throws SQLException if result set is closed or failed to read rows
+	 */
+	public static ResultSet spool(ResultSet resultSet, int chunkSize) throws SQLException {
+		if (resultSet == null) throw new SQLException("ResultSet can't be null");
+		if (chunkSize <= 0) throw new SQLException("Chunk size must be greater than zero");
+
+		ResultSet rawResultSet;
+		if (resultSet instanceof ProxyResultSetBase) {
+			ProxyResultSetBase proxyResultSet = (ProxyResultSetBase) resultSet;
+			proxyResultSet.checkClose();
+			rawResultSet = proxyResultSet.delegate;
+		} else {
+			rawResultSet = resultSet;
+		}
+
+		SpooledRows rows;
+		try {
+			rows = new SpooledRows(rawResultSet, chunkSize);
+		} finally {
+			oclose(resultSet);
+		}
+		return ProxyClassDefiner.getProxyConnectionFactory(null).createDetachedResultSet(rows);
+	}
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+
+import static cn.beecp.pool.ColumnarBatch.UTF8;
+
+/**
+ * Rows spooled into fixed size direct(off-heap)byte buffer chunks,values are materialized on read.
+ *
+ * Row format:null bitmap((columnCount+7)/8 bytes),then non null values in column order;
+ * fixed width for boolean,number,date and time,length prefixed bytes for decimal,binary
+ * and string(UTF-8).A row is kept in one chunk,a new chunk is allocated when current one
+ * is full(written part of the row is moved to it),a row larger than chunk size takes a chunk
+ * of its size.Chunks are freed on release by their cleaner,not wait for GC.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class SpooledRows extends DetachedRows {
+	private static final int KIND_BOOLEAN = 1;
+	private static final int KIND_INT = 2;
+	private static final int KIND_LONG = 3;
+	private static final int KIND_FLOAT = 4;
+	private static final int KIND_DOUBLE = 5;
+	private static final int KIND_DECIMAL = 6;
+	private static final int KIND_DATE = 7;
+	private static final int KIND_TIME = 8;
+	private static final int KIND_TIMESTAMP = 9;
+	private static final int KIND_BYTES = 10;
+	private static final int KIND_STRING = 11;
+
+	private static final Object TheUnsafe;//java 9+:Unsafe.invokeCleaner(buffer)
+	private static final Method InvokeCleanerMethod;
+	private static final Method CleanerMethod;//java 8:((DirectBuffer)buffer).cleaner().clean()
+	private static final Method CleanMethod;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleanerMethod = null, cleanerMethod = null, cleanMethod = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		} catch (Throwable e) {
+			invokeCleanerMethod = null;
+			try {
+				cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+				cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			} catch (Throwable ee) {//not free explicitly,chunks freed when collected
+				cleanerMethod = null;
+				cleanMethod = null;
+			}
+		}
+		TheUnsafe = unsafe;
+		InvokeCleanerMethod = invokeCleanerMethod;
+		CleanerMethod = cleanerMethod;
+		CleanMethod = cleanMethod;
+	}
+
+	private final int[] kinds;
+	private final int bitmapSize;
+	private final int chunkSize;
+	private ByteBuffer[] chunks;
+	private int chunkCount;
+	private ByteBuffer buffer;//current chunk to write
+	private int rowStart;//start offset of writing row in current chunk
+	private int[] rowChunks;
+	private int[] rowOffsets;
+	private int rowCount;
+
+	private int offsetRow = -1;//row of column offsets
+	private final int[] columnOffsets;//offsets of non null columns in row
+
+	SpooledRows(ResultSet rs, int chunkSize) throws SQLException {
+		super(rs.getMetaData());
+		kinds = new int[columnCount];
+		for (int i = 0; i < columnCount; i++)
+			kinds[i] = getKind(metaData.getColumnType(i + 1), metaData.isSigned(i + 1));
+		bitmapSize = (columnCount + 7) >>> 3;
+		columnOffsets = new int[columnCount];
+		rowChunks = new int[64];
+		rowOffsets = new int[64];
+		this.chunkSize = Math.max(chunkSize, 1024);
+		chunks = new ByteBuffer[8];
+		addChunk(this.chunkSize);
+
+		try {
+			while (rs.next()) {
+				if (rowCount == rowOffsets.length) {
+					rowChunks = Arrays.copyOf(rowChunks, rowCount << 1);
+					rowOffsets = Arrays.copyOf(rowOffsets, rowCount << 1);
+				}
+				writeRow(rs);
+				rowChunks[rowCount] = chunkCount - 1;
+				rowOffsets[rowCount++] = rowStart;
+			}
+		} catch (SQLException e) {
+			release();
+			throw e;
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		} catch (Error e) {//such as OutOfMemoryError of direct memory
+			release();
+			throw e;
+		}
+	}
+	private static int getKind(int type, boolean signed) {
+		switch (type) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return KIND_BOOLEAN;
+			case Types.TINYINT:
+			case Types.SMALLINT:
+				return KIND_INT;
+			case Types.INTEGER:
+				return signed ? KIND_INT : KIND_LONG;
+			case Types.BIGINT:
+				return signed ? KIND_LONG : KIND_DECIMAL;
+			case Types.REAL:
+				return KIND_FLOAT;
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return KIND_DOUBLE;
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				return KIND_DECIMAL;
+			case Types.DATE:
+				return KIND_DATE;
+			case Types.TIME:
+				return KIND_TIME;
+			case Types.TIMESTAMP:
+				return KIND_TIMESTAMP;
+			case Types.BLOB:
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+				return KIND_BYTES;
+			default://char,clob and others are read as string
+				return KIND_STRING;
+		}
+	}
+
+	//write values of current row from 'rowStart' of current chunk(chunk may be changed in writing)
+	private void writeRow(ResultSet rs) throws SQLException {
+		rowStart = buffer.position();
+		ensureCapacity(bitmapSize);
+		buffer.position(rowStart + bitmapSize);
+		for (int i = 0; i < columnCount; i++) {
+			int column = i + 1;
+			boolean isNull = false;
+			switch (kinds[i]) {
+				case KIND_BOOLEAN: {
+					boolean value = rs.getBoolean(column);
+					if (!(isNull = rs.wasNull())) {
+						ensureCapacity(1);
+						buffer.put(value ? (byte) 1 : (byte) 0);
+					}
+					break;
+				}
+				case KIND_INT: {
+					int value = rs.getInt(column);
+					if (!(isNull = rs.wasNull())) {
+						ensureCapacity(4);
+						buffer.putInt(value);
+					}
+					break;
+				}
+				case KIND_LONG: {
+					long value = rs.getLong(column);
+					if (!(isNull = rs.wasNull())) {
+						ensureCapacity(8);
+						buffer.putLong(value);
+					}
+					break;
+				}
+				case KIND_FLOAT: {
+					float value = rs.getFloat(column);
+					if (!(isNull = rs.wasNull())) {
+						ensureCapacity(4);
+						buffer.putFloat(value);
+					}
+					break;
+				}
+				case KIND_DOUBLE: {
+					double value = rs.getDouble(column);
+					if (!(isNull = rs.wasNull())) {
+						ensureCapacity(8);
+						buffer.putDouble(value);
+					}
+					break;
+				}
+				case KIND_DECIMAL: {
+					BigDecimal value = rs.getBigDecimal(column);
+					if (!(isNull = value == null)) {
+						byte[] bytes = value.unscaledValue().toByteArray();
+						ensureCapacity(8 + bytes.length);
+						buffer.putInt(value.scale());
+						buffer.putInt(bytes.length);
+						buffer.put(bytes);
+					}
+					break;
+				}
+				case KIND_DATE:
+				case KIND_TIME: {
+					java.util.Date value = kinds[i] == KIND_DATE ? rs.getDate(column) : rs.getTime(column);
+					if (!(isNull = value == null)) {
+						ensureCapacity(8);
+						buffer.putLong(value.getTime());
+					}
+					break;
+				}
+				case KIND_TIMESTAMP: {
+					Timestamp value = rs.getTimestamp(column);
+					if (!(isNull = value == null)) {
+						ensureCapacity(12);
+						buffer.putLong(value.getTime());
+						buffer.putInt(value.getNanos());
+					}
+					break;
+				}
+				case KIND_BYTES: {
+					byte[] value = rs.getBytes(column);
+					if (!(isNull = value == null)) putBytes(value);
+					break;
+				}
+				default: {
+					String value = rs.getString(column);
+					if (!(isNull = value == null)) putBytes(value.getBytes(UTF8));
+				}
+			}
+			if (isNull) {
+				int bitmapIndex = rowStart + (i >>> 3);
+				buffer.put(bitmapIndex, (byte) (buffer.get(bitmapIndex) | (1 << (i & 7))));
+			}
+		}
+	}
+	private void putBytes(byte[] bytes) throws SQLException {
+		ensureCapacity(4 + bytes.length);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+	//allocate a new chunk when current one not enough,written bytes of the row are moved to it
+	private void ensureCapacity(int size) throws SQLException {
+		if (buffer.remaining() >= size) return;
+		int rowSize = buffer.position() - rowStart;
+		long required = (long) rowSize + size;
+		if (required > Integer.MAX_VALUE) throw new SQLException("Spooled row exceeds max chunk size");
+
+		ByteBuffer oldBuffer = buffer;
+		addChunk((int) Math.max(required, chunkSize));
+		oldBuffer.limit(oldBuffer.position());
+		oldBuffer.position(rowStart);
+		buffer.put(oldBuffer);
+		oldBuffer.limit(oldBuffer.capacity());
+		oldBuffer.position(rowStart);//moved bytes not used
+		rowStart = 0;
+	}
+	private void addChunk(int capacity) {
+		if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, chunkCount << 1);
+		buffer = ByteBuffer.allocateDirect(capacity);
+		chunks[chunkCount++] = buffer;
+	}
+
+	int getRowCount() {
+		return rowCount;
+	}
+	Object getValue(int row, int column) throws SQLException {
+		if (chunks == null) throw new SQLException("Spooled rows have been released");
+		ByteBuffer buffer = chunks[rowChunks[row]];
+		int rowOffset = rowOffsets[row];
+		int i = column - 1;
+		if ((buffer.get(rowOffset + (i >>> 3)) & (1 << (i & 7))) != 0) return null;
+		if (offsetRow != row) fillColumnOffsets(buffer, row, rowOffset);
+
+		int offset = columnOffsets[i];
+		switch (kinds[i]) {
+			case KIND_BOOLEAN:
+				return buffer.get(offset) != 0;
+			case KIND_INT:
+				return buffer.getInt(offset);
+			case KIND_LONG:
+				return buffer.getLong(offset);
+			case KIND_FLOAT:
+				return buffer.getFloat(offset);
+			case KIND_DOUBLE:
+				return buffer.getDouble(offset);
+			case KIND_DECIMAL:
+				return new BigDecimal(new BigInteger(getBytes(buffer, offset + 4)), buffer.getInt(offset));
+			case KIND_DATE:
+				return new Date(buffer.getLong(offset));
+			case KIND_TIME:
+				return new Time(buffer.getLong(offset));
+			case KIND_TIMESTAMP: {
+				Timestamp value = new Timestamp(buffer.getLong(offset));
+				value.setNanos(buffer.getInt(offset + 8));
+				return value;
+			}
+			case KIND_BYTES:
+				return getBytes(buffer, offset);
+			default:
+				return new String(getBytes(buffer, offset), UTF8);
+		}
+	}
+	private static byte[] getBytes(ByteBuffer buffer, int offset) {
+		byte[] bytes = new byte[buffer.getInt(offset)];
+		buffer.position(offset + 4);
+		buffer.get(bytes);
+		return bytes;
+	}
+	//walk columns of row once,then values of the row are located directly
+	private void fillColumnOffsets(ByteBuffer buffer, int row, int rowOffset) {
+		int offset = rowOffset + bitmapSize;
+		for (int i = 0; i < columnCount; i++) {
+			columnOffsets[i] = offset;
+			if ((buffer.get(rowOffset + (i >>> 3)) & (1 << (i & 7))) != 0) continue;
+			switch (kinds[i]) {
+				case KIND_BOOLEAN:
+					offset += 1;
+					break;
+				case KIND_INT:
+				case KIND_FLOAT:
+					offset += 4;
+					break;
+				case KIND_LONG:
+				case KIND_DOUBLE:
+				case KIND_DATE:
+				case KIND_TIME:
+					offset += 8;
+					break;
+				case KIND_TIMESTAMP:
+					offset += 12;
+					break;
+				case KIND_DECIMAL:
+					offset += 8 + buffer.getInt(offset + 4);
+					break;
+				default:
+					offset += 4 + buffer.getInt(offset);
+			}
+		}
+		offsetRow = row;
+	}
+	//direct memory of chunks is freed at once,rows can't be read after release
+	void release() {
+		ByteBuffer[] releasedChunks = chunks;
+		if (releasedChunks == null) return;
+		chunks = null;
+		buffer = null;
+		rowChunks = null;
+		rowOffsets = null;
+		for (int i = 0; i < chunkCount; i++)
+			freeChunk(releasedChunks[i]);
+	}
+	private static void freeChunk(ByteBuffer chunk) {
+		try {
+			if (InvokeCleanerMethod != null) {
+				InvokeCleanerMethod.invoke(TheUnsafe, chunk);
+			} else if (CleanerMethod != null) {
+				Object cleaner = CleanerMethod.invoke(chunk);
+				if (cleaner != null) CleanMethod.invoke(cleaner);
+			}
+		} catch (Throwable e) {//freed when collected
+		}
+	}
+}
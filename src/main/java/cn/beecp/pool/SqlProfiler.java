@@ -0,0 +1,210 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * SQL execution profiler,called by generated profiled statements(only used when
+ * profile enabled),execution time is aggregated per sql text in a bounded table,
+ * when table is full,a quarter of sql with min total time are removed together for new
+ * ones(scan is amortized,a new sql is not removed by next one immediately).
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class SqlProfiler implements SqlProfilerJMXBean {
+	private static final String BatchSql = "[batch]";
+	private final String poolName;
+	private final int maxSize;
+	private final int evictSize;
+	private final boolean normalize;
+	private final long slowThresholdNanos;
+	private final AtomicLong slowSqlCounter = new AtomicLong(0);
+	private final ConcurrentHashMap<String, SqlStat> statMap;
+	private static Logger log = LoggerFactory.getLogger(SqlProfiler.class);
+
+	SqlProfiler(String poolName, int maxSize, boolean normalize, long slowThresholdMills) {
+		this.poolName = poolName;
+		this.maxSize = maxSize;
+		this.evictSize = Math.max(maxSize >> 2, 1);
+		this.normalize = normalize;
+		this.slowThresholdNanos = slowThresholdMills * 1000000L;
+		this.statMap = new ConcurrentHashMap<String, SqlStat>(maxSize * 4 / 3 + 1);
+	}
+
+	//sql of prepared statement is prepared once
+	String prepareSql(String sql) {
+		return normalize ? normalize(sql) : sql;
+	}
+	//called by profiled statements(sql is parameter of execute method)
+	void record(String sql, long time) {
+		recordPrepared(prepareSql(sql), time);
+	}
+	//called by profiled prepared statements
+	void recordPrepared(String sql, long time) {
+		if (sql == null) sql = BatchSql;
+		SqlStat stat = statMap.get(sql);
+		if (stat == null) stat = addStat(sql);
+		stat.add(time);
+
+		if (slowThresholdNanos > 0 && time >= slowThresholdNanos) {
+			slowSqlCounter.incrementAndGet();
+			log.warn("BeeCP({})slow sql({}ms):{}", poolName, NANOSECONDS.toMillis(time), sql);
+		}
+	}
+	private synchronized SqlStat addStat(String sql) {
+		SqlStat stat = statMap.get(sql);
+		if (stat != null) return stat;
+		if (statMap.size() >= maxSize) evictStats();
+		stat = new SqlStat(sql);
+		statMap.put(sql, stat);
+		return stat;
+	}
+	//remove sql with min total time in batch
+	private void evictStats() {
+		ArrayList<SqlStat> statList = new ArrayList<SqlStat>(statMap.values());
+		int size = statList.size();
+		if (size == 0) return;
+		long[] totalTimes = new long[size];//snapshot,times are changed by executions
+		for (int i = 0; i < size; i++)
+			totalTimes[i] = statList.get(i).totalTime.get();
+		long[] sortedTimes = totalTimes.clone();
+		Arrays.sort(sortedTimes);
+		int count = Math.min(evictSize, size);
+		long maxEvictTime = sortedTimes[count - 1];
+		for (int i = 0; i < size; i++) {//less ones first,then equal ones
+			if (totalTimes[i] < maxEvictTime) {
+				statMap.remove(statList.get(i).sql);
+				count--;
+			}
+		}
+		for (int i = 0; i < size && count > 0; i++) {
+			if (totalTimes[i] == maxEvictTime) {
+				statMap.remove(statList.get(i).sql);
+				count--;
+			}
+		}
+	}
+
+	/**
+	 * replace string and number literals with '?',collapse whitespace
+	 */
+	static String normalize(String sql) {
+		int len = sql.length();
+		StringBuilder builder = new StringBuilder(len);
+		boolean lastSpace = false;
+		for (int i = 0; i < len; i++) {
+			char c = sql.charAt(i);
+			if (c == '\'') {//string literal,quote in literal is doubled
+				i++;
+				while (i < len) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				builder.append('?');
+				lastSpace = false;
+			} else if (Character.isDigit(c) && !isIdentifierPart(builder)) {
+				while (i + 1 < len && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.'))
+					i++;
+				builder.append('?');
+				lastSpace = false;
+			} else if (Character.isWhitespace(c)) {
+				if (!lastSpace && builder.length() > 0) builder.append(' ');
+				lastSpace = true;
+			} else {
+				builder.append(c);
+				lastSpace = false;
+			}
+		}
+		int end = builder.length();
+		if (end > 0 && builder.charAt(end - 1) == ' ') builder.setLength(end - 1);
+		return builder.toString();
+	}
+	//digit after a letter,digit or '_' is part of identifier,such as 'table1'
+	private static boolean isIdentifierPart(StringBuilder builder) {
+		if (builder.length() == 0) return false;
+		char c = builder.charAt(builder.length() - 1);
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+	//******************************** JMX **************************************//
+	public int getSqlSize() {
+		return statMap.size();
+	}
+	public long getSlowSqlThreshold() {
+		return NANOSECONDS.toMillis(slowThresholdNanos);
+	}
+	public long getSlowSqlCount() {
+		return slowSqlCounter.get();
+	}
+	public String[] getTopSql() {
+		ArrayList<SqlStat> statList = new ArrayList<SqlStat>(statMap.values());
+		Collections.sort(statList, new Comparator<SqlStat>() {
+			public int compare(SqlStat stat1, SqlStat stat2) {
+				long time1 = stat1.totalTime.get(), time2 = stat2.totalTime.get();
+				return time1 > time2 ? -1 : (time1 == time2 ? 0 : 1);
+			}
+		});
+		String[] lines = new String[statList.size()];
+		for (int i = 0; i < lines.length; i++) {
+			SqlStat stat = statList.get(i);
+			lines[i] = String.format("count:%s,total:%sms,max:%sms,sql:%s", stat.count.get(),
+					NANOSECONDS.toMillis(stat.totalTime.get()), NANOSECONDS.toMillis(stat.maxTime.get()), stat.sql);
+		}
+		return lines;
+	}
+	public void clear() {
+		statMap.clear();
+		slowSqlCounter.set(0);
+	}
+	//******************************** JMX **************************************//
+
+	private static final class SqlStat {
+		final String sql;
+		final AtomicLong count = new AtomicLong(0);
+		final AtomicLong totalTime = new AtomicLong(0);
+		final AtomicLong maxTime = new AtomicLong(0);
+
+		SqlStat(String sql) {
+			this.sql = sql;
+		}
+		void add(long time) {
+			count.incrementAndGet();
+			totalTime.addAndGet(time);
+			long max;
+			while (time > (max = maxTime.get())) {
+				if (maxTime.compareAndSet(max, time)) break;
+			}
+		}
+	}
+}
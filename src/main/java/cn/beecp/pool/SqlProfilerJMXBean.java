@@ -0,0 +1,39 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+/**
+ * SQL execution profiler JMX Bean interface
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface SqlProfilerJMXBean {
+
+	int getSqlSize();
+
+	long getSlowSqlThreshold();
+
+	long getSlowSqlCount();
+
+	/**
+	 * profiled sql ordered by total execution time,one line for a sql:
+	 * count,total time(ms),max time(ms),sql
+	 */
+	String[] getTopSql();
+
+	void clear();
+}
@@ -15,7 +15,6 @@
  */
 package cn.beecp.pool;
 import java.sql.PreparedStatement;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -34,16 +33,24 @@ class StatementCache {
 	private CacheNode head=null;//old
 	private CacheNode tail=null;//new
 	private HashMap<Object,CacheNode>nodeMap;
+	private StripedCounter hitCounter;//null when metrics disabled
+	private StripedCounter missCounter;
 	public StatementCache(int capacity) {
 		this.capacity=capacity;
 		this.nodeMap = new HashMap<Object,CacheNode>(capacity*2);
 	}
+	void setStatisticCounters(StripedCounter hitCounter,StripedCounter missCounter){
+		this.hitCounter=hitCounter;
+		this.missCounter=missCounter;
+	}
 	public PreparedStatement getStatement(Object k) {
 		CacheNode n = nodeMap.get(k);
 		if(n != null) {
+			if(hitCounter!=null)hitCounter.increment();
 			if(n!=tail)moveToTail(n);
 			return n.v;
 		}
+		if(missCounter!=null)missCounter.increment();
 		return null;
 	}
 	public void putStatement(Object k,PreparedStatement v) {
@@ -112,96 +119,6 @@ class StatementCache {
 		}
 	}
 }
-class StatementCachePsKey{
-	private String sql;
-	private int autoGeneratedKeys;
-	private int[] columnIndexes=null;
-	private String[] columnNames=null;
-	private int resultSetType=0;
-	private int resultSetConcurrency=0;
-	private int resultSetHoldability=0;
-
-	private final static int prime=31;
-	private final static int TYPE1=1;
-	private final static int TYPE2=2;
-	private final static int TYPE3=3;
-	private final static int TYPE4=4;
-	private final static int TYPE5=5;
-	private final static int TYPE6=6;
-	private int type=TYPE1;
-
-	private int hashCode;
-	public StatementCachePsKey(String sql) {
-		this.sql=sql;
-		hashCode=sql.hashCode();
-	}
-	public StatementCachePsKey(String sql, int autoGeneratedKeys) {
-		this.type=TYPE2;
-		this.sql=sql;
-		this.autoGeneratedKeys=autoGeneratedKeys;
-
-		hashCode=sql.hashCode();
-		hashCode=prime * hashCode+autoGeneratedKeys;
-	}
-	public StatementCachePsKey(String sql, int[] columnIndexes) {
-		this.type=TYPE3;
-		this.sql=sql;
-		this.columnIndexes=columnIndexes;
-
-		hashCode=sql.hashCode();
-		hashCode=prime * hashCode+Arrays.hashCode(columnIndexes);
-	}
-	public StatementCachePsKey(String sql, String[] columnNames) {
-		this.type=TYPE4;
-		this.sql=sql;
-		this.columnNames=columnNames;
-
-		hashCode=sql.hashCode();
-		hashCode=prime * hashCode+Arrays.hashCode(columnNames);
-	}
-	public StatementCachePsKey(String sql, int resultSetType, int resultSetConcurrency) {
-		this.type=TYPE5;
-		this.sql=sql;
-		this.resultSetType=resultSetType;
-		this.resultSetConcurrency=resultSetConcurrency;
-
-		hashCode=sql.hashCode();
-		hashCode=prime * hashCode+resultSetType;
-		hashCode=prime * hashCode+resultSetConcurrency;
-	}
-	public StatementCachePsKey(String sql, int resultSetType, int resultSetConcurrency,int resultSetHoldability) {
-		this.type=TYPE6;
-		this.sql=sql;
-		this.resultSetType=resultSetType;
-		this.resultSetConcurrency=resultSetConcurrency;
-		this.resultSetHoldability=resultSetHoldability;
-
-		hashCode=sql.hashCode();
-		hashCode=prime * hashCode+resultSetType;
-		hashCode=prime * hashCode+resultSetConcurrency;
-		hashCode=prime * hashCode+resultSetHoldability;
-	}
-
-	@Override
-	public int hashCode(){
-		return hashCode;
-	}
-	@Override
-	public boolean equals(Object obj) {
-		if(!(obj instanceof StatementCachePsKey))return false;
-		StatementCachePsKey other=(StatementCachePsKey)obj;
-		if(this.type!=other.type)return false;
-		switch(this.type){
-			case TYPE1:return this.sql.equals(other.sql);
-			case TYPE2:return autoGeneratedKeys==other.autoGeneratedKeys && this.sql.equals(other.sql);
-			case TYPE3:return Arrays.equals(columnIndexes,other.columnIndexes)&& this.sql.equals(other.sql);
-			case TYPE4:return Arrays.equals(columnNames,other.columnNames)&& this.sql.equals(other.sql);
-			case TYPE5:return resultSetType==other.resultSetType && resultSetConcurrency==other.resultSetConcurrency && this.sql.equals(other.sql);
-			case TYPE6:return resultSetType==other.resultSetType && resultSetConcurrency==other.resultSetConcurrency && resultSetHoldability==other.resultSetHoldability && this.sql.equals(other.sql);
-			default:return false;
-		}
-	}
-}
 class StatementCacheCsKey{
 	private String sql;
 	private int resultSetType=0;
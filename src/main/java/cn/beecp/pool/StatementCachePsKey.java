@@ -0,0 +1,115 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.Arrays;
+
+/**
+ * Statement cache key of prepared statement
+ *
+ * @author Chris.liao
+ * @version 1.0
+ */
+class StatementCachePsKey{
+	private String sql;
+	private int autoGeneratedKeys;
+	private int[] columnIndexes=null;
+	private String[] columnNames=null;
+	private int resultSetType=0;
+	private int resultSetConcurrency=0;
+	private int resultSetHoldability=0;
+
+	private final static int prime=31;
+	private final static int TYPE1=1;
+	private final static int TYPE2=2;
+	private final static int TYPE3=3;
+	private final static int TYPE4=4;
+	private final static int TYPE5=5;
+	private final static int TYPE6=6;
+	private int type=TYPE1;
+
+	private int hashCode;
+	public StatementCachePsKey(String sql) {
+		this.sql=sql;
+		hashCode=sql.hashCode();
+	}
+	public StatementCachePsKey(String sql, int autoGeneratedKeys) {
+		this.type=TYPE2;
+		this.sql=sql;
+		this.autoGeneratedKeys=autoGeneratedKeys;
+
+		hashCode=sql.hashCode();
+		hashCode=prime * hashCode+autoGeneratedKeys;
+	}
+	public StatementCachePsKey(String sql, int[] columnIndexes) {
+		this.type=TYPE3;
+		this.sql=sql;
+		this.columnIndexes=columnIndexes;
+
+		hashCode=sql.hashCode();
+		hashCode=prime * hashCode+Arrays.hashCode(columnIndexes);
+	}
+	public StatementCachePsKey(String sql, String[] columnNames) {
+		this.type=TYPE4;
+		this.sql=sql;
+		this.columnNames=columnNames;
+
+		hashCode=sql.hashCode();
+		hashCode=prime * hashCode+Arrays.hashCode(columnNames);
+	}
+	public StatementCachePsKey(String sql, int resultSetType, int resultSetConcurrency) {
+		this.type=TYPE5;
+		this.sql=sql;
+		this.resultSetType=resultSetType;
+		this.resultSetConcurrency=resultSetConcurrency;
+
+		hashCode=sql.hashCode();
+		hashCode=prime * hashCode+resultSetType;
+		hashCode=prime * hashCode+resultSetConcurrency;
+	}
+	public StatementCachePsKey(String sql, int resultSetType, int resultSetConcurrency,int resultSetHoldability) {
+		this.type=TYPE6;
+		this.sql=sql;
+		this.resultSetType=resultSetType;
+		this.resultSetConcurrency=resultSetConcurrency;
+		this.resultSetHoldability=resultSetHoldability;
+
+		hashCode=sql.hashCode();
+		hashCode=prime * hashCode+resultSetType;
+		hashCode=prime * hashCode+resultSetConcurrency;
+		hashCode=prime * hashCode+resultSetHoldability;
+	}
+
+	@Override
+	public int hashCode(){
+		return hashCode;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof StatementCachePsKey))return false;
+		StatementCachePsKey other=(StatementCachePsKey)obj;
+		if(this.type!=other.type)return false;
+		switch(this.type){
+			case TYPE1:return this.sql.equals(other.sql);
+			case TYPE2:return autoGeneratedKeys==other.autoGeneratedKeys && this.sql.equals(other.sql);
+			case TYPE3:return Arrays.equals(columnIndexes,other.columnIndexes)&& this.sql.equals(other.sql);
+			case TYPE4:return Arrays.equals(columnNames,other.columnNames)&& this.sql.equals(other.sql);
+			case TYPE5:return resultSetType==other.resultSetType && resultSetConcurrency==other.resultSetConcurrency && this.sql.equals(other.sql);
+			case TYPE6:return resultSetType==other.resultSetType && resultSetConcurrency==other.resultSetConcurrency && resultSetHoldability==other.resultSetHoldability && this.sql.equals(other.sql);
+			default:return false;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped counter,updating threads are spread over padded cells by thread id,
+ * so counting on hot path not contend on one atomic field,value is sum of all cells.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class StripedCounter {
+	private static final int CellPadding=16;//16 longs,cells not share one cache line
+	private static final int StripeMask;
+	static{
+		int size=1;
+		int cpuSize=Runtime.getRuntime().availableProcessors();
+		while(size<cpuSize && size<64)size<<=1;
+		StripeMask=size-1;
+	}
+	private final AtomicLongArray cells=new AtomicLongArray((StripeMask+1)*CellPadding);
+
+	void increment(){
+		cells.getAndIncrement(cellIndex());
+	}
+	void decrement(){
+		cells.getAndDecrement(cellIndex());
+	}
+	void add(long x){
+		cells.getAndAdd(cellIndex(),x);
+	}
+	long sum(){
+		long sum=0;
+		for(int i=0,l=cells.length();i<l;i+=CellPadding)
+			sum+=cells.get(i);
+		return sum;
+	}
+	private static int cellIndex(){
+		long id=Thread.currentThread().getId();
+		return ((int)(id^(id>>>16)) & StripeMask)*CellPadding;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * connection quota of one tenant,a permit is held from borrow to return of a connection,
+ * quota of not configured tenant is evicted from table when no one refers it
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class TenantQuota {
+	private static final AtomicReferenceFieldUpdater<PooledConnection, TenantQuota> QuotaUpdater = AtomicReferenceFieldUpdater.newUpdater(PooledConnection.class, TenantQuota.class, "tenantQuota");
+	final String tenant;
+	private final int minSize;
+	private final int maxSize;
+	private final Semaphore permits;
+	private final AtomicInteger usingSize = new AtomicInteger();
+	private final StripedCounter borrowCounter = new StripedCounter();
+	private final StripedCounter timeoutCounter = new StripedCounter();
+	private final AtomicInteger referSize = new AtomicInteger();//from getting quota to permit released,-1 when evicted
+	final boolean evictable;
+
+	TenantQuota(String tenant, int minSize, int maxSize, boolean fair, boolean evictable) {
+		this.tenant = tenant;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.permits = new Semaphore(maxSize, fair);
+		this.evictable = evictable;
+	}
+
+	//called by table on getting quota
+	boolean refer() {
+		for (; ; ) {
+			int size = referSize.get();
+			if (size < 0) return false;//evicted
+			if (referSize.compareAndSet(size, size + 1)) return true;
+		}
+	}
+	//called by table on eviction check
+	boolean evict() {
+		return referSize.compareAndSet(0, -1);
+	}
+
+	/**
+	 * acquire a permit before borrow
+	 *
+	 * @return false,if waiting timeout
+	 */
+	boolean acquire(long nanos) throws InterruptedException {
+		boolean acquired = false;
+		try {
+			acquired = permits.tryAcquire(nanos, TimeUnit.NANOSECONDS);
+			if (!acquired) timeoutCounter.increment();
+			return acquired;
+		} finally {
+			if (!acquired) referSize.decrementAndGet();
+		}
+	}
+	//called when borrow failed after permit acquired
+	void release() {
+		permits.release();
+		referSize.decrementAndGet();
+	}
+	//permit is held by borrowed connection until it returned
+	void bind(PooledConnection pConn) {
+		usingSize.incrementAndGet();
+		borrowCounter.increment();
+		pConn.tenantQuota = this;
+	}
+	//called on connection returned or removed in using
+	static void release(PooledConnection pConn) {
+		TenantQuota quota = pConn.tenantQuota;
+		if (quota != null && QuotaUpdater.compareAndSet(pConn, quota, null)) {
+			quota.usingSize.decrementAndGet();
+			quota.release();
+		}
+	}
+	//waiters of tenant under min size are served first
+	boolean isUnderMinSize() {
+		return usingSize.get() < minSize;
+	}
+	public String toString() {
+		return tenant + "," + usingSize.get() + "," + minSize + "," + maxSize + "," + borrowCounter.sum() + "," + timeoutCounter.sum();
+	}
+}
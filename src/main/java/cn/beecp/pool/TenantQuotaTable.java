@@ -0,0 +1,112 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connection quotas of tenants in one pool,configured as 'tenant=min-max' list split by ',',
+ * such as 'a=2-6,b=1-4,*=0-4',quota of '*' is applied to other tenants(0 to max active
+ * if not configured),shared by partitions of a pool.
+ *
+ * Max size of a tenant is hard limit of its borrowed connections,min size is guaranteed
+ * but not reserved,idle connections are lent to any tenant(work conserving),a returned
+ * connection is transferred to waiters of tenants under min size first,so lent ones are
+ * reclaimed on return.
+ *
+ * Quotas of not configured tenants are created on demand and evicted by idle check
+ * when no permit held and no borrower waiting for them,so map not grows with tenants.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class TenantQuotaTable {
+	private static final String DefaultTenant = "*";
+	private final int defaultMinSize;
+	private final int defaultMaxSize;
+	private final boolean fair;
+	private final ConcurrentHashMap<String, TenantQuota> quotaMap = new ConcurrentHashMap<String, TenantQuota>();
+
+	TenantQuotaTable(String quotas, int maxActive, boolean fair) {
+		this.fair = fair;
+		Map<String, int[]> sizeMap = new HashMap<String, int[]>();
+		int minSum = 0;
+		for (String quota : quotas.split(",")) {
+			quota = quota.trim();
+			if (quota.length() == 0) continue;
+			int index = quota.indexOf('=');
+			int rangeIndex = quota.indexOf('-', index + 1);
+			if (index <= 0 || rangeIndex < 0)
+				throw new IllegalArgumentException("Tenant quota must be 'tenant=min-max':" + quota);
+
+			String tenant = quota.substring(0, index).trim();
+			int minSize, maxSize;
+			try {
+				minSize = Integer.parseInt(quota.substring(index + 1, rangeIndex).trim());
+				maxSize = Integer.parseInt(quota.substring(rangeIndex + 1).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Tenant quota must be 'tenant=min-max':" + quota);
+			}
+			if (minSize < 0 || maxSize <= 0 || minSize > maxSize || maxSize > maxActive)
+				throw new IllegalArgumentException("Tenant quota must be 0<=min<=max<=maxActive and max>0:" + quota);
+			if (!DefaultTenant.equals(tenant)) minSum += minSize;
+			sizeMap.put(tenant, new int[]{minSize, maxSize});
+		}
+		if (minSum > maxActive)
+			throw new IllegalArgumentException("Sum of tenant min sizes must be less than pool max size");
+
+		int[] defaultSizes = sizeMap.remove(DefaultTenant);
+		this.defaultMinSize = defaultSizes != null ? defaultSizes[0] : 0;
+		this.defaultMaxSize = defaultSizes != null ? defaultSizes[1] : maxActive;
+		for (Map.Entry<String, int[]> entry : sizeMap.entrySet())
+			quotaMap.put(entry.getKey(), new TenantQuota(entry.getKey(), entry.getValue()[0], entry.getValue()[1], fair, false));
+	}
+
+	//quota of tenant,created by default sizes if not configured,caller must acquire permit of it
+	TenantQuota getQuota(String tenant) {
+		for (; ; ) {
+			TenantQuota quota = quotaMap.get(tenant);
+			if (quota == null) {
+				TenantQuota newQuota = new TenantQuota(tenant, defaultMinSize, defaultMaxSize, fair, true);
+				quota = quotaMap.putIfAbsent(tenant, newQuota);
+				if (quota == null) quota = newQuota;
+			}
+			if (quota.refer()) return quota;
+			quotaMap.remove(tenant, quota);//evicted
+		}
+	}
+	//remove quotas of not configured tenants,which not referred
+	void evictIdleQuotas() {
+		for (TenantQuota quota : quotaMap.values()) {
+			if (quota.evictable && quota.evict())
+				quotaMap.remove(quota.tenant, quota);
+		}
+	}
+
+	/**
+	 * usage of tenants,one line for a tenant:
+	 * tenant,using size,min size,max size,borrow count,timeout count
+	 */
+	String[] getUsages() {
+		ArrayList<String> lineList = new ArrayList<String>(quotaMap.size());
+		for (TenantQuota quota : quotaMap.values())
+			lineList.add(quota.toString());
+		return lineList.toArray(new String[lineList.size()]);
+	}
+}
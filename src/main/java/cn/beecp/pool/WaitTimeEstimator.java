@@ -0,0 +1,79 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Estimate wait time of a new waiter by Little's law:waiter count divided by
+ * release rate of connections,release rate is sampled when pool is full(called
+ * on waiting path only),a moving average of release interval is kept.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class WaitTimeEstimator {
+	private static final long SampleNanos = MILLISECONDS.toNanos(100);
+	private static final long StaleNanos = SampleNanos * 10;//samples after idle period are skipped
+	private static final AtomicLongFieldUpdater<WaitTimeEstimator> SampleTimeUpdater = AtomicLongFieldUpdater.newUpdater(WaitTimeEstimator.class, "sampleTime");
+	private final StripedCounter releaseCounter = new StripedCounter();
+	private final StripedCounter waiterCounter = new StripedCounter();
+	private volatile long sampleTime = nanoTime();
+	private volatile long sampleReleaseCount;
+	private volatile long releaseInterval;//nanoseconds,0:not sampled
+
+	//called on connection returned
+	void onRelease() {
+		releaseCounter.increment();
+	}
+	void onWaitBegin() {
+		waiterCounter.increment();
+	}
+	void onWaitEnd() {
+		waiterCounter.decrement();
+	}
+
+	/**
+	 * @param otherWaiterCount waiters not counted by this estimator(such as waiting for permit)
+	 * @return estimated wait nanoseconds of a new waiter,0 if not sampled
+	 */
+	long estimate(int otherWaiterCount) {
+		sample();
+		long interval = releaseInterval;
+		return interval == 0 ? 0 : (waiterCounter.sum() + otherWaiterCount + 1) * interval;
+	}
+	private void sample() {
+		long time = sampleTime;
+		long now = nanoTime();
+		long elapsed = now - time;
+		if (elapsed < SampleNanos || !SampleTimeUpdater.compareAndSet(this, time, now)) return;
+
+		long count = releaseCounter.sum();
+		long releases = count - sampleReleaseCount;
+		sampleReleaseCount = count;
+		if (elapsed > StaleNanos) {//not a busy period,interval of last overload not applied,begin a new sample
+			releaseInterval = 0;
+			return;
+		}
+
+		long interval = releases == 0 ? elapsed : elapsed / releases;
+		long oldInterval = releaseInterval;
+		releaseInterval = oldInterval == 0 ? interval : (oldInterval * 3 + interval) >> 2;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.Semaphore;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class AdaptiveConcurrencyTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setMaxActive(4);
+		config.setConcurrentSize(2);
+		config.setAdaptiveConcurrency(true);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testConcurrencyLimit() throws InterruptedException, Exception {
+		for (int i = 0; i < 20; i++) {//permit is released on return
+			Connection con = null;
+			Statement st = null;
+			ResultSet rs = null;
+			try {
+				con = ds.getConnection();
+				st = con.createStatement();
+				rs = st.executeQuery("select 1");
+			} finally {
+				if (rs != null)
+					BeecpUtil.oclose(rs);
+				if (st != null)
+					BeecpUtil.oclose(st);
+				if (con != null)
+					BeecpUtil.oclose(con);
+			}
+		}
+
+		ConnectionPoolJMXBean monitor = ds.getPoolMonitor();
+		int limit = monitor.getConcurrencyLimit();
+		if (limit < 1 || limit > 4)
+			TestUtil.assertError("concurrency limit expected:%s,current is:%s", "1-4", limit);
+		if (monitor.getConnUsingSize() != 0)
+			TestUtil.assertError("using size expected:%s,current is:%s", 0, monitor.getConnUsingSize());
+	}
+
+	public void testLimitIncrease() throws InterruptedException, Exception {
+		Semaphore limiter = createLimiter(2, 8);
+		for (int i = 0; i < 5; i++) {//rtt not grown(no queue in database),limit is increased when reached
+			limiter.tryAcquire(limiter.availablePermits());
+			driveWindow(limiter, 1000000L);
+		}
+		int limit = getLimit(limiter);
+		if (limit <= 2)
+			TestUtil.assertError("concurrency limit expected:%s,current is:%s", ">2", limit);
+	}
+
+	public void testLimitDecrease() throws InterruptedException, Exception {
+		Semaphore limiter = createLimiter(4, 8);
+		driveWindow(limiter, 1000000L);//min rtt
+		for (int i = 0; i < 3; i++)//rtt grown(queued in database)
+			driveWindow(limiter, 100000000L);
+		int limit = getLimit(limiter);
+		if (limit >= 4)
+			TestUtil.assertError("concurrency limit expected:%s,current is:%s", "<4", limit);
+		if (limiter.availablePermits() != limit)
+			TestUtil.assertError("available permits expected:%s,current is:%s", limit, limiter.availablePermits());
+	}
+
+	private static Semaphore createLimiter(int initLimit, int maxLimit) throws Exception {
+		Class<?> limiterClass = Class.forName("cn.beecp.pool.ConcurrencyLimiter");
+		Constructor<?> constructor = limiterClass.getDeclaredConstructor(int.class, int.class, boolean.class);
+		constructor.setAccessible(true);
+		return (Semaphore) constructor.newInstance(initLimit, maxLimit, false);
+	}
+
+	//samples of one window(100ms),limit is updated by last one
+	private static void driveWindow(Semaphore limiter, long rtt) throws Exception {
+		Method method = limiter.getClass().getDeclaredMethod("onRtt", long.class);
+		method.setAccessible(true);
+		method.invoke(limiter, rtt);
+		Thread.sleep(110);
+		method.invoke(limiter, rtt);
+	}
+
+	private static int getLimit(Semaphore limiter) throws Exception {
+		Method method = limiter.getClass().getDeclaredMethod("getLimit");
+		method.setAccessible(true);
+		return (Integer) method.invoke(limiter);
+	}
+
+	public void testTrustedModeRejected() throws InterruptedException, Exception {
+		try {
+			BeeDataSourceConfig config = new BeeDataSourceConfig();
+			config.setJdbcUrl(Config.JDBC_URL);
+			config.setDriverClassName(Config.JDBC_DRIVER);
+			config.setUsername(Config.JDBC_USER);
+			config.setPassword(Config.JDBC_PASSWORD);
+			config.setAdaptiveConcurrency(true);
+			config.setTrustedMode(true);//driver statements not sample round trip time
+			new BeeDataSource(config);
+			TestUtil.assertError("A initializerError need be thrown,but not");
+		} catch (ExceptionInInitializerError e) {
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ColumnarBatch;
+import cn.beecp.pool.ColumnarBatchReader;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class ColumnarBatchReaderTest extends TestCase {
+	private BeeDataSource ds;
+	private ExecutorService executor;
+	private String sql = "select 1,2.5,'a' from dual union all select 2,3.5,null from dual union all select 3,4.5,'ccc' from dual";
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		ds = new BeeDataSource(config);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	public void tearDown() throws Throwable {
+		executor.shutdown();
+		ds.close();
+	}
+
+	public void testRead() throws InterruptedException, Exception {
+		read(false);
+	}
+
+	public void testPrefetchRead() throws InterruptedException, Exception {
+		read(true);
+	}
+
+	private void read(boolean prefetch) throws Exception {
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			PreparedStatement ps = con.prepareStatement(sql);
+			ResultSet rs = ps.executeQuery();
+			ColumnarBatchReader reader = new ColumnarBatchReader(rs, 2, prefetch ? executor : null);
+			try {
+				ColumnarBatch batch = reader.next();
+				if (batch == null || batch.getRowCount() != 2)
+					TestUtil.assertError("first batch row size expect value:2");
+				if (batch.getColumnType(1) != ColumnarBatch.TYPE_LONG || batch.getColumnType(3) != ColumnarBatch.TYPE_BYTES)
+					TestUtil.assertError("column type of batch is wrong");
+				if (batch.getLong(1, 1) != 2 || batch.getBigDecimal(2, 0).compareTo(new BigDecimal("2.5")) != 0 || !"a".equals(batch.getString(3, 0)))
+					TestUtil.assertError("value of first batch is wrong");
+				if (!batch.isNull(3, 1))
+					TestUtil.assertError("null value of first batch is wrong");
+
+				batch = reader.next();
+				if (batch == null || batch.getRowCount() != 1)
+					TestUtil.assertError("second batch row size expect value:1");
+				if (batch.getLong(1, 0) != 3 || !"ccc".equals(batch.getString(3, 0)))
+					TestUtil.assertError("value of second batch is wrong");
+				if (reader.next() != null)
+					TestUtil.assertError("reader not end after last row");
+			} finally {
+				reader.close();
+			}
+			ps.close();
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testDecimal() throws InterruptedException, Exception {
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			PreparedStatement ps = con.prepareStatement("select cast(12.34 as decimal(10,2)),cast(12345678901234567890.12 as decimal(30,2)) from dual");
+			ColumnarBatchReader reader = new ColumnarBatchReader(ps.executeQuery(), 10);
+			try {
+				ColumnarBatch batch = reader.next();
+				if (batch.getColumnType(1) != ColumnarBatch.TYPE_DECIMAL || batch.getScale(1) != 2)
+					TestUtil.assertError("decimal column type expected:%s,current is:%s", ColumnarBatch.TYPE_DECIMAL, batch.getColumnType(1));
+				if (batch.getLong(1, 0) != 1234 || !new BigDecimal("12.34").equals(batch.getBigDecimal(1, 0)))
+					TestUtil.assertError("decimal value expected:%s,current is:%s", "12.34", batch.getBigDecimal(1, 0));
+				if (batch.getColumnType(2) != ColumnarBatch.TYPE_BYTES)//precision over 18,not narrowed to double
+					TestUtil.assertError("large decimal column type expected:%s,current is:%s", ColumnarBatch.TYPE_BYTES, batch.getColumnType(2));
+				if (!"12345678901234567890.12".equals(batch.getString(2, 0)))
+					TestUtil.assertError("large decimal value expected:%s,current is:%s", "12345678901234567890.12", batch.getString(2, 0));
+			} finally {
+				reader.close();
+			}
+			ps.close();
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class ConnectionAffinityTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setInitialSize(2);
+		config.setMaxActive(2);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testAffinityKey() throws InterruptedException, Exception {
+		Connection con = null;
+		try {
+			con = ds.getConnection("session1");
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+
+		final Exception[] failures = new Exception[1];
+		Thread thread = new Thread() {//borrow in another thread,thread affinity not help
+			public void run() {
+				Connection con = null;
+				try {
+					con = ds.getConnection("session1");
+				} catch (Exception e) {
+					failures[0] = e;
+				} finally {
+					if (con != null)
+						BeecpUtil.oclose(con);
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		if (failures[0] != null)
+			throw failures[0];
+
+		ConnectionPoolJMXBean monitor = ds.getPoolMonitor();
+		if (monitor.getAffinityHitCount() != 1)
+			TestUtil.assertError("affinity hit count expected:%s,current is:%s", 1, monitor.getAffinityHitCount());
+		if (monitor.getAffinityMissCount() != 1)
+			TestUtil.assertError("affinity miss count expected:%s,current is:%s", 1, monitor.getAffinityMissCount());
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPool;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class ConnectionTestPolicyTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setTestOnBorrow(true);
+		config.setConnectionTestInterval(1);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testOnBorrow() throws InterruptedException, Exception {
+		Connection con = null;
+		for (int i = 0; i < 3; i++) {//test statement reused on later borrows
+			Thread.sleep(10);
+			try {
+				con = ds.getConnection();
+				if (con.isClosed())
+					TestUtil.assertError("connection closed expected:%s,current is:%s", false, true);
+				if (!con.getAutoCommit())
+					TestUtil.assertError("autoCommit after test expected:%s,current is:%s", true, false);
+			} finally {
+				if (con != null)
+					BeecpUtil.oclose(con);
+			}
+		}
+	}
+
+	public void testPolicySelected() throws Exception {
+		ConnectionPool pool = TestUtil.getPool(ds);
+		Field validField = pool.getClass().getDeclaredField("supportIsValid");
+		validField.setAccessible(true);
+		Field policyField = pool.getClass().getDeclaredField("testPolicy");
+		policyField.setAccessible(true);
+
+		String expect = ((Boolean) validField.get(pool)).booleanValue() ? "ConnValidTestPolicy" : null;
+		String current = policyField.get(pool).getClass().getSimpleName();
+		if (expect != null && !expect.equals(current))//driver isValid preferred,ping and plain query only as fallback
+			TestUtil.assertError("test policy expected:%s,current is:%s", expect, current);
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class DeadlineBorrowTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testDeadlineBorrow() throws InterruptedException, Exception {
+		try {
+			ds.getConnectionByDeadline(System.nanoTime() - 1);
+			TestUtil.assertError("borrow after deadline expected:%s,current is:%s", "timeout", "connection");
+		} catch (SQLTimeoutException e) {
+		}
+
+		Connection con = null;
+		Statement st = null;
+		ResultSet rs = null;
+		try {
+			con = ds.getConnectionByDeadline(System.nanoTime() + 500000000L);
+			st = con.createStatement();
+			rs = st.executeQuery("select 1");
+			BeecpUtil.oclose(rs);
+			rs = null;
+
+			Thread.sleep(600);
+			try {//deadline reached,fail before execution
+				rs = st.executeQuery("select 1");
+				TestUtil.assertError("execution after deadline expected:%s,current is:%s", "timeout", "executed");
+			} catch (SQLTimeoutException e) {
+			}
+		} finally {
+			if (rs != null)
+				BeecpUtil.oclose(rs);
+			if (st != null)
+				BeecpUtil.oclose(st);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+
+		try {//deadline cleared on return
+			con = ds.getConnection();
+			st = con.createStatement();
+			rs = st.executeQuery("select 1");
+		} finally {
+			if (rs != null)
+				BeecpUtil.oclose(rs);
+			if (st != null)
+				BeecpUtil.oclose(st);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class DeadlineFirstTransferTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setMaxActive(1);
+		config.setDeadlineFirstTransfer(true);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testEarliestDeadlineFirst() throws InterruptedException, Exception {
+		final List<String> borrowedList = new CopyOnWriteArrayList<String>();
+		Connection con = ds.getConnection();
+		long time = System.nanoTime();
+		BorrowThread lateThread = new BorrowThread("late", time + 5000000000L, borrowedList);
+		BorrowThread earlyThread = new BorrowThread("early", time + 4000000000L, borrowedList);
+		try {
+			lateThread.start();
+			Thread.sleep(200);//late one wait first
+			earlyThread.start();
+			Thread.sleep(200);
+		} finally {
+			BeecpUtil.oclose(con);
+		}
+		lateThread.join();
+		earlyThread.join();
+
+		if (borrowedList.size() != 2 || !"early".equals(borrowedList.get(0)))
+			TestUtil.assertError("borrowed order expected:%s,current is:%s", "[early, late]", borrowedList);
+	}
+
+	public void testResetNotifyWaiter() throws InterruptedException, Exception {
+		final List<String> borrowedList = new CopyOnWriteArrayList<String>();
+		Connection con = ds.getConnection();
+		BorrowThread waitThread = new BorrowThread("waiter", System.nanoTime() + 5000000000L, borrowedList);
+		long startTime = System.currentTimeMillis();
+		try {
+			waitThread.start();
+			Thread.sleep(200);
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			pool.reset(true);//waiter not hold semaphore permit
+		} finally {
+			BeecpUtil.oclose(con);
+		}
+		waitThread.join();
+
+		long waitTime = System.currentTimeMillis() - startTime;
+		if (!borrowedList.isEmpty() || waitThread.failure == null || waitTime >= 3000)
+			TestUtil.assertError("waiter expected:%s,current is:%s", "pool reset exception", waitThread.failure + " after " + waitTime + "ms");
+	}
+
+	class BorrowThread extends Thread {
+		private String name;
+		private long deadline;
+		private List<String> borrowedList;
+		private SQLException failure;
+
+		BorrowThread(String name, long deadline, List<String> borrowedList) {
+			this.name = name;
+			this.deadline = deadline;
+			this.borrowedList = borrowedList;
+		}
+		public void run() {
+			Connection con = null;
+			try {
+				con = ds.getConnectionByDeadline(deadline);
+				borrowedList.add(name);
+				Thread.sleep(100);
+			} catch (SQLException e) {
+				failure = e;
+			} catch (Exception e) {
+			} finally {
+				if (con != null)
+					BeecpUtil.oclose(con);
+			}
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.RequestRejectedException;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class LoadSheddingTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		ds = new BeeDataSource(createConfig(false));
+	}
+
+	private BeeDataSourceConfig createConfig(boolean fairMode) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setConcurrentSize(1);
+		config.setMaxWait(50);
+		config.setEnableLoadShedding(true);
+		config.setFairMode(fairMode);
+		return config;
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testRejectOnOverload() throws InterruptedException, Exception {
+		int rejectedCount = driveOverload(ds);
+		if (rejectedCount == 0)
+			TestUtil.assertError("rejected count expected:%s,current is:%s", ">0", rejectedCount);
+
+		Thread.sleep(1500);//idle period,interval of overload not applied to next burst
+		final Connection heldCon = ds.getConnection();
+		Thread releaser = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+				} finally {
+					BeecpUtil.oclose(heldCon);
+				}
+			}
+		};
+		releaser.start();
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+		} catch (RequestRejectedException e) {
+			TestUtil.assertError("borrow after idle period expected:%s,current is:%s", "waited", "rejected");
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+			releaser.join();
+		}
+	}
+
+	public void testIdleNotRejected() throws InterruptedException, Exception {
+		BeeDataSource fairDs = new BeeDataSource(createConfig(true));//fair mode not take idle one before check
+		Connection con = null;
+		try {
+			driveOverload(fairDs);
+			con = fairDs.getConnection();//interval of overload is still sampled,but connection is idle
+		} catch (RequestRejectedException e) {
+			TestUtil.assertError("borrow on idle connection expected:%s,current is:%s", "connection", "rejected");
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+			fairDs.close();
+		}
+	}
+
+	//two borrowers hold the connection 200ms each time,longer than max wait
+	private static int driveOverload(final BeeDataSource ds) throws InterruptedException, Exception {
+		final AtomicInteger rejectedCount = new AtomicInteger();
+		Thread holder = new Thread() {//connection is held 200ms by each borrower,longer than max wait
+			public void run() {
+				long endTime = System.currentTimeMillis() + 2000;
+				while (System.currentTimeMillis() < endTime) {
+					Connection con = null;
+					try {
+						con = ds.getConnection();
+						Thread.sleep(200);
+					} catch (RequestRejectedException e) {
+						rejectedCount.incrementAndGet();
+						try {
+							Thread.sleep(10);
+						} catch (InterruptedException ie) {
+						}
+					} catch (Exception e) {//timeout
+					} finally {
+						if (con != null)
+							BeecpUtil.oclose(con);
+					}
+				}
+			}
+		};
+		holder.start();
+
+		while (holder.isAlive()) {
+			Connection con = null;
+			try {
+				con = ds.getConnection();
+				Thread.sleep(200);
+			} catch (RequestRejectedException e) {
+				rejectedCount.incrementAndGet();
+				Thread.sleep(10);
+			} catch (SQLTimeoutException e) {
+			} finally {
+				if (con != null)
+					BeecpUtil.oclose(con);
+			}
+		}
+		return rejectedCount.get();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class MultiConnectionGetTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setMaxActive(4);
+		config.setMaxWait(1000);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testAllOrNone() throws InterruptedException, Exception {
+		Connection[] cons = ds.getConnections(3);
+		try {
+			try {
+				Connection[] others = ds.getConnections(2);
+				closeAll(others);
+				TestUtil.assertError("Multiple connections get test failed");
+			} catch (SQLTimeoutException e) {
+			}
+
+			ConnectionPoolJMXBean monitor = ds.getPoolMonitor();
+			if (monitor.getConnUsingSize() != 3)//collected one returned on timeout
+				TestUtil.assertError("using size expected:%s,current is:%s", 3, monitor.getConnUsingSize());
+		} finally {
+			closeAll(cons);
+		}
+
+		cons = ds.getConnections(4);
+		closeAll(cons);
+		if (cons.length != 4)
+			TestUtil.assertError("connection count expected:%s,current is:%s", 4, cons.length);
+	}
+
+	public void testConcurrencyLimited() throws InterruptedException, Exception {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setMaxActive(4);
+		config.setConcurrentSize(2);
+		config.setAdaptiveConcurrency(true);
+		config.setMaxWait(200);
+		BeeDataSource limitedDs = new BeeDataSource(config);
+		Connection[] cons = null;
+		try {
+			cons = limitedDs.getConnections(2);
+			Connection con = null;
+			try {//permits of limiter held by collected connections
+				con = limitedDs.getConnection();
+				TestUtil.assertError("borrow over concurrency limit expected:%s,current is:%s", "timeout", "connection");
+			} catch (SQLTimeoutException e) {
+			} finally {
+				if (con != null)
+					BeecpUtil.oclose(con);
+			}
+			closeAll(cons);
+			cons = null;
+
+			cons = limitedDs.getConnections(2);//permits released on return
+		} finally {
+			if (cons != null)
+				closeAll(cons);
+			limitedDs.close();
+		}
+	}
+
+	public void testInvalidCount() throws InterruptedException, Exception {
+		try {
+			Connection[] cons = ds.getConnections(5);
+			closeAll(cons);
+			TestUtil.assertError("Invalid connection count test failed");
+		} catch (SQLTimeoutException e) {
+			TestUtil.assertError("Invalid connection count test failed");
+		} catch (SQLException e) {
+		}
+	}
+
+	private static void closeAll(Connection[] cons) {
+		for (Connection con : cons)
+			if (con != null)
+				BeecpUtil.oclose(con);
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class PartitionedPoolTest extends TestCase {
+	private BeeDataSource ds;
+	private int maxSize = 8;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setPoolImplementClassName("cn.beecp.pool.PartitionedConnectionPool");
+		config.setPartitionSize(4);
+		config.setMaxActive(maxSize);
+		config.setConcurrentSize(maxSize);
+		config.setInitialSize(1);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void test() throws InterruptedException, Exception {
+		ConnectionPoolJMXBean monitor = ds.getPoolMonitor();
+		if (monitor.getConnTotalSize() != 1)
+			TestUtil.assertError("Total connections expect value:%s,current value:%s", 1, monitor.getConnTotalSize());
+
+		Connection[] cons = new Connection[maxSize];
+		try {
+			for (int i = 0; i < maxSize; i++)
+				cons[i] = ds.getConnection();
+			if (monitor.getConnUsingSize() != maxSize)
+				TestUtil.assertError("Using connections expect value:%s,current value:%s", maxSize, monitor.getConnUsingSize());
+		} finally {
+			for (Connection con : cons)
+				BeecpUtil.oclose(con);
+		}
+		if (monitor.getConnIdleSize() != maxSize)
+			TestUtil.assertError("Idle connections expect value:%s,current value:%s", maxSize, monitor.getConnIdleSize());
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class PoolMetricsTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setEnableMetrics(true);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void test() throws InterruptedException, Exception {
+		ConnectionPoolJMXBean monitor = ds.getPoolMonitor();
+		for (int i = 0; i < 2; i++) {
+			Connection con = null;
+			PreparedStatement ps = null;
+			try {
+				con = ds.getConnection();
+				ps = con.prepareStatement("select * from " + Config.TEST_TABLE);
+			} finally {
+				if (ps != null)
+					BeecpUtil.oclose(ps);
+				BeecpUtil.oclose(con);
+			}
+		}
+
+		if (monitor.getBorrowCount() != 2)
+			TestUtil.assertError("Borrow count expect value:%s,current value:%s", 2, monitor.getBorrowCount());
+		if (monitor.getBorrowTimeTotal() <= 0)
+			TestUtil.assertError("Borrow time not collected");
+		if (monitor.getCreateCount() != 1)
+			TestUtil.assertError("Create count expect value:%s,current value:%s", 1, monitor.getCreateCount());
+		if (monitor.getStatementCacheMissCount() != 1 || monitor.getStatementCacheHitCount() != 1)
+			TestUtil.assertError("Statement cache hit expect value:%s,current value:%s", 1, monitor.getStatementCacheHitCount());
+	}
+}
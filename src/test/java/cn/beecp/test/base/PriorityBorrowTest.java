@@ -0,0 +1,106 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class PriorityBorrowTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setMaxActive(1);
+		config.setFairMode(true);
+		config.setPriorityBorrow(true);
+		config.setPriorityAgingTime(0);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testHighPriorityFirst() throws InterruptedException, Exception {
+		final List<Integer> borrowedList = new CopyOnWriteArrayList<Integer>();
+		Connection con = ds.getConnection();
+		BorrowThread lowThread = new BorrowThread(1, borrowedList);
+		BorrowThread highThread = new BorrowThread(9, borrowedList);
+		try {
+			lowThread.start();
+			Thread.sleep(200);//low one wait first
+			highThread.start();
+			Thread.sleep(200);
+		} finally {
+			BeecpUtil.oclose(con);
+		}
+		lowThread.join();
+		highThread.join();
+
+		if (borrowedList.size() != 2 || borrowedList.get(0) != 9)
+			TestUtil.assertError("borrowed order expected:%s,current is:%s", "[9, 1]", borrowedList);
+		long[] counts = ds.getPoolMonitor().getPriorityBorrowCounts();
+		if (counts[9] != 1 || counts[1] != 1)
+			TestUtil.assertError("priority borrow count expected:%s,current is:%s", 1, counts[9]);
+	}
+
+	public void testInvalidPriority() throws InterruptedException, Exception {
+		Connection con = null;
+		try {
+			con = ds.getConnectionByPriority(10);
+			TestUtil.assertError("Invalid priority test failed");
+		} catch (SQLException e) {
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	class BorrowThread extends Thread {
+		private int priority;
+		private List<Integer> borrowedList;
+
+		BorrowThread(int priority, List<Integer> borrowedList) {
+			this.priority = priority;
+			this.borrowedList = borrowedList;
+		}
+		public void run() {
+			Connection con = null;
+			try {
+				con = ds.getConnectionByPriority(priority);
+				borrowedList.add(priority);
+				Thread.sleep(100);
+			} catch (Exception e) {
+			} finally {
+				if (con != null)
+					BeecpUtil.oclose(con);
+			}
+		}
+	}
+}
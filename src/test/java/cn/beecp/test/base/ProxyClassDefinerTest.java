@@ -0,0 +1,127 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+public class ProxyClassDefinerTest extends TestCase {
+	private static final String DefinerClassName = "cn.beecp.pool.ProxyClassDefiner";
+	private File cacheFolder;
+	private URL classesUrl;
+	private List<String> proxyClassNames;
+
+	public void setUp() throws Throwable {
+		cacheFolder = new File(System.getProperty("java.io.tmpdir"), "beecp-proxy-" + System.nanoTime());
+		Class<?> definerClass = Class.forName(DefinerClassName);
+		classesUrl = definerClass.getProtectionDomain().getCodeSource().getLocation();
+		Field field = definerClass.getDeclaredField("ProxyClassNames");
+		field.setAccessible(true);
+		proxyClassNames = Arrays.asList((String[]) field.get(null));
+	}
+
+	public void tearDown() throws Throwable {
+		delete(cacheFolder);
+	}
+
+	public void testGeneratedAndCached() throws Exception {
+		Object factory = getFactory(new ProxyHiddenClassLoader(false));//generated and cached
+		File[] keyFolders = cacheFolder.listFiles();
+		if (keyFolders == null || keyFolders.length != 1 || !new File(keyFolders[0], "checksum").isFile())
+			TestUtil.assertError("cached proxy classes expected:%s,current is:%s", "checksum", keyFolders == null ? null : Arrays.toString(keyFolders));
+		if (!keyFolders[0].getName().startsWith("java" + System.getProperty("java.specification.version") + "-"))
+			TestUtil.assertError("cache key expected:%s,current is:%s", "java version prefix", keyFolders[0].getName());
+		if (factory.getClass().getClassLoader() == ProxyClassDefinerTest.class.getClassLoader())
+			TestUtil.assertError("factory class loader expected:%s,current is:%s", "hidden loader", "test loader");
+
+		factory = getFactory(new ProxyHiddenClassLoader(true));//javassist not found,only read from cache
+		if (!factory.getClass().getName().equals("cn.beecp.pool.ProxyConnectionFactoryImpl"))
+			TestUtil.assertError("cached factory expected:%s,current is:%s", "ProxyConnectionFactoryImpl", factory.getClass().getName());
+	}
+
+	public void testCorruptCache() throws Exception {
+		getFactory(new ProxyHiddenClassLoader(false));
+		File keyFolder = cacheFolder.listFiles()[0];
+		File classFile = new File(keyFolder, proxyClassNames.get(0).replace('.', File.separatorChar) + ".class");
+		FileOutputStream out = new FileOutputStream(classFile);
+		try {
+			out.write(new byte[]{1, 2, 3});
+		} finally {
+			out.close();
+		}
+
+		try {//corrupt one is not defined,but javassist not found to generate again
+			getFactory(new ProxyHiddenClassLoader(true));
+			TestUtil.assertError("factory from corrupt cache expected:%s,current is:%s", "SQLException", "factory");
+		} catch (java.sql.SQLException e) {
+		}
+
+		getFactory(new ProxyHiddenClassLoader(false));//generated again and cache rewritten
+		if (classFile.length() <= 3)
+			TestUtil.assertError("rewritten class size expected:%s,current is:%s", ">3", classFile.length());
+		getFactory(new ProxyHiddenClassLoader(true));
+	}
+
+	private Object getFactory(ClassLoader loader) throws Exception {
+		Method method = loader.loadClass(DefinerClassName).getDeclaredMethod("getProxyConnectionFactory", String.class);
+		method.setAccessible(true);
+		try {
+			return method.invoke(null, cacheFolder.getPath());
+		} catch (InvocationTargetException e) {
+			if (e.getTargetException() instanceof Exception) throw (Exception) e.getTargetException();
+			throw e;
+		}
+	}
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files)
+				delete(child);
+		}
+		file.delete();
+	}
+
+	//load pool classes by self without build time proxy classes,javassist may be hidden also
+	private final class ProxyHiddenClassLoader extends URLClassLoader {
+		private final boolean javassistHidden;
+
+		ProxyHiddenClassLoader(boolean javassistHidden) {
+			super(new URL[]{classesUrl}, ProxyClassDefinerTest.class.getClassLoader());
+			this.javassistHidden = javassistHidden;
+		}
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (javassistHidden && name.startsWith("javassist.")) throw new ClassNotFoundException(name);
+			if (!name.startsWith("cn.beecp.")) return super.loadClass(name, resolve);
+			Class<?> loadedClass = findLoadedClass(name);
+			if (loadedClass == null) {
+				if (proxyClassNames.contains(name)) throw new ClassNotFoundException(name);
+				loadedClass = findClass(name);
+			}
+			if (resolve) resolveClass(loadedClass);
+			return loadedClass;
+		}
+	}
+}
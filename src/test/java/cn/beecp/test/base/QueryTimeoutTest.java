@@ -0,0 +1,94 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class QueryTimeoutTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setDefaultQueryTimeout(1);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testQueryTimeout() throws InterruptedException, Exception {
+		Connection con = null;
+		Statement st = null;
+		ResultSet rs = null;
+		try {
+			con = ds.getConnection();
+			st = con.createStatement();
+			if (st.getQueryTimeout() != 1)
+				TestUtil.assertError("queryTimeout expected:%s,current is:%s", 1, st.getQueryTimeout());
+
+			long startTime = System.currentTimeMillis();
+			try {//cancelled by pool timer
+				rs = st.executeQuery("select sleep(5)");
+			} catch (SQLException e) {
+			}
+			long time = System.currentTimeMillis() - startTime;
+			if (time >= 5000)
+				TestUtil.assertError("query cancelled time expected:%s,current is:%s", "<5000ms", time + "ms");
+
+			BeecpUtil.oclose(rs);
+			rs = st.executeQuery("select 1");
+			if (!rs.next() || rs.getInt(1) != 1)
+				TestUtil.assertError("query after timeout expected:%s,current is:%s", 1, "none");
+		} finally {
+			if (rs != null)
+				BeecpUtil.oclose(rs);
+			if (st != null)
+				BeecpUtil.oclose(st);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testTrustedModeRejected() throws InterruptedException, Exception {
+		try {
+			BeeDataSourceConfig config = new BeeDataSourceConfig();
+			config.setJdbcUrl(Config.JDBC_URL);
+			config.setDriverClassName(Config.JDBC_DRIVER);
+			config.setUsername(Config.JDBC_USER);
+			config.setPassword(Config.JDBC_PASSWORD);
+			config.setDefaultQueryTimeout(1);
+			config.setTrustedMode(true);//driver statements not managed by pool timer
+			new BeeDataSource(config);
+			TestUtil.assertError("A initializerError need be thrown,but not");
+		} catch (ExceptionInInitializerError e) {
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class ResultCacheTest extends TestCase {
+	private BeeDataSource ds;
+	private String poolName = "ResultCacheTest";
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setPoolName(poolName);
+		config.setEnableJMX(true);
+		config.setResultCacheSize(10);
+		config.setResultCacheTables(Config.TEST_TABLE);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	private String queryName(Connection con) throws Exception {
+		PreparedStatement ps = null;
+		try {
+			ps = con.prepareStatement("select TEST_NAME from " + Config.TEST_TABLE + " where TEST_ID=?");
+			ps.setString(1, poolName);
+			ResultSet rs = ps.executeQuery();
+			String name = rs.next() ? rs.getString("TEST_NAME") : null;
+			rs.close();
+			return name;
+		} finally {
+			if (ps != null)
+				BeecpUtil.oclose(ps);
+		}
+	}
+
+	public void testCacheInvalidation() throws InterruptedException, Exception {
+		Connection con = null;
+		PreparedStatement ps = null;
+		try {
+			con = ds.getConnection();
+			ps = con.prepareStatement("delete from " + Config.TEST_TABLE + " where TEST_ID=?");
+			ps.setString(1, poolName);
+			ps.executeUpdate();
+			ps.close();
+
+			ps = con.prepareStatement("insert into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?)");
+			ps.setString(1, poolName);
+			ps.setString(2, "name1");
+			ps.executeUpdate();
+			ps.close();
+
+			queryName(con);
+			String name = queryName(con);
+			if (!"name1".equals(name))
+				TestUtil.assertError("cached name expected:%s,current is:%s", "name1", name);
+
+			ps = con.prepareStatement("update " + Config.TEST_TABLE + " set TEST_NAME=? where TEST_ID=?");
+			ps.setString(1, "name2");
+			ps.setString(2, poolName);
+			ps.executeUpdate();
+			name = queryName(con);
+			if (!"name2".equals(name))
+				TestUtil.assertError("name after update expected:%s,current is:%s", "name2", name);
+
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName jmxRegName = new ObjectName("cn.beecp.pool.FastConnectionPool:type=BeeCP(" + poolName + ")");
+			long hitCount = (Long) mBeanServer.getAttribute(jmxRegName, "ResultCacheHitCount");
+			if (hitCount != 1)
+				TestUtil.assertError("result cache hit count expected:%s,current is:%s", 1, hitCount);
+		} finally {
+			if (ps != null)
+				BeecpUtil.oclose(ps);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testTrustedModeRejected() throws InterruptedException, Exception {
+		try {
+			BeeDataSourceConfig config = new BeeDataSourceConfig();
+			config.setJdbcUrl(Config.JDBC_URL);
+			config.setDriverClassName(Config.JDBC_DRIVER);
+			config.setUsername(Config.JDBC_USER);
+			config.setPassword(Config.JDBC_PASSWORD);
+			config.setResultCacheSize(10);
+			config.setResultCacheTables(Config.TEST_TABLE);
+			config.setTrustedMode(true);//writes on driver statements not tracked
+			new BeeDataSource(config);
+			TestUtil.assertError("A initializerError need be thrown,but not");
+		} catch (ExceptionInInitializerError e) {
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.ResultSetSpooler;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class ResultSetSpoolerTest extends TestCase {
+	private BeeDataSource ds;
+	private String sql = "select 1,2.5,'a' from dual union all select 2,3.5,null from dual union all select 3,4.5,'ccc' from dual";
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testSpool() throws InterruptedException, Exception {
+		ResultSet rs = null;
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			Statement st = con.createStatement();
+			rs = ResultSetSpooler.spool(st.executeQuery(sql));
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+
+		try {//connection returned to pool
+			if (!rs.next() || rs.getInt(1) != 1 || rs.getDouble(2) != 2.5 || !"a".equals(rs.getString(3)))
+				TestUtil.assertError("value of first row is wrong");
+			if (!rs.next() || rs.getString(3) != null || !rs.wasNull())
+				TestUtil.assertError("null value of second row is wrong");
+			if (!rs.last() || rs.getRow() != 3 || !"ccc".equals(rs.getString(3)))
+				TestUtil.assertError("value of last row is wrong");
+			if (!rs.first() || rs.getInt(1) != 1)
+				TestUtil.assertError("scroll to first row failed");
+			if (rs.getStatement() != null)
+				TestUtil.assertError("statement of spooled result set expect value:null");
+		} finally {
+			BeecpUtil.oclose(rs);
+		}
+	}
+
+	public void testChunkedSpool() throws InterruptedException, Exception {
+		StringBuilder chunkSql = new StringBuilder();
+		for (int i = 0; i < 50; i++) {//rows of 50 * 100 bytes,over some chunks of 1024 bytes
+			if (i > 0) chunkSql.append(" union all ");
+			chunkSql.append("select ").append(i).append(",repeat('x',").append(i == 25 ? 3000 : 100).append(") from dual");
+		}
+
+		ResultSet rs = null;
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			Statement st = con.createStatement();
+			rs = ResultSetSpooler.spool(st.executeQuery(chunkSql.toString()), 1024);
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+
+		try {
+			for (int i = 0; i < 50; i++) {
+				int length = i == 25 ? 3000 : 100;//row larger than chunk size
+				if (!rs.next() || rs.getInt(1) != i || rs.getString(2).length() != length)
+					TestUtil.assertError("value of row expected:%s,current is:%s", i, rs.getInt(1));
+			}
+			if (!rs.absolute(10) || rs.getInt(1) != 9)
+				TestUtil.assertError("value of row(10) expected:%s,current is:%s", 9, rs.getInt(1));
+		} finally {
+			BeecpUtil.oclose(rs);
+		}
+
+		try {
+			rs.getInt(1);
+			TestUtil.assertError("read after close expected:%s,current is:%s", "SQLException", "value");
+		} catch (SQLException e) {
+		}
+	}
+}
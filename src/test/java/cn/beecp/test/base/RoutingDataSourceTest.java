@@ -0,0 +1,99 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Collections;
+
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BeeRoutingDataSource;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class RoutingDataSourceTest extends TestCase {
+	private BeeRoutingDataSource ds;
+
+	public void setUp() throws Throwable {
+		ds = new BeeRoutingDataSource(createConfig("primary"), Collections.singletonList(createConfig("replica")));
+	}
+
+	private BeeDataSourceConfig createConfig(String name) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setPoolName(name);
+		return config;
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void test() throws InterruptedException, Exception {
+		Connection con = null;
+		Statement st = null;
+		try {
+			con = ds.getConnection();
+			con.setReadOnly(true);
+			if (ds.getPrimary().getPoolMonitor().getConnUsingSize() != 0)
+				TestUtil.assertError("Connection routed before used");
+			st = con.createStatement();
+			if (ds.getPrimary().getPoolMonitor().getConnUsingSize() != 0)
+				TestUtil.assertError("Read only connection not routed to replica");
+			if (!con.isReadOnly())
+				TestUtil.assertError("Read only not applied to replica connection");
+		} finally {
+			if (st != null)
+				BeecpUtil.oclose(st);
+			BeecpUtil.oclose(con);
+		}
+
+		try {
+			con = ds.getConnection();
+			st = con.createStatement();
+			if (ds.getPrimary().getPoolMonitor().getConnUsingSize() != 1)
+				TestUtil.assertError("Write connection not routed to primary");
+		} finally {
+			if (st != null)
+				BeecpUtil.oclose(st);
+			BeecpUtil.oclose(con);
+		}
+		if (!ds.isReplicaHealthy(0))
+			TestUtil.assertError("Replica expect healthy");
+	}
+
+	public void testSaturatedReplica() throws InterruptedException, Exception {
+		BeeDataSourceConfig replicaConfig = createConfig("busyReplica");
+		replicaConfig.setMaxActive(1);
+		replicaConfig.setMaxWait(100);
+		BeeRoutingDataSource routingDs = new BeeRoutingDataSource(createConfig("busyPrimary"), Collections.singletonList(replicaConfig), 200);
+		Connection con = null;
+		try {
+			con = routingDs.getReadConnection();
+			Thread.sleep(1000);//health check can't borrow from replica
+			if (!routingDs.isReplicaHealthy(0))
+				TestUtil.assertError("Busy replica expect healthy");
+		} finally {
+			BeecpUtil.oclose(con);
+			routingDs.close();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.ConnectionFactory;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class SessionStateCacheTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setCacheSessionState(true);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testSessionState() throws InterruptedException, Exception {
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			con.setAutoCommit(false);
+			con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+			con.setReadOnly(true);
+			if (con.getAutoCommit())
+				TestUtil.assertError("autoCommit expected:%s,current is:%s", false, true);
+			if (con.getTransactionIsolation() != Connection.TRANSACTION_SERIALIZABLE)
+				TestUtil.assertError("transactionIsolation expected:%s,current is:%s", Connection.TRANSACTION_SERIALIZABLE, con.getTransactionIsolation());
+			if (!con.isReadOnly())
+				TestUtil.assertError("readOnly expected:%s,current is:%s", true, false);
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+
+		try {//reset to default on return
+			con = ds.getConnection();
+			if (!con.getAutoCommit())
+				TestUtil.assertError("autoCommit after reset expected:%s,current is:%s", true, false);
+			if (con.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED)
+				TestUtil.assertError("transactionIsolation after reset expected:%s,current is:%s", Connection.TRANSACTION_READ_COMMITTED, con.getTransactionIsolation());
+			if (con.isReadOnly())
+				TestUtil.assertError("readOnly after reset expected:%s,current is:%s", false, true);
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testDriverNotCalled() throws InterruptedException, Exception {
+		CountingConnectionFactory factory = new CountingConnectionFactory();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setCacheSessionState(true);
+		BeeDataSource countDs = new BeeDataSource(config);
+		Connection con = null;
+		try {
+			con = countDs.getConnection();
+			factory.clearCounts();
+			boolean autoCommit = con.getAutoCommit();
+			int isolation = con.getTransactionIsolation();
+			boolean readOnly = con.isReadOnly();
+			for (int i = 0; i < 3; i++) {//repeated getters and no-op setters
+				con.getAutoCommit();
+				con.getTransactionIsolation();
+				con.isReadOnly();
+				con.setAutoCommit(autoCommit);
+				con.setTransactionIsolation(isolation);
+				con.setReadOnly(readOnly);
+			}
+			assertCount(factory, "getAutoCommit", 0);
+			assertCount(factory, "getTransactionIsolation", 1);
+			assertCount(factory, "isReadOnly", 1);
+			assertCount(factory, "setAutoCommit", 0);
+			assertCount(factory, "setTransactionIsolation", 0);
+			assertCount(factory, "setReadOnly", 0);
+
+			con.setReadOnly(!readOnly);//changed state reaches driver
+			assertCount(factory, "setReadOnly", 1);
+			if (con.isReadOnly() == readOnly)
+				TestUtil.assertError("readOnly expected:%s,current is:%s", !readOnly, readOnly);
+			assertCount(factory, "isReadOnly", 1);
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+			countDs.close();
+		}
+	}
+
+	private static void assertCount(CountingConnectionFactory factory, String methodName, int expect) {
+		int count = factory.getCount(methodName);
+		if (count != expect)
+			TestUtil.assertError("driver calls of " + methodName + " expected:%s,current is:%s", expect, count);
+	}
+
+	//count method calls on raw connections
+	static final class CountingConnectionFactory implements ConnectionFactory {
+		private final ConcurrentHashMap<String, AtomicInteger> countMap = new ConcurrentHashMap<String, AtomicInteger>();
+
+		public Connection create() throws SQLException {
+			try {
+				Class.forName(Config.JDBC_DRIVER);
+			} catch (ClassNotFoundException e) {
+				throw new SQLException(e);
+			}
+			final Connection rawCon = DriverManager.getConnection(Config.JDBC_URL, Config.JDBC_USER, Config.JDBC_PASSWORD);
+			return (Connection) Proxy.newProxyInstance(CountingConnectionFactory.class.getClassLoader(),
+					new Class<?>[]{Connection.class}, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							AtomicInteger counter = countMap.get(method.getName());
+							if (counter == null) {
+								countMap.putIfAbsent(method.getName(), new AtomicInteger());
+								counter = countMap.get(method.getName());
+							}
+							counter.incrementAndGet();
+							try {
+								return method.invoke(rawCon, args);
+							} catch (InvocationTargetException e) {
+								throw e.getTargetException();
+							}
+						}
+					});
+		}
+		int getCount(String methodName) {
+			AtomicInteger counter = countMap.get(methodName);
+			return counter == null ? 0 : counter.get();
+		}
+		void clearCounts() {
+			countMap.clear();
+		}
+	}
+}
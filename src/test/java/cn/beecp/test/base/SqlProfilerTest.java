@@ -0,0 +1,182 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class SqlProfilerTest extends TestCase {
+	private BeeDataSource ds;
+	private String poolName = "SqlProfilerTest";
+
+	public void setUp() throws Throwable {
+		ds = new BeeDataSource(createConfig(poolName, true));
+	}
+
+	private BeeDataSourceConfig createConfig(String poolName, boolean normalize) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setPoolName(poolName);
+		config.setEnableJMX(true);
+		config.setEnableSqlProfile(true);
+		config.setSqlProfileNormalize(normalize);
+		return config;
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testProfiledSql() throws InterruptedException, Exception {
+		Connection con = null;
+		Statement st = null;
+		PreparedStatement ps = null;
+		try {
+			con = ds.getConnection();
+			st = con.createStatement();
+			for (int i = 0; i < 3; i++) {
+				ResultSet rs = st.executeQuery("select * from " + Config.TEST_TABLE + " where TEST_ID='" + i + "'");
+				rs.close();
+			}
+
+			ps = con.prepareStatement("select * from " + Config.TEST_TABLE + " where TEST_ID=?");
+			for (int i = 0; i < 2; i++) {
+				ps.setString(1, String.valueOf(i));
+				ResultSet rs = ps.executeQuery();
+				rs.close();
+			}
+		} finally {
+			if (st != null)
+				BeecpUtil.oclose(st);
+			if (ps != null)
+				BeecpUtil.oclose(ps);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName jmxRegName = new ObjectName("cn.beecp.pool.SqlProfiler:type=BeeCP(" + poolName + ")-sql");
+		String[] topSql = (String[]) mBeanServer.getAttribute(jmxRegName, "TopSql");
+		if (topSql.length != 1)
+			TestUtil.assertError("profiled sql size expected:%s,current is:%s", 1, topSql.length);
+		if (!topSql[0].startsWith("count:5,"))
+			TestUtil.assertError("normalized sql count expected:%s,current is:%s", 5, topSql[0]);
+	}
+
+	public void testEvictWhenFull() throws InterruptedException, Exception {
+		String evictPoolName = "SqlProfilerEvictTest";
+		BeeDataSourceConfig config = createConfig(evictPoolName, false);
+		config.setSqlProfileSize(8);
+		BeeDataSource evictDs = new BeeDataSource(config);
+		Connection con = null;
+		Statement st = null;
+		String hotSql = "select * from " + Config.TEST_TABLE;
+		try {
+			con = evictDs.getConnection();
+			st = con.createStatement();
+			for (int i = 0; i < 200; i++)
+				st.executeQuery(hotSql).close();
+			for (int i = 0; i < 20; i++)//literal sql not normalized
+				st.executeQuery("select " + i).close();
+		} finally {
+			if (st != null)
+				BeecpUtil.oclose(st);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName jmxRegName = new ObjectName("cn.beecp.pool.SqlProfiler:type=BeeCP(" + evictPoolName + ")-sql");
+			int sqlSize = (Integer) mBeanServer.getAttribute(jmxRegName, "SqlSize");
+			if (sqlSize > 8)
+				TestUtil.assertError("profiled sql size expected:%s,current is:%s", "<=8", sqlSize);
+			String[] topSql = (String[]) mBeanServer.getAttribute(jmxRegName, "TopSql");
+			boolean hotSqlKept = false;//first execution of a literal sql may take more time than hot one
+			for (int i = 0; i < topSql.length; i++)
+				if (topSql[i].startsWith("count:200,") && topSql[i].endsWith("sql:" + hotSql))hotSqlKept = true;
+			if (!hotSqlKept)
+				TestUtil.assertError("profiled sql expected:%s,current is:%s", hotSql, Arrays.toString(topSql));
+		} finally {
+			evictDs.close();
+		}
+	}
+
+	public void testPartitionedProfile() throws InterruptedException, Exception {
+		String partitionedPoolName = poolName + "-partitioned";
+		BeeDataSourceConfig config = createConfig(partitionedPoolName, true);
+		config.setPoolImplementClassName("cn.beecp.pool.PartitionedConnectionPool");
+		config.setPartitionSize(2);
+		config.setMaxActive(2);
+		config.setConcurrentSize(2);
+		BeeDataSource partitionedDs = new BeeDataSource(config);
+
+		Connection[] cons = new Connection[2];
+		try {
+			for (int i = 0; i < cons.length; i++) {//one connection of each partition
+				cons[i] = partitionedDs.getConnection();
+				Statement st = cons[i].createStatement();
+				ResultSet rs = st.executeQuery("select * from " + Config.TEST_TABLE + " where TEST_ID='" + i + "'");
+				rs.close();
+				st.close();
+			}
+
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName jmxRegName = new ObjectName("cn.beecp.pool.SqlProfiler:type=BeeCP(" + partitionedPoolName + ")-sql");
+			String[] topSql = (String[]) mBeanServer.getAttribute(jmxRegName, "TopSql");
+			if (topSql.length != 1)
+				TestUtil.assertError("profiled sql size expected:%s,current is:%s", 1, topSql.length);
+			if (!topSql[0].startsWith("count:2,"))
+				TestUtil.assertError("sql count of partitions expected:%s,current is:%s", 2, topSql[0]);
+		} finally {
+			for (Connection con : cons)
+				BeecpUtil.oclose(con);
+			partitionedDs.close();
+		}
+	}
+
+	public void testTrustedModeRejected() throws InterruptedException, Exception {
+		try {
+			BeeDataSourceConfig config = new BeeDataSourceConfig();
+			config.setJdbcUrl(Config.JDBC_URL);
+			config.setDriverClassName(Config.JDBC_DRIVER);
+			config.setUsername(Config.JDBC_USER);
+			config.setPassword(Config.JDBC_PASSWORD);
+			config.setEnableSqlProfile(true);
+			config.setTrustedMode(true);//driver statements not profiled
+			new BeeDataSource(config);
+			TestUtil.assertError("A initializerError need be thrown,but not");
+		} catch (ExceptionInInitializerError e) {
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class TenantQuotaTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		ds = new BeeDataSource(createConfig());
+	}
+
+	private BeeDataSourceConfig createConfig() {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setMaxActive(4);
+		config.setMaxWait(1000);
+		config.setTenantQuotas("a=1-2,*=0-4");
+		return config;
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testTenantMaxSize() throws InterruptedException, Exception {
+		Connection con1 = null;
+		Connection con2 = null;
+		Connection con3 = null;
+		Connection con4 = null;
+		try {
+			con1 = ds.getConnectionByTenant("a");
+			con2 = ds.getConnectionByTenant("a");
+			try {
+				con3 = ds.getConnectionByTenant("a");
+				TestUtil.assertError("Tenant max size test failed");
+			} catch (SQLTimeoutException e) {
+			}
+
+			con4 = ds.getConnectionByTenant("b");//other tenant not limited by quota of 'a'
+			String usage = findUsage("a");
+			if (usage == null || !usage.startsWith("a,2,1,2,"))
+				TestUtil.assertError("tenant usage expected:%s,current is:%s", "a,2,1,2,...", usage);
+		} finally {
+			if (con1 != null)
+				BeecpUtil.oclose(con1);
+			if (con2 != null)
+				BeecpUtil.oclose(con2);
+			if (con3 != null)
+				BeecpUtil.oclose(con3);
+			if (con4 != null)
+				BeecpUtil.oclose(con4);
+		}
+
+		String usage = findUsage("a");//permits released on return
+		if (usage == null || !usage.startsWith("a,0,"))
+			TestUtil.assertError("tenant usage expected:%s,current is:%s", "a,0,...", usage);
+	}
+
+	public void testIdleTenantEvicted() throws InterruptedException, Exception {
+		BeeDataSourceConfig config = createConfig();
+		config.setIdleCheckTimeInterval(1000L);
+		config.setIdleCheckTimeInitDelay(0);
+		BeeDataSource evictDs = new BeeDataSource(config);
+		Connection con = null;
+		try {
+			con = evictDs.getConnectionByTenant("user1");
+			Thread.sleep(1500);
+			if (findUsage(evictDs, "user1") == null)
+				TestUtil.assertError("Tenant quota evicted when permit held");
+			BeecpUtil.oclose(con);
+			con = null;
+
+			Thread.sleep(1500);
+			if (findUsage(evictDs, "user1") != null)
+				TestUtil.assertError("Tenant quota not evicted after returned");
+			if (findUsage(evictDs, "a") == null)
+				TestUtil.assertError("Configured tenant quota evicted");
+
+			con = evictDs.getConnectionByTenant("user1");//created again
+			String usage = findUsage(evictDs, "user1");
+			if (usage == null || !usage.startsWith("user1,1,"))
+				TestUtil.assertError("tenant usage expected:%s,current is:%s", "user1,1,...", usage);
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+			evictDs.close();
+		}
+	}
+
+	private String findUsage(String tenant) {
+		return findUsage(ds, tenant);
+	}
+
+	private static String findUsage(BeeDataSource ds, String tenant) {
+		for (String usage : ds.getPoolMonitor().getTenantUsages())
+			if (usage.startsWith(tenant + ","))
+				return usage;
+		return null;
+	}
+}
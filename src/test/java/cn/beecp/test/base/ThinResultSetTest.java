@@ -0,0 +1,94 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class ThinResultSetTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setThinResultSet(true);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testGetAfterConnectionClose() throws InterruptedException, Exception {
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			con = ds.getConnection();
+			ps = con.prepareStatement("select 1 from dual");
+			rs = ps.executeQuery();
+			if (!rs.next())
+				TestUtil.assertError("thin result set not read row");
+			if (rs.getInt(1) != 1)
+				TestUtil.assertError("thin result set read wrong value");
+			con.close();
+
+			try {
+				rs.getInt(1);
+				TestUtil.assertError("thin result set get after connection close");
+			} catch (SQLException e) {
+			}
+			try {
+				rs.next();
+				TestUtil.assertError("thin result set next after connection close");
+			} catch (SQLException e) {
+			}
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testNextAfterClose() throws InterruptedException, Exception {
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			PreparedStatement ps = con.prepareStatement("select 1 from dual");
+			ResultSet rs = ps.executeQuery();
+			rs.close();
+			try {
+				rs.next();
+				TestUtil.assertError("thin result set next after close");
+			} catch (SQLException e) {
+			}
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+}
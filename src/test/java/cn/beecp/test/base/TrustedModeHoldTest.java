@@ -0,0 +1,80 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class TrustedModeHoldTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setInitialSize(0);
+		config.setTrustedMode(true);
+
+		config.setHoldIdleTimeout(1000);
+		config.setIdleCheckTimeInterval(1000L);
+		config.setIdleCheckTimeInitDelay(0);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void test() throws InterruptedException, Exception {
+		Connection con = null;
+		Statement st = null;
+		ResultSet rs = null;
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			con = ds.getConnection();
+			st = con.createStatement();
+			for (int i = 0; i < 4; i++) {//executions on driver statement,longer than hold timeout
+				rs = st.executeQuery("select 1");
+				BeecpUtil.oclose(rs);
+				Thread.sleep(1000);
+			}
+
+			if (pool.getConnUsingSize() != 1)
+				TestUtil.assertError("Using connections not as expected 1 after hold timeout");
+			rs = st.executeQuery("select 1");
+			if (!rs.next())
+				TestUtil.assertError("trusted connection closed by hold timeout");
+		} finally {
+			if (rs != null)
+				BeecpUtil.oclose(rs);
+			if (st != null)
+				BeecpUtil.oclose(st);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Savepoint;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.util.BeecpUtil;
+
+public class UpdateBatchCoalesceTest extends TestCase {
+	private BeeDataSource ds;
+	private String testName = "UpdateBatchCoalesceTest";
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setUpdateBatchSize(10);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testCoalescedInsert() throws InterruptedException, Exception {
+		Connection con = null;
+		PreparedStatement ps = null;
+		PreparedStatement queryPs = null;
+		try {
+			con = ds.getConnection();
+			con.setAutoCommit(false);
+			ps = con.prepareStatement("insert into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?)");
+			for (int i = 0; i < 25; i++) {
+				ps.setString(1, String.valueOf(i));
+				ps.setString(2, testName);
+				if (ps.executeUpdate() != 1)
+					TestUtil.assertError("coalesced insert count expect value:1");
+			}
+
+			queryPs = con.prepareStatement("select count(*) from " + Config.TEST_TABLE + " where TEST_NAME=?");
+			queryPs.setString(1, testName);
+			ResultSet rs = queryPs.executeQuery();
+			rs.next();
+			if (rs.getInt(1) != 25)
+				TestUtil.assertError("inserted rows before query expected:%s,current is:%s", 25, rs.getInt(1));
+			rs.close();
+
+			ps.setString(1, "25");
+			ps.setString(2, testName);
+			ps.executeUpdate();
+			con.rollback();
+
+			queryPs.setString(1, testName);
+			rs = queryPs.executeQuery();
+			rs.next();
+			if (rs.getInt(1) != 0)
+				TestUtil.assertError("inserted rows after rollback expected:%s,current is:%s", 0, rs.getInt(1));
+			rs.close();
+		} finally {
+			if (ps != null)
+				BeecpUtil.oclose(ps);
+			if (queryPs != null)
+				BeecpUtil.oclose(queryPs);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testRollbackToSavepoint() throws InterruptedException, Exception {
+		Connection con = null;
+		PreparedStatement ps = null;
+		PreparedStatement queryPs = null;
+		try {
+			con = ds.getConnection();
+			con.setAutoCommit(false);
+			ps = con.prepareStatement("insert into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?)");
+			ps.setString(1, "0");
+			ps.setString(2, testName);
+			ps.executeUpdate();
+			Savepoint savepoint = con.setSavepoint();
+
+			ps.setString(1, "1");
+			ps.setString(2, testName);
+			ps.executeUpdate();
+			con.rollback(savepoint);//pending insert after savepoint is discarded
+
+			queryPs = con.prepareStatement("select count(*) from " + Config.TEST_TABLE + " where TEST_NAME=?");
+			queryPs.setString(1, testName);
+			ResultSet rs = queryPs.executeQuery();
+			rs.next();
+			if (rs.getInt(1) != 1)
+				TestUtil.assertError("inserted rows after rollback to savepoint expected:%s,current is:%s", 1, rs.getInt(1));
+			rs.close();
+			con.rollback();
+		} finally {
+			if (ps != null)
+				BeecpUtil.oclose(ps);
+			if (queryPs != null)
+				BeecpUtil.oclose(queryPs);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testConditionalInsertNotCoalesced() throws Exception {
+		String[] sqls = {
+				"insert ignore into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?)",
+				"insert into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?) on duplicate key update TEST_NAME=?",
+				"insert into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?) on conflict do nothing",
+				"insert or replace into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?)"};
+		Field batchField = Class.forName("cn.beecp.pool.ProxyStatementBase").getDeclaredField("updateBatchInd");
+		batchField.setAccessible(true);
+
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			PreparedStatement ps = con.prepareStatement("insert into " + Config.TEST_TABLE + "(TEST_ID,TEST_NAME)values(?,?)");
+			if (!batchField.getBoolean(ps))
+				TestUtil.assertError("plain insert coalesced expected:%s,current is:%s", true, false);
+			BeecpUtil.oclose(ps);
+
+			for (int i = 0; i < sqls.length; i++) {//update count of these inserts may be 0 or 2
+				ps = con.prepareStatement(sqls[i]);
+				if (batchField.getBoolean(ps))
+					TestUtil.assertError("conditional insert coalesced expected:%s,current is:%s", false, true);
+				BeecpUtil.oclose(ps);
+			}
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+}
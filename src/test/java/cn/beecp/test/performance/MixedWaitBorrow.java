@@ -0,0 +1,117 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.performance;
+
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.util.BeecpUtil;
+
+/**
+ * Timeout rate of borrowers with mixed max wait(short and long)on a saturated pool,
+ * connections transferred by waiting order and by earliest deadline.
+ * 
+ * @author Chris
+ */
+public class MixedWaitBorrow extends TestCase {
+	static final int threadCount = 40;
+	static final int poolSize = 4;
+	static final long holdMills = 10;
+	static final long shortWaitMills = 60;
+	static final long longWaitMills = 1000;
+	static final long testMills = 4000;
+	static final String testName = "Mixed wait borrow";
+	static Logger log = LoggerFactory.getLogger(MixedWaitBorrow.class);
+
+	public void test() throws Exception {
+		long[] orderResult = runPool(false);
+		long[] deadlineResult = runPool(true);
+		log.info("Pool[Waiting order -- " + testName + "] -- borrowed:" + orderResult[0] + ",timeout:" + orderResult[1] + ",timeout rate:" + orderResult[1] * 100 / Math.max(orderResult[0] + orderResult[1], 1) + "%");
+		log.info("Pool[Earliest deadline -- " + testName + "] -- borrowed:" + deadlineResult[0] + ",timeout:" + deadlineResult[1] + ",timeout rate:" + deadlineResult[1] * 100 / Math.max(deadlineResult[0] + deadlineResult[1], 1) + "%");
+	}
+
+	//return borrowed count and timeout count
+	private long[] runPool(boolean deadlineFirst) throws Exception {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setMaxActive(poolSize);
+		config.setFairMode(true);
+		config.setDeadlineFirstTransfer(deadlineFirst);
+		final BeeDataSource dataSource = new BeeDataSource(config);
+
+		try {
+			BeecpUtil.oclose(dataSource.getConnection());
+			AtomicLong borrowedCount = new AtomicLong();
+			AtomicLong timeoutCount = new AtomicLong();
+			long endTime = System.currentTimeMillis() + testMills;
+			BorrowThread[] threads = new BorrowThread[threadCount];
+			for (int i = 0; i < threadCount; i++) {
+				threads[i] = new BorrowThread(dataSource, i % 2 == 0 ? shortWaitMills : longWaitMills, endTime, borrowedCount, timeoutCount);
+				threads[i].start();
+			}
+			for (int i = 0; i < threadCount; i++)
+				threads[i].join();
+			return new long[]{borrowedCount.get(), timeoutCount.get()};
+		} finally {
+			dataSource.close();
+		}
+	}
+
+	static class BorrowThread extends Thread {
+		private BeeDataSource dataSource;
+		private long waitNanos;
+		private long endTime;
+		private AtomicLong borrowedCount;
+		private AtomicLong timeoutCount;
+
+		BorrowThread(BeeDataSource dataSource, long waitMills, long endTime, AtomicLong borrowedCount, AtomicLong timeoutCount) {
+			this.dataSource = dataSource;
+			this.waitNanos = waitMills * 1000000L;
+			this.endTime = endTime;
+			this.borrowedCount = borrowedCount;
+			this.timeoutCount = timeoutCount;
+		}
+		public void run() {
+			while (System.currentTimeMillis() < endTime) {
+				Connection con = null;
+				try {
+					con = dataSource.getConnectionByDeadline(System.nanoTime() + waitNanos);
+					Thread.sleep(holdMills);
+					borrowedCount.incrementAndGet();
+				} catch (SQLTimeoutException e) {
+					timeoutCount.incrementAndGet();
+				} catch (Exception e) {
+					log.error("Failed to borrow connection", e);
+					return;
+				} finally {
+					if (con != null)
+						BeecpUtil.oclose(con);
+				}
+			}
+		}
+	}
+}
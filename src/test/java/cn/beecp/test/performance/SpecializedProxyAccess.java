@@ -0,0 +1,106 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.performance;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.util.BeecpUtil;
+
+/**
+ * Performance of setXxx/getXxx loops on common proxies and driver specialized proxies,
+ * one SQL execution for many parameter settings and column reads,so cost of proxy dominates.
+ * 
+ * @author Chris
+ */
+public class SpecializedProxyAccess extends TestCase {
+	static final int warmupCount = 20;
+	static final int executeCount = 200;
+	static final int accessCount = 10000;
+	static final String testName = "Specialized proxy access";
+	static Logger log = LoggerFactory.getLogger(SpecializedProxyAccess.class);
+
+	public void test() throws Exception {
+		String sql = "select ?,? from dual";
+		BeeDataSource commonDs = createDataSource(false);
+		BeeDataSource specializedDs = createDataSource(true);
+		try {
+			for (int i = 0; i < warmupCount; i++) {
+				runPool(sql, commonDs);
+				runPool(sql, specializedDs);
+			}
+
+			long commonTime = runPool(sql, commonDs);
+			long specializedTime = runPool(sql, specializedDs);
+			long callCount = (long) executeCount * accessCount * 4;
+			log.info("Pool[Common -- " + testName + "] -- " + commonTime / callCount + "ns/call");
+			log.info("Pool[Specialized -- " + testName + "] -- " + specializedTime / callCount + "ns/call");
+		} finally {
+			commonDs.close();
+			specializedDs.close();
+		}
+	}
+
+	private BeeDataSource createDataSource(boolean specialized) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setConnectionTestSQL("select 1 from dual");
+		config.setDriverSpecializedProxy(specialized);
+		return new BeeDataSource(config);
+	}
+
+	//return nanoseconds
+	private long runPool(String sql, BeeDataSource dataSource) throws Exception {
+		Connection con = null;
+		PreparedStatement ps = null;
+		try {
+			con = dataSource.getConnection();
+			ps = con.prepareStatement(sql);
+			long sum = 0;
+			long startTime = System.nanoTime();
+			for (int i = 0; i < executeCount; i++) {
+				for (int j = 0; j < accessCount; j++) {
+					ps.setInt(1, j);
+					ps.setLong(2, j);
+				}
+				ResultSet rs = ps.executeQuery();
+				rs.next();
+				for (int j = 0; j < accessCount; j++) {
+					sum += rs.getInt(1);
+					sum += rs.getLong(2);
+				}
+				rs.close();
+			}
+			long time = System.nanoTime() - startTime;
+			if (sum == 0) log.debug("sum:" + sum);
+			return time;
+		} finally {
+			BeecpUtil.oclose(ps);
+			BeecpUtil.oclose(con);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.performance;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.Config;
+import cn.beecp.test.TestCase;
+import cn.beecp.util.BeecpUtil;
+
+/**
+ * Performance of statement and result set access on wrapped connections and trusted
+ * connections(driver statements),time and allocated bytes per execution.
+ * 
+ * @author Chris
+ */
+public class TrustedModeAccess extends TestCase {
+	static final int warmupCount = 20;
+	static final int executeCount = 10000;
+	static final String testName = "Trusted mode access";
+	static Logger log = LoggerFactory.getLogger(TrustedModeAccess.class);
+
+	public void test() throws Exception {
+		String sql = "select ?,? from dual";
+		BeeDataSource wrappedDs = createDataSource(false);
+		BeeDataSource trustedDs = createDataSource(true);
+		try {
+			for (int i = 0; i < warmupCount; i++) {
+				runPool(sql, wrappedDs);
+				runPool(sql, trustedDs);
+			}
+
+			long[] wrappedResult = runPool(sql, wrappedDs);
+			long[] trustedResult = runPool(sql, trustedDs);
+			log.info("Pool[Wrapped -- " + testName + "] -- " + wrappedResult[0] / executeCount + "ns/execution," + wrappedResult[1] / executeCount + "bytes/execution");
+			log.info("Pool[Trusted -- " + testName + "] -- " + trustedResult[0] / executeCount + "ns/execution," + trustedResult[1] / executeCount + "bytes/execution");
+		} finally {
+			wrappedDs.close();
+			trustedDs.close();
+		}
+	}
+
+	private BeeDataSource createDataSource(boolean trusted) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setJdbcUrl(Config.JDBC_URL);
+		config.setDriverClassName(Config.JDBC_DRIVER);
+		config.setUsername(Config.JDBC_USER);
+		config.setPassword(Config.JDBC_PASSWORD);
+		config.setTrustedMode(trusted);
+		return new BeeDataSource(config);
+	}
+
+	//return nanoseconds and allocated bytes(-1 if not supported by jvm)
+	private long[] runPool(String sql, BeeDataSource dataSource) throws Exception {
+		Connection con = null;
+		try {
+			con = dataSource.getConnection();
+			long sum = 0;
+			long startBytes = allocatedBytes();
+			long startTime = System.nanoTime();
+			for (int i = 0; i < executeCount; i++) {
+				PreparedStatement ps = con.prepareStatement(sql);
+				ps.setInt(1, i);
+				ps.setLong(2, i);
+				ResultSet rs = ps.executeQuery();
+				if (rs.next()) {
+					sum += rs.getInt(1);
+					sum += rs.getLong(2);
+				}
+				rs.close();
+				ps.close();
+			}
+			long time = System.nanoTime() - startTime;
+			long bytes = startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+			if (sum == 0) log.debug("sum:" + sum);
+			return new long[]{time, bytes};
+		} finally {
+			BeecpUtil.oclose(con);
+		}
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+}